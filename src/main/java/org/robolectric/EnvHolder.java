@@ -2,26 +2,63 @@ package org.robolectric;
 
 import org.robolectric.res.FsFile;
 
-import java.lang.ref.SoftReference;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class EnvHolder {
   public final Map<FsFile, AndroidManifest> appManifestsByFile = new HashMap<FsFile, AndroidManifest>();
-  private final Map<SdkConfig, SoftReference<SdkEnvironment>> sdkToEnvironmentSoft = new HashMap<SdkConfig, SoftReference<SdkEnvironment>>();
+  private final Map<String, SdkEnvironment> environmentsByFingerprint = new ConcurrentHashMap<String, SdkEnvironment>();
+  private final Set<String> evictedFingerprints = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+  private final SdkEnvironmentCache cache;
 
-  synchronized public SdkEnvironment getSdkEnvironment(SdkConfig sdkConfig, SdkEnvironment.Factory factory) {
-    SoftReference<SdkEnvironment> reference = sdkToEnvironmentSoft.get(sdkConfig);
-    SdkEnvironment sdkEnvironment = reference == null ? null : reference.get();
-    if (sdkEnvironment == null) {
-      if (reference != null) {
-        System.out.println("[DEBUG] ********************* GC'ed SdkEnvironment reused!");
-      }
+  public EnvHolder() {
+    this(SdkEnvironmentCache.getInstance());
+  }
+
+  public EnvHolder(SdkEnvironmentCache cache) {
+    this.cache = cache;
+  }
+
+  public SdkEnvironment getSdkEnvironment(SdkConfig sdkConfig, SdkEnvironment.Factory factory) {
+    return getSdkEnvironment(sdkConfig.getArtifactVersionString(), sdkConfig, factory);
+  }
+
+  /**
+   * @param fingerprint identifies everything that goes into the environment; environments are shared by fingerprint
+   */
+  public SdkEnvironment getSdkEnvironment(String fingerprint, SdkConfig sdkConfig, SdkEnvironment.Factory factory) {
+    return getSdkEnvironment(fingerprint, sdkConfig, factory, false);
+  }
 
+  /**
+   * Like {@link #getSdkEnvironment(String, SdkConfig, SdkEnvironment.Factory)}, but also marks the environment as in
+   * use, so it won't be unloaded, until it's given back with {@link SdkEnvironmentCache#release(SdkEnvironment)}.
+   */
+  public SdkEnvironment acquireSdkEnvironment(String fingerprint, SdkConfig sdkConfig, SdkEnvironment.Factory factory) {
+    return getSdkEnvironment(fingerprint, sdkConfig, factory, true);
+  }
+
+  public SdkEnvironmentCache getCache() {
+    return cache;
+  }
+
+  synchronized private SdkEnvironment getSdkEnvironment(String fingerprint, SdkConfig sdkConfig, SdkEnvironment.Factory factory, boolean acquire) {
+    SdkEnvironment sdkEnvironment = environmentsByFingerprint.get(fingerprint);
+    if (sdkEnvironment == null || !cache.used(sdkEnvironment, acquire)) {
       sdkEnvironment = factory.create();
-      sdkToEnvironmentSoft.put(sdkConfig, new SoftReference<SdkEnvironment>(sdkEnvironment));
+      environmentsByFingerprint.put(fingerprint, sdkEnvironment);
+      cache.added(sdkEnvironment, this, fingerprint, sdkConfig, evictedFingerprints.remove(fingerprint), acquire);
     }
-
     return sdkEnvironment;
   }
+
+  // called by the cache, which may be holding another EnvHolder's lock, so don't take ours
+  void evicted(String fingerprint, SdkEnvironment sdkEnvironment) {
+    if (environmentsByFingerprint.remove(fingerprint) == sdkEnvironment) {
+      evictedFingerprints.add(fingerprint);
+    }
+  }
 }
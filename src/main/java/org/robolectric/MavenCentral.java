@@ -1,46 +1,246 @@
 package org.robolectric;
 
 import org.apache.maven.artifact.ant.DependenciesTask;
+import org.apache.maven.artifact.ant.LocalRepository;
+import org.apache.maven.artifact.ant.RemoteRepository;
 import org.apache.maven.model.Dependency;
 import org.apache.tools.ant.Project;
 import org.robolectric.util.Util;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.MalformedURLException;
+import java.net.URISyntaxException;
 import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.Hashtable;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Finds local copies of artifacts, downloading them if necessary.
+ *
+ * Resolving with maven-ant-tasks is slow, so resolved artifacts are remembered in a manifest under the local
+ * repository (or the directory named by the system property {@code robolectric.resolvedArtifacts.dir}), keyed by
+ * the requested coordinates and any Maven configuration the test runner overrides. As long as every file in the
+ * manifest still has the same modification time and size, later runs use it without loading Ant or Maven at all.
+ */
 public class MavenCentral {
-  private final Project project = new Project();
+  public static final String MANIFEST_DIR_PROPERTY = "robolectric.resolvedArtifacts.dir";
+
+  private final File manifestDir;
+  private final Map<String, Map<String, URL>> resolvedArtifacts = new ConcurrentHashMap<String, Map<String, URL>>();
+  private AntResolver antResolver;
+
+  public MavenCentral() {
+    this(defaultManifestDir());
+  }
+
+  public MavenCentral(File manifestDir) {
+    this.manifestDir = manifestDir;
+  }
+
+  private static File defaultManifestDir() {
+    String dir = System.getProperty(MANIFEST_DIR_PROPERTY);
+    if (dir != null && dir.length() > 0) return new File(dir);
+
+    String localRepo = System.getProperty("maven.repo.local");
+    if (localRepo == null || localRepo.length() == 0) {
+      localRepo = System.getProperty("user.home") + File.separator + ".m2" + File.separator + "repository";
+    }
+    return new File(localRepo, "org/robolectric/.resolved-artifacts");
+  }
 
   public Map<String, URL> getLocalArtifactUrls(RobolectricTestRunner robolectricTestRunner, Dependency... dependencies) {
-    DependenciesTask dependenciesTask = new DependenciesTask();
-    if (robolectricTestRunner != null) {
-      robolectricTestRunner.configureMaven(dependenciesTask);
+    String coordinates = coordinatesOf(dependencies) + mavenConfigurationOf(robolectricTestRunner);
+    Map<String, URL> urls = resolvedArtifacts.get(coordinates);
+    if (urls != null) return urls;
+
+    File manifestFile = new File(manifestDir, sha1(coordinates) + ".properties");
+    urls = readManifest(manifestFile, coordinates);
+    if (urls == null) {
+      urls = antResolver().resolve(robolectricTestRunner, dependencies);
+      writeManifest(manifestFile, coordinates, urls);
     }
-    dependenciesTask.setProject(project);
+    resolvedArtifacts.put(coordinates, urls);
+    return urls;
+  }
+
+  public URL getLocalArtifactUrl(RobolectricTestRunner robolectricTestRunner, Dependency dependency) {
+    Map<String, URL> map = getLocalArtifactUrls(robolectricTestRunner, dependency);
+    return map.get(dependency.getGroupId() + ":" + dependency.getArtifactId() + ":" + dependency.getType() + ":" + dependency.getClassifier());
+  }
+
+  private synchronized AntResolver antResolver() {
+    if (antResolver == null) antResolver = new AntResolver();
+    return antResolver;
+  }
+
+  static String coordinatesOf(Dependency... dependencies) {
+    StringBuilder buf = new StringBuilder();
     for (Dependency dependency : dependencies) {
-      dependenciesTask.addDependency(dependency);
+      buf.append(dependency.getGroupId()).append(':').append(dependency.getArtifactId()).append(':')
+          .append(dependency.getVersion()).append(':').append(dependency.getType()).append(':')
+          .append(dependency.getClassifier()).append('\n');
+    }
+    return buf.toString();
+  }
+
+  // a runner that overrides configureMaven() may resolve the same coordinates from somewhere else entirely
+  static String mavenConfigurationOf(RobolectricTestRunner robolectricTestRunner) {
+    if (robolectricTestRunner == null || !overridesConfigureMaven(robolectricTestRunner.getClass())) return "";
+    return AntResolver.describeConfiguration(robolectricTestRunner);
+  }
+
+  private static boolean overridesConfigureMaven(Class<?> runnerClass) {
+    for (Class<?> clazz = runnerClass; clazz != null && clazz != RobolectricTestRunner.class; clazz = clazz.getSuperclass()) {
+      for (java.lang.reflect.Method method : clazz.getDeclaredMethods()) {
+        if (method.getName().equals("configureMaven")) return true;
+      }
     }
-    dependenciesTask.execute();
+    return false;
+  }
+
+  // each artifact is stored as "<mtime>,<size>,<path>"; any mismatch means we resolve again
+  Map<String, URL> readManifest(File manifestFile, String coordinates) {
+    if (!manifestFile.isFile()) return null;
+
+    Properties properties = new Properties();
+    try {
+      InputStream in = new FileInputStream(manifestFile);
+      try {
+        properties.load(in);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      return null;
+    }
+    if (!coordinates.equals(properties.getProperty(".coordinates"))) return null;
 
-    @SuppressWarnings("unchecked")
-    Hashtable<String, String> artifacts = project.getProperties();
     Map<String, URL> urls = new HashMap<String, URL>();
-    for (Map.Entry<String, String> entry : artifacts.entrySet()) {
+    for (String key : properties.stringPropertyNames()) {
+      if (key.equals(".coordinates")) continue;
+
+      String[] parts = properties.getProperty(key).split(",", 3);
+      if (parts.length != 3) return null;
+      File file = new File(parts[2]);
       try {
-        urls.put(entry.getKey(), Util.url(entry.getValue()));
+        if (file.lastModified() != Long.parseLong(parts[0]) || file.length() != Long.parseLong(parts[1])) return null;
+        urls.put(key, Util.url(parts[2]));
+      } catch (NumberFormatException e) {
+        return null; // corrupt, so resolve again
       } catch (MalformedURLException e) {
-        throw new RuntimeException(e);
+        return null;
       }
+    }
+    return urls.isEmpty() ? null : urls;
+  }
 
+  void writeManifest(File manifestFile, String coordinates, Map<String, URL> urls) {
+    Properties properties = new Properties();
+    properties.setProperty(".coordinates", coordinates);
+    for (Map.Entry<String, URL> entry : urls.entrySet()) {
+      File file = fileFor(entry.getValue());
+      if (file == null || !file.isFile()) continue; // not an artifact, and nothing we could validate later
+      properties.setProperty(entry.getKey(), file.lastModified() + "," + file.length() + "," + file.getPath());
+    }
+
+    if (!manifestDir.isDirectory() && !manifestDir.mkdirs() && !manifestDir.isDirectory()) return;
+    File tempFile = null;
+    try {
+      tempFile = File.createTempFile("tmp-", ".part", manifestDir);
+      OutputStream out = new FileOutputStream(tempFile);
+      try {
+        properties.store(out, "artifacts resolved by Robolectric");
+      } finally {
+        out.close();
+      }
+      if (tempFile.renameTo(manifestFile)) tempFile = null;
+    } catch (IOException e) {
+      // the manifest is only an optimization; carry on without it
+    } finally {
+      if (tempFile != null) {
+        //noinspection ResultOfMethodCallIgnored
+        tempFile.delete();
+      }
     }
-    return urls;
   }
 
-  public URL getLocalArtifactUrl(RobolectricTestRunner robolectricTestRunner, Dependency dependency) {
-    Map<String, URL> map = getLocalArtifactUrls(robolectricTestRunner, dependency);
-    return map.get(dependency.getGroupId() + ":" + dependency.getArtifactId() + ":" + dependency.getType() + ":" + dependency.getClassifier());
+  private static File fileFor(URL url) {
+    if (!"file".equals(url.getProtocol())) return null;
+    try {
+      return new File(url.toURI());
+    } catch (URISyntaxException e) {
+      return new File(url.getFile()); // Util.url() doesn't escape paths, so one with spaces isn't a valid URI
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  private static String sha1(String value) {
+    try {
+      StringBuilder buf = new StringBuilder();
+      for (byte b : MessageDigest.getInstance("SHA-1").digest(value.getBytes("UTF-8"))) {
+        buf.append(Integer.toHexString((b & 0xff) | 0x100).substring(1));
+      }
+      return buf.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Kept separate so Ant and Maven classes are only loaded when we actually have to resolve something. */
+  private static class AntResolver {
+    private final Project project = new Project();
+
+    static String describeConfiguration(RobolectricTestRunner robolectricTestRunner) {
+      DependenciesTask dependenciesTask = new DependenciesTask();
+      dependenciesTask.setProject(new Project());
+      robolectricTestRunner.configureMaven(dependenciesTask);
+
+      StringBuilder buf = new StringBuilder();
+      buf.append("configured by ").append(robolectricTestRunner.getClass().getName()).append('\n');
+      for (RemoteRepository repository : dependenciesTask.getRemoteRepositories()) {
+        buf.append("remote ").append(repository.getId()).append(' ').append(repository.getLayout()).append(' ')
+            .append(repository.getUrl()).append('\n');
+      }
+      LocalRepository localRepository = dependenciesTask.getLocalRepository();
+      if (localRepository != null) buf.append("local ").append(localRepository.getPath()).append('\n');
+      return buf.toString();
+    }
+
+    synchronized Map<String, URL> resolve(RobolectricTestRunner robolectricTestRunner, Dependency... dependencies) {
+      DependenciesTask dependenciesTask = new DependenciesTask();
+      if (robolectricTestRunner != null) {
+        robolectricTestRunner.configureMaven(dependenciesTask);
+      }
+      dependenciesTask.setProject(project);
+      for (Dependency dependency : dependencies) {
+        dependenciesTask.addDependency(dependency);
+      }
+      dependenciesTask.execute();
+
+      @SuppressWarnings("unchecked")
+      Hashtable<String, String> artifacts = project.getProperties();
+      Map<String, URL> urls = new HashMap<String, URL>();
+      for (Map.Entry<String, String> entry : artifacts.entrySet()) {
+        try {
+          urls.put(entry.getKey(), Util.url(entry.getValue()));
+        } catch (MalformedURLException e) {
+          throw new RuntimeException(e);
+        }
+      }
+      return urls;
+    }
   }
 }
@@ -0,0 +1,166 @@
+package org.robolectric;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.model.RunnerScheduler;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs test methods on a pool of worker threads shared by every {@link RobolectricTestRunner}.
+ *
+ * Each worker gets its own {@link SdkEnvironment}s, and so its own instrumenting class loaders and Android statics,
+ * which stay with it from one test class to the next. Tests report to a buffer which is replayed to the real
+ * {@link RunNotifier} in the order the tests were scheduled, so results come out in the same order as a serial run.
+ *
+ * Enable by setting the system property {@code robolectric.parallel.threads} to the number of workers.
+ */
+public class ParallelTestScheduler implements RunnerScheduler {
+  public static final String THREADS_PROPERTY = "robolectric.parallel.threads";
+
+  private static final ThreadLocal<RecordingNotifier> currentNotifier = new ThreadLocal<RecordingNotifier>();
+  private static final ThreadLocal<Boolean> isWorker = new ThreadLocal<Boolean>();
+  private static ExecutorService workers;
+
+  private final List<Future<RecordingNotifier>> scheduledTests = new ArrayList<Future<RecordingNotifier>>();
+
+  ParallelTestScheduler(int threads) {
+    synchronized (ParallelTestScheduler.class) {
+      if (workers == null) {
+        workers = Executors.newFixedThreadPool(threads, new WorkerThreadFactory());
+      }
+    }
+  }
+
+  /**
+   * @return a scheduler if parallel execution was requested, otherwise null
+   */
+  public static ParallelTestScheduler fromSystemProperties() {
+    String threadsStr = System.getProperty(THREADS_PROPERTY);
+    int threads = threadsStr == null || threadsStr.length() == 0 ? 1 : Integer.parseInt(threadsStr);
+    return threads > 1 ? new ParallelTestScheduler(threads) : null;
+  }
+
+  public static boolean isWorkerThread() {
+    return isWorker.get() != null;
+  }
+
+  /**
+   * @return the notifier that the test running on this thread should report to
+   */
+  public static RunNotifier notifierFor(RunNotifier notifier) {
+    RecordingNotifier recordingNotifier = currentNotifier.get();
+    if (recordingNotifier == null) return notifier;
+    recordingNotifier.target = notifier;
+    return recordingNotifier;
+  }
+
+  @Override public void schedule(final Runnable childStatement) {
+    scheduledTests.add(workers.submit(new Callable<RecordingNotifier>() {
+      @Override public RecordingNotifier call() throws Exception {
+        RecordingNotifier recordingNotifier = new RecordingNotifier();
+        currentNotifier.set(recordingNotifier);
+        try {
+          childStatement.run();
+        } finally {
+          currentNotifier.remove();
+        }
+        return recordingNotifier;
+      }
+    }));
+  }
+
+  @Override public void finished() {
+    try {
+      for (Future<RecordingNotifier> scheduledTest : scheduledTests) {
+        scheduledTest.get().replay();
+      }
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new RuntimeException(e);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    } finally {
+      scheduledTests.clear();
+    }
+  }
+
+  private static class WorkerThreadFactory implements ThreadFactory {
+    private final AtomicInteger threadCount = new AtomicInteger();
+
+    @Override public Thread newThread(final Runnable runnable) {
+      Thread thread = new Thread(new Runnable() {
+        @Override public void run() {
+          isWorker.set(true);
+          runnable.run();
+        }
+      }, "robolectric-worker-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    }
+  }
+
+  private static class RecordingNotifier extends RunNotifier {
+    private final List<Event> events = new ArrayList<Event>();
+    private RunNotifier target;
+
+    void replay() {
+      for (Event event : events) {
+        event.fire();
+      }
+    }
+
+    @Override public void fireTestStarted(final Description description) {
+      events.add(new Event() {
+        @Override void fire() {
+          target.fireTestStarted(description);
+        }
+      });
+    }
+
+    @Override public void fireTestFailure(final Failure failure) {
+      events.add(new Event() {
+        @Override void fire() {
+          target.fireTestFailure(failure);
+        }
+      });
+    }
+
+    @Override public void fireTestAssumptionFailed(final Failure failure) {
+      events.add(new Event() {
+        @Override void fire() {
+          target.fireTestAssumptionFailed(failure);
+        }
+      });
+    }
+
+    @Override public void fireTestIgnored(final Description description) {
+      events.add(new Event() {
+        @Override void fire() {
+          target.fireTestIgnored(description);
+        }
+      });
+    }
+
+    @Override public void fireTestFinished(final Description description) {
+      events.add(new Event() {
+        @Override void fire() {
+          target.fireTestFinished(description);
+        }
+      });
+    }
+  }
+
+  private abstract static class Event {
+    abstract void fire();
+  }
+}
@@ -0,0 +1,186 @@
+package org.robolectric;
+
+import org.robolectric.bytecode.AsmInstrumentingClassLoader;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.WeakHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Gets {@link SdkEnvironment}s, resources and the classes tests are likely to need ready on background threads, so
+ * the first test of each kind can start as soon as its own dependencies are.
+ *
+ * Enable by setting the system property {@code robolectric.prewarm} to {@code true}. Also set
+ * {@code robolectric.prewarm.profile} to a file, and the classes instrumented during each run are written there on
+ * exit and instrumented up front the next time.
+ *
+ * Anything that goes wrong in the background is only warned about; the test that needs it will run into the same
+ * problem and report it properly.
+ */
+public class Prewarmer {
+  public static final String PREWARM_PROPERTY = "robolectric.prewarm";
+  public static final String PROFILE_PROPERTY = "robolectric.prewarm.profile";
+
+  // weak, so prewarming doesn't keep environments SdkEnvironmentCache unloads, or their resources, from being collected
+  private static final Set<Object> warmed = Collections.newSetFromMap(new WeakHashMap<Object, Boolean>());
+  private static final Map<ClassLoader, Boolean> profiledClassLoaders = new WeakHashMap<ClassLoader, Boolean>();
+  private static ExecutorService executor;
+  private static List<String> profiledClassNames;
+
+  public static boolean isEnabled() {
+    return Boolean.valueOf(System.getProperty(PREWARM_PROPERTY));
+  }
+
+  /**
+   * @return true the first time it's called for {@code thing}, so each thing is only warmed up once
+   */
+  static synchronized boolean firstTimeFor(Object thing) {
+    return warmed.add(thing);
+  }
+
+  static synchronized void submit(final String what, final Runnable task) {
+    if (executor == null) {
+      executor = Executors.newFixedThreadPool(2, new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "robolectric-prewarm-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+    }
+
+    executor.execute(new Runnable() {
+      @Override public void run() {
+        try {
+          task.run();
+        } catch (Throwable e) {
+          System.err.println("[WARN] couldn't prewarm " + what + ": " + e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Loads (without initializing) the classes in the profile, if there is one, into {@code classLoader}, and records
+   * what it ends up loading for next time.
+   */
+  static void loadProfiledClasses(final ClassLoader classLoader) {
+    final File profileFile = profileFile();
+    if (profileFile == null) return;
+
+    final List<String> classNames;
+    synchronized (Prewarmer.class) {
+      if (profiledClassNames == null) {
+        profiledClassNames = readProfile(profileFile);
+        Runtime.getRuntime().addShutdownHook(new Thread("robolectric-prewarm-profile") {
+          @Override public void run() {
+            writeProfile(profileFile);
+          }
+        });
+      }
+      profiledClassLoaders.put(classLoader, true);
+      classNames = profiledClassNames;
+    }
+
+    submit(classNames.size() + " profiled classes", new Runnable() {
+      @Override public void run() {
+        for (String className : classNames) {
+          try {
+            Class.forName(className, false, classLoader);
+          } catch (Throwable e) {
+            // not in this SDK, perhaps; the test will find out if it matters
+          }
+        }
+      }
+    });
+  }
+
+  private static File profileFile() {
+    String path = System.getProperty(PROFILE_PROPERTY);
+    return path == null || path.length() == 0 ? null : new File(path);
+  }
+
+  static List<String> readProfile(File profileFile) {
+    if (!profileFile.isFile()) return Collections.emptyList();
+
+    List<String> classNames = new ArrayList<String>();
+    try {
+      BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(profileFile), "UTF-8"));
+      try {
+        String line;
+        while ((line = in.readLine()) != null) {
+          line = line.trim();
+          if (line.length() > 0) classNames.add(line);
+        }
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      System.err.println("[WARN] couldn't read class profile " + profileFile + ": " + e);
+    }
+    return classNames;
+  }
+
+  private static void writeProfile(File profileFile) {
+    Set<String> classNames = new TreeSet<String>();
+    synchronized (Prewarmer.class) {
+      for (ClassLoader classLoader : profiledClassLoaders.keySet()) {
+        if (classLoader instanceof AsmInstrumentingClassLoader) {
+          classNames.addAll(((AsmInstrumentingClassLoader) classLoader).getAcquiredClassNames());
+        }
+      }
+    }
+    if (classNames.isEmpty()) return;
+
+    try {
+      writeProfile(profileFile, classNames);
+    } catch (IOException e) {
+      System.err.println("[WARN] couldn't write class profile " + profileFile + ": " + e);
+    }
+  }
+
+  static void writeProfile(File profileFile, Set<String> classNames) throws IOException {
+    File parent = profileFile.getAbsoluteFile().getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) throw new IOException("couldn't create " + parent);
+
+    // write to a temporary file and rename it, so forks sharing the profile never see a partial or interleaved one
+    File tmpFile = File.createTempFile(profileFile.getName(), ".tmp", parent);
+    try {
+      Writer out = new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8");
+      try {
+        for (String className : classNames) {
+          out.write(className);
+          out.write('\n');
+        }
+      } finally {
+        out.close();
+      }
+      if (!tmpFile.renameTo(profileFile)) {
+        //noinspection ResultOfMethodCallIgnored
+        profileFile.delete();
+        if (!tmpFile.renameTo(profileFile)) throw new IOException("couldn't rename " + tmpFile + " to " + profileFile);
+      }
+    } finally {
+      //noinspection ResultOfMethodCallIgnored
+      tmpFile.delete(); // no-op once renamed
+    }
+  }
+}
@@ -345,6 +345,7 @@ import org.robolectric.tester.org.apache.http.HttpRequestInfo;
 import org.robolectric.tester.org.apache.http.RequestMatcher;
 import org.robolectric.util.ActivityController;
 import org.robolectric.util.Scheduler;
+import org.robolectric.util.Util;
 
 import static org.fest.reflect.core.Reflection.method;
 
@@ -361,7 +362,7 @@ public class Robolectric {
 
   public static Object newInstanceOf(String className) {
     try {
-      Class<?> clazz = Class.forName(className);
+      Class<?> clazz = Util.loadClass(className, Robolectric.class.getClassLoader());
       if (clazz != null) {
         return newInstanceOf(clazz);
       }
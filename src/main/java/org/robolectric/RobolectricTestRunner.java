@@ -4,6 +4,7 @@ import android.app.Application;
 import android.os.Build;
 import org.apache.maven.artifact.ant.DependenciesTask;
 import org.jetbrains.annotations.TestOnly;
+import org.junit.runner.manipulation.NoTestsRemainException;
 import org.junit.runner.notification.RunNotifier;
 import org.junit.runners.BlockJUnit4ClassRunner;
 import org.junit.runners.model.FrameworkMethod;
@@ -20,6 +21,8 @@ import org.robolectric.bytecode.RobolectricInternals;
 import org.robolectric.bytecode.Setup;
 import org.robolectric.bytecode.ShadowMap;
 import org.robolectric.bytecode.ShadowWrangler;
+import org.robolectric.daemon.DaemonClient;
+import org.robolectric.daemon.ReloadableClasses;
 import org.robolectric.internal.ParallelUniverse;
 import org.robolectric.internal.ParallelUniverseInterface;
 import org.robolectric.res.DocumentLoader;
@@ -27,6 +30,7 @@ import org.robolectric.res.Fs;
 import org.robolectric.res.FsFile;
 import org.robolectric.res.OverlayResourceLoader;
 import org.robolectric.res.PackageResourceLoader;
+import org.robolectric.res.ResName;
 import org.robolectric.res.ResourceLoader;
 import org.robolectric.res.ResourcePath;
 import org.robolectric.res.RoutingResourceLoader;
@@ -46,10 +50,12 @@ import java.lang.reflect.Method;
 import java.net.URL;
 import java.security.SecureRandom;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static org.fest.reflect.core.Reflection.staticField;
 
@@ -61,18 +67,25 @@ import static org.fest.reflect.core.Reflection.staticField;
 public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
   private static final MavenCentral MAVEN_CENTRAL = new MavenCentral();
 
-  private static final Map<Class<? extends RobolectricTestRunner>, EnvHolder> envHoldersByTestRunner = new HashMap<Class<? extends RobolectricTestRunner>, EnvHolder>();
+  // keyed by name rather than class, so runners reloaded by the daemon still find their app manifests
+  private static final Map<String, EnvHolder> envHoldersByTestRunner = new HashMap<String, EnvHolder>();
   private static final Map<AndroidManifest, ResourceLoader> resourceLoadersByAppManifest = new HashMap<AndroidManifest, ResourceLoader>();
-
-  private static Class<? extends RobolectricTestRunner> lastTestRunnerClass;
-  private static SdkConfig lastSdkConfig;
-  private static SdkEnvironment lastSdkEnvironment;
+  // SdkEnvironments are shared by every runner with the same environment fingerprint
+  private static final EnvHolder sharedEnvHolder = new EnvHolder();
+  private static final ThreadLocal<EnvHolder> workerEnvHolder = new ThreadLocal<EnvHolder>() {
+    @Override protected EnvHolder initialValue() {
+      return new EnvHolder();
+    }
+  };
 
   private static ShadowMap mainShadowMap;
 
   private final EnvHolder envHolder;
+  private final Map<SdkConfig, String> environmentFingerprints = new ConcurrentHashMap<SdkConfig, String>();
   private DatabaseMap databaseMap;
-  private TestLifecycle<Application> testLifecycle;
+  private boolean noTestsInShard;
+  private boolean parallel;
+  private final ThreadLocal<TestLifecycle<Application>> testLifecycle = new ThreadLocal<TestLifecycle<Application>>();
 
   static {
     new SecureRandom(); // this starts up the Poller SunPKCS11-Darwin thread early, outside of any Robolectric classloader
@@ -90,7 +103,7 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
 
     EnvHolder envHolder;
     synchronized (envHoldersByTestRunner) {
-      Class<? extends RobolectricTestRunner> testRunnerClass = getClass();
+      String testRunnerClass = getClass().getName();
       envHolder = envHoldersByTestRunner.get(testRunnerClass);
       if (envHolder == null) {
         envHolder = new EnvHolder();
@@ -100,12 +113,27 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
     this.envHolder = envHolder;
 
     databaseMap = setupDatabaseMap(testClass, new SQLiteMap());
+
+    ParallelTestScheduler scheduler = ParallelTestScheduler.fromSystemProperties();
+    if (scheduler != null) {
+      setScheduler(scheduler);
+      parallel = true;
+    }
+
+    TestShard shard = TestShard.fromSystemProperties();
+    if (shard != null) {
+      try {
+        filter(shard);
+      } catch (NoTestsRemainException e) {
+        noTestsInShard = true;
+      }
+    }
   }
 
   private void assureTestLifecycle(SdkEnvironment sdkEnvironment) {
     try {
       ClassLoader robolectricClassLoader = sdkEnvironment.getRobolectricClassLoader();
-      testLifecycle = (TestLifecycle) robolectricClassLoader.loadClass(getTestLifecycleClass().getName()).newInstance();
+      testLifecycle.set((TestLifecycle) robolectricClassLoader.loadClass(getTestLifecycleClass().getName()).newInstance());
     } catch (InstantiationException e) {
       throw new RuntimeException(e);
     } catch (IllegalAccessException e) {
@@ -147,7 +175,7 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
 
   protected ClassLoader createRobolectricClassLoader(Setup setup, SdkConfig sdkConfig) {
     URL[] urls = MAVEN_CENTRAL.getLocalArtifactUrls(this, sdkConfig.getSdkClasspathDependencies()).values().toArray(new URL[0]);
-    return new AsmInstrumentingClassLoader(setup, urls);
+    return new AsmInstrumentingClassLoader(setup, sdkConfig, urls);
   }
 
   public static void injectClassHandler(ClassLoader robolectricClassLoader, ClassHandler classHandler) {
@@ -171,6 +199,55 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
     // maybe you want to override this method and some settings?
   }
 
+  @Override public void run(RunNotifier notifier) {
+    if (noTestsInShard) return; // don't bother with @BeforeClass and friends
+
+    DaemonClient daemonClient = DaemonClient.fromSystemProperties();
+    if (daemonClient != null) {
+      daemonClient.run(getTestClass().getJavaClass(), getDescription(), notifier);
+    } else {
+      // worker threads each build their own environments, so there's nothing to share with them
+      if (Prewarmer.isEnabled() && !parallel) prewarm();
+      super.run(notifier);
+    }
+  }
+
+  /**
+   * Starts getting the environment and resources for this class's first test ready in the background, while JUnit
+   * gets on with {@code @BeforeClass} and friends. This happens here rather than in the constructor so that subclass
+   * constructors have run before we call any of their overrides.
+   */
+  private void prewarm() {
+    List<FrameworkMethod> methods = computeTestMethods();
+    if (methods.isEmpty()) return;
+    final Method method = methods.get(0).getMethod();
+
+    Prewarmer.submit(getTestClass().getName(), new Runnable() {
+      @Override public void run() {
+        Config config = getConfig(method);
+        final AndroidManifest appManifest = getAppManifest(config);
+        final SdkEnvironment sdkEnvironment = getCachedEnvironment(environmentHolder(), appManifest, config, false);
+        if (Prewarmer.firstTimeFor(sdkEnvironment)) {
+          Prewarmer.loadProfiledClasses(sdkEnvironment.getRobolectricClassLoader());
+        }
+
+        Prewarmer.submit("resources for " + getTestClass().getName(), new Runnable() {
+          @Override public void run() {
+            ResourceLoader systemResourceLoader = sdkEnvironment.getSystemResourceLoader(MAVEN_CENTRAL, RobolectricTestRunner.this);
+            // any lookup loads all of a package's resources
+            if (Prewarmer.firstTimeFor(systemResourceLoader)) {
+              systemResourceLoader.getValue(new ResName("android", "string", "robolectric_prewarm"), "");
+            }
+            if (appManifest != null && Prewarmer.firstTimeFor(appManifest)) {
+              getAppResourceLoader(systemResourceLoader, appManifest)
+                  .getValue(new ResName(appManifest.getPackageName(), "string", "robolectric_prewarm"), "");
+            }
+          }
+        });
+      }
+    });
+  }
+
   @Override
   protected Statement classBlock(RunNotifier notifier) {
     final Statement statement = super.classBlock(notifier);
@@ -186,106 +263,178 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
     };
   }
 
+  @Override protected void runChild(FrameworkMethod method, RunNotifier notifier) {
+    super.runChild(method, ParallelTestScheduler.notifierFor(notifier));
+  }
+
   @Override protected Statement methodBlock(final FrameworkMethod method) {
     return new Statement() {
       @Override public void evaluate() throws Throwable {
+        TestTimingReport.Timing timing = TestTimingReport.startTest(getTestClass().getName(), method.getName());
         final Config config = getConfig(method.getMethod());
         AndroidManifest appManifest = getAppManifest(config);
-        SdkEnvironment sdkEnvironment = getEnvironment(appManifest, config);
+        timing.lap(TestTimingReport.Phase.CONFIG);
+        final EnvHolder envHolder = environmentHolder();
+        final SdkEnvironment cachedEnvironment = getCachedEnvironment(envHolder, appManifest, config, true);
+        try {
+          SdkEnvironment sdkEnvironment = reloadIfNecessary(cachedEnvironment);
+          timing.lap(TestTimingReport.Phase.ENVIRONMENT);
 
-        // todo: is this really needed?
-        Thread.currentThread().setContextClassLoader(sdkEnvironment.getRobolectricClassLoader());
+          // todo: is this really needed?
+          Thread.currentThread().setContextClassLoader(sdkEnvironment.getRobolectricClassLoader());
 
-        Class bootstrappedTestClass = sdkEnvironment.bootstrappedClass(getTestClass().getJavaClass());
-        HelperTestRunner helperTestRunner;
-        try {
-          helperTestRunner = new HelperTestRunner(bootstrappedTestClass);
-        } catch (InitializationError initializationError) {
-          throw new RuntimeException(initializationError);
-        }
+          Class bootstrappedTestClass = sdkEnvironment.bootstrappedClass(getTestClass().getJavaClass());
+          HelperTestRunner helperTestRunner;
+          try {
+            helperTestRunner = new HelperTestRunner(bootstrappedTestClass);
+          } catch (InitializationError initializationError) {
+            throw new RuntimeException(initializationError);
+          }
 
-        final Method bootstrappedMethod;
-        try {
-          //noinspection unchecked
-          bootstrappedMethod = bootstrappedTestClass.getMethod(method.getName());
-        } catch (NoSuchMethodException e) {
-          throw new RuntimeException(e);
-        }
+          final Method bootstrappedMethod;
+          try {
+            //noinspection unchecked
+            bootstrappedMethod = bootstrappedTestClass.getMethod(method.getName());
+          } catch (NoSuchMethodException e) {
+            throw new RuntimeException(e);
+          }
 
-        configureShadows(sdkEnvironment, config);
-        setupLogging();
+          configureShadows(sdkEnvironment, config);
+          setupLogging();
 
-        ParallelUniverseInterface parallelUniverseInterface = getHooksInterface(sdkEnvironment);
-        try {
-          assureTestLifecycle(sdkEnvironment);
+          ParallelUniverseInterface parallelUniverseInterface = getHooksInterface(sdkEnvironment);
+          try {
+            assureTestLifecycle(sdkEnvironment);
+            timing.lap(TestTimingReport.Phase.BOOTSTRAP);
 
-          parallelUniverseInterface.resetStaticState();
-          parallelUniverseInterface.setDatabaseMap(databaseMap); //Set static DatabaseMap in DBConfig
+            parallelUniverseInterface.resetStaticState();
+            timing.lap(TestTimingReport.Phase.STATIC_RESET);
+            parallelUniverseInterface.setDatabaseMap(databaseMap); //Set static DatabaseMap in DBConfig
 
-          boolean strictI18n = RobolectricTestRunner.determineI18nStrictState(bootstrappedMethod);
+            boolean strictI18n = RobolectricTestRunner.determineI18nStrictState(bootstrappedMethod);
 
-          int sdkVersion = pickReportedSdkVersion(config, appManifest);
-          Class<?> versionClass = sdkEnvironment.bootstrappedClass(Build.VERSION.class);
-          staticField("SDK_INT").ofType(int.class).in(versionClass).set(sdkVersion);
+            int sdkVersion = pickReportedSdkVersion(config, appManifest);
+            Class<?> versionClass = sdkEnvironment.bootstrappedClass(Build.VERSION.class);
+            staticField("SDK_INT").ofType(int.class).in(versionClass).set(sdkVersion);
 
-          ResourceLoader systemResourceLoader = sdkEnvironment.getSystemResourceLoader(MAVEN_CENTRAL, RobolectricTestRunner.this);
-          setUpApplicationState(bootstrappedMethod, parallelUniverseInterface, strictI18n, systemResourceLoader, appManifest);
-          testLifecycle.beforeTest(bootstrappedMethod);
-        } catch (Exception e) {
-          e.printStackTrace();
-          throw new RuntimeException(e);
-        }
+            ResourceLoader systemResourceLoader = sdkEnvironment.getSystemResourceLoader(MAVEN_CENTRAL, RobolectricTestRunner.this);
+            setUpApplicationState(bootstrappedMethod, parallelUniverseInterface, strictI18n, systemResourceLoader, appManifest);
+            testLifecycle.get().beforeTest(bootstrappedMethod);
+          } catch (Exception e) {
+            e.printStackTrace();
+            throw new RuntimeException(e);
+          }
 
-        final Statement statement = helperTestRunner.methodBlock(new FrameworkMethod(bootstrappedMethod));
+          final Statement statement = helperTestRunner.methodBlock(new FrameworkMethod(bootstrappedMethod));
 
-        Map<Field, Object> withConstantAnnos = getWithConstantAnnotations(bootstrappedMethod);
+          Map<Field, Object> withConstantAnnos = getWithConstantAnnotations(bootstrappedMethod);
+          timing.lap(TestTimingReport.Phase.SET_UP);
 
-        // todo: this try/finally probably isn't right -- should mimic RunAfters? [xw]
-        try {
-          if (withConstantAnnos.isEmpty()) {
-            statement.evaluate();
-          } else {
-            synchronized (this) {
-              setupConstants(withConstantAnnos);
+          // todo: this try/finally probably isn't right -- should mimic RunAfters? [xw]
+          try {
+            if (withConstantAnnos.isEmpty()) {
               statement.evaluate();
-              setupConstants(withConstantAnnos);
+            } else {
+              synchronized (this) {
+                setupConstants(withConstantAnnos);
+                statement.evaluate();
+                setupConstants(withConstantAnnos);
+              }
             }
-          }
-        } finally {
-          try {
-            parallelUniverseInterface.tearDownApplication();
           } finally {
+            timing.lap(TestTimingReport.Phase.TEST);
             try {
-              internalAfterTest(bootstrappedMethod);
+              parallelUniverseInterface.tearDownApplication();
             } finally {
-              parallelUniverseInterface.resetStaticState(); // afterward too, so stuff doesn't hold on to classes?
-              // todo: is this really needed?
-              Thread.currentThread().setContextClassLoader(RobolectricTestRunner.class.getClassLoader());
+              try {
+                internalAfterTest(bootstrappedMethod);
+              } finally {
+                timing.lap(TestTimingReport.Phase.TEAR_DOWN);
+                parallelUniverseInterface.resetStaticState(); // afterward too, so stuff doesn't hold on to classes?
+                timing.lap(TestTimingReport.Phase.STATIC_RESET);
+                timing.finish();
+                // todo: is this really needed?
+                Thread.currentThread().setContextClassLoader(RobolectricTestRunner.class.getClassLoader());
+              }
             }
           }
+        } finally {
+          // lets it be unloaded again, along with anything kept over budget because it was in use
+          envHolder.getCache().release(cachedEnvironment);
         }
       }
     };
   }
 
-  private SdkEnvironment getEnvironment(final AndroidManifest appManifest, final Config config) {
-    final SdkConfig sdkConfig = pickSdkVersion(appManifest, config);
+  private SdkEnvironment reloadIfNecessary(SdkEnvironment sdkEnvironment) {
+    ReloadableClasses reloadableClasses = ReloadableClasses.current();
+    return reloadableClasses == null ? sdkEnvironment : reloadableClasses.reload(sdkEnvironment, createSetup());
+  }
 
-    // keep the most recently-used SdkEnvironment strongly reachable to prevent thrashing in low-memory situations.
-    if (getClass().equals(lastTestRunnerClass) && sdkConfig.equals(sdkConfig)) {
-      return lastSdkEnvironment;
-    }
+  private EnvHolder environmentHolder() {
+    // each worker thread needs its own class loaders, since Android's static state lives in them
+    return ParallelTestScheduler.isWorkerThread() ? workerEnvHolder.get() : sharedEnvHolder;
+  }
 
-    lastTestRunnerClass = null;
-    lastSdkConfig = null;
-    lastSdkEnvironment = envHolder.getSdkEnvironment(sdkConfig, new SdkEnvironment.Factory() {
+  /**
+   * @param acquire whether to keep the environment from being unloaded until it's released
+   */
+  private SdkEnvironment getCachedEnvironment(EnvHolder holder, final AndroidManifest appManifest, final Config config, boolean acquire) {
+    final SdkConfig sdkConfig = pickSdkVersion(appManifest, config);
+    SdkEnvironment.Factory factory = new SdkEnvironment.Factory() {
       @Override public SdkEnvironment create() {
         return createSdkEnvironment(sdkConfig);
       }
-    });
-    lastTestRunnerClass = getClass();
-    lastSdkConfig = sdkConfig;
-    return lastSdkEnvironment;
+    };
+    String fingerprint = getEnvironmentFingerprint(sdkConfig);
+    return acquire
+        ? holder.acquireSdkEnvironment(fingerprint, sdkConfig, factory)
+        : holder.getSdkEnvironment(fingerprint, sdkConfig, factory);
+  }
+
+  private String getEnvironmentFingerprint(SdkConfig sdkConfig) {
+    String fingerprint = environmentFingerprints.get(sdkConfig);
+    if (fingerprint == null) {
+      fingerprint = environmentFingerprint(sdkConfig);
+      environmentFingerprints.put(sdkConfig, fingerprint);
+    }
+    return fingerprint;
+  }
+
+  /**
+   * Identifies the {@link SdkEnvironment} this runner would create for {@code sdkConfig}. Runners with the same
+   * fingerprint share environments, and so instrument the SDK and load its resources only once between them.
+   *
+   * The fingerprint covers the SDK, the {@link Setup}, the classpath, and which classes, if any, override
+   * {@link #createSdkEnvironment(SdkConfig)}, {@link #createRobolectricClassLoader(Setup, SdkConfig)} and
+   * {@link #createClassHandler(ShadowMap)}. Override this if your runner changes its environments in some other way.
+   */
+  protected String environmentFingerprint(SdkConfig sdkConfig) {
+    StringBuilder buf = new StringBuilder();
+    buf.append(sdkConfig.getArtifactVersionString()).append('\n');
+    buf.append(createSetup().fingerprint());
+    buf.append(declaringClassOf("createSdkEnvironment", SdkConfig.class).getName()).append('\n');
+    buf.append(declaringClassOf("createRobolectricClassLoader", Setup.class, SdkConfig.class).getName()).append('\n');
+    buf.append(declaringClassOf("createClassHandler", ShadowMap.class).getName()).append('\n');
+    List<String> urls = new ArrayList<String>();
+    for (URL url : MAVEN_CENTRAL.getLocalArtifactUrls(this, sdkConfig.getSdkClasspathDependencies()).values()) {
+      urls.add(url.toString());
+    }
+    Collections.sort(urls);
+    buf.append(urls).append('\n');
+    return buf.toString();
+  }
+
+  private Class<?> declaringClassOf(String methodName, Class<?>... parameterTypes) {
+    for (Class<?> clazz = getClass(); clazz != RobolectricTestRunner.class; clazz = clazz.getSuperclass()) {
+      try {
+        clazz.getDeclaredMethod(methodName, parameterTypes);
+        return clazz;
+      } catch (NoSuchMethodException e) {
+        // keep looking
+      }
+    }
+    return RobolectricTestRunner.class;
   }
 
   protected SdkConfig pickSdkVersion(AndroidManifest appManifest, Config config) {
@@ -298,8 +447,7 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
       int useSdkVersion = appManifest.getTargetSdkVersion();
     }
 
-    // right now we only have real jars for Ice Cream Sandwich aka 4.1 aka API 16
-    return new SdkConfig("4.1.2_r1_rc");
+    return new SdkConfig(SdkConfig.DEFAULT_ARTIFACT_VERSION);
   }
 
   protected AndroidManifest getAppManifest(Config config) {
@@ -378,10 +526,11 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
 
   private ClassHandler getClassHandler(SdkEnvironment sdkEnvironment, ShadowMap shadowMap) {
     ClassHandler classHandler;
-    synchronized (sdkEnvironment) {
+    synchronized (sdkEnvironment.classHandlersByShadowMap) {
       classHandler = sdkEnvironment.classHandlersByShadowMap.get(shadowMap);
       if (classHandler == null) {
         classHandler = createClassHandler(shadowMap);
+        sdkEnvironment.classHandlersByShadowMap.put(shadowMap, classHandler);
       }
       sdkEnvironment.setCurrentClassHandler(classHandler);
     }
@@ -389,7 +538,7 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
   }
 
   protected void setUpApplicationState(Method method, ParallelUniverseInterface parallelUniverseInterface, boolean strictI18n, ResourceLoader systemResourceLoader, AndroidManifest appManifest) {
-    parallelUniverseInterface.setUpApplicationState(method, testLifecycle, strictI18n, systemResourceLoader, appManifest);
+    parallelUniverseInterface.setUpApplicationState(method, testLifecycle.get(), strictI18n, systemResourceLoader, appManifest);
   }
 
   private int getTargetSdkVersion(AndroidManifest appManifest) {
@@ -425,17 +574,21 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
   }
 
   public void internalAfterTest(final Method method) {
-    testLifecycle.afterTest(method);
+    try {
+      testLifecycle.get().afterTest(method);
+    } finally {
+      if (ParallelTestScheduler.isWorkerThread()) testLifecycle.remove();
+    }
   }
 
   private void afterClass() {
-    testLifecycle = null;
+    testLifecycle.remove();
     databaseMap = null;
   }
 
   @TestOnly
   boolean allStateIsCleared() {
-    return testLifecycle == null && databaseMap == null;
+    return testLifecycle.get() == null && databaseMap == null;
   }
 
   @Override
@@ -577,12 +730,23 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
   }
 
   public static ResourceLoader getAppResourceLoader(ResourceLoader systemResourceLoader, final AndroidManifest appManifest) {
-    ResourceLoader resourceLoader = resourceLoadersByAppManifest.get(appManifest);
-    if (resourceLoader == null) {
-      resourceLoader = createAppResourceLoader(systemResourceLoader, appManifest);
-      resourceLoadersByAppManifest.put(appManifest, resourceLoader);
+    synchronized (resourceLoadersByAppManifest) {
+      ResourceLoader resourceLoader = resourceLoadersByAppManifest.get(appManifest);
+      if (resourceLoader == null) {
+        resourceLoader = createAppResourceLoader(systemResourceLoader, appManifest);
+        resourceLoadersByAppManifest.put(appManifest, resourceLoader);
+      }
+      return resourceLoader;
+    }
+  }
+
+  /**
+   * Forgets app resource loaders, so changed resources and R classes are picked up on the next test.
+   */
+  public static void clearAppResourceLoaders() {
+    synchronized (resourceLoadersByAppManifest) {
+      resourceLoadersByAppManifest.clear();
     }
-    return resourceLoader;
   }
 
   protected static ResourceLoader createAppResourceLoader(ResourceLoader systemResourceLoader, AndroidManifest appManifest) {
@@ -671,7 +835,7 @@ public class RobolectricTestRunner extends BlockJUnit4ClassRunner {
 
     @Override protected Object createTest() throws Exception {
       Object test = super.createTest();
-      testLifecycle.prepareTest(test);
+      testLifecycle.get().prepareTest(test);
       return test;
     }
 
@@ -3,6 +3,9 @@ package org.robolectric;
 import org.apache.maven.model.Dependency;
 
 public class SdkConfig {
+  // right now we only have real jars for Ice Cream Sandwich aka 4.1 aka API 16
+  public static final String DEFAULT_ARTIFACT_VERSION = "4.1.2_r1_rc";
+
   private final String artifactVersionString;
 
   public SdkConfig(String artifactVersionString) {
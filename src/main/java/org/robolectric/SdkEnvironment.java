@@ -1,5 +1,6 @@
 package org.robolectric;
 
+import org.robolectric.bytecode.AsmInstrumentingClassLoader;
 import org.robolectric.bytecode.ClassHandler;
 import org.robolectric.bytecode.ShadowMap;
 import org.robolectric.bytecode.ShadowWrangler;
@@ -16,13 +17,32 @@ import java.util.Map;
 public class SdkEnvironment {
   private final SdkConfig sdkConfig;
   private final ClassLoader robolectricClassLoader;
-  public final Map<ShadowMap, ShadowWrangler> classHandlersByShadowMap = new HashMap<ShadowMap, ShadowWrangler>();
+  private final SdkEnvironment parent;
+  public final Map<ShadowMap, ClassHandler> classHandlersByShadowMap;
   private ClassHandler currentClassHandler;
   private ResourceLoader systemResourceLoader;
 
   public SdkEnvironment(SdkConfig sdkConfig, ClassLoader robolectricClassLoader) {
     this.sdkConfig = sdkConfig;
     this.robolectricClassLoader = robolectricClassLoader;
+    this.parent = null;
+    this.classHandlersByShadowMap = new HashMap<ShadowMap, ClassHandler>();
+  }
+
+  private SdkEnvironment(SdkEnvironment parent, ClassLoader robolectricClassLoader) {
+    this.sdkConfig = parent.sdkConfig;
+    this.robolectricClassLoader = robolectricClassLoader;
+    this.parent = parent;
+    this.classHandlersByShadowMap = new HashMap<ShadowMap, ClassHandler>();
+  }
+
+  /**
+   * Creates an environment which loads classes through {@code childClassLoader}, a child of this environment's
+   * class loader, and shares this environment's system resources. It gets class handlers of its own, since theirs
+   * cache the classes they've seen, and would otherwise keep the child class loader alive after it's been replaced.
+   */
+  public SdkEnvironment withChildClassLoader(ClassLoader childClassLoader) {
+    return new SdkEnvironment(this, childClassLoader);
   }
 
   public PackageResourceLoader createSystemResourceLoader(MavenCentral mavenCentral, RobolectricTestRunner robolectricTestRunner) {
@@ -34,6 +54,7 @@ public class SdkEnvironment {
   }
 
   public synchronized ResourceLoader getSystemResourceLoader(MavenCentral mavenCentral, RobolectricTestRunner robolectricTestRunner) {
+    if (parent != null) return parent.getSystemResourceLoader(mavenCentral, robolectricTestRunner);
     if (systemResourceLoader == null) {
       systemResourceLoader = createSystemResourceLoader(mavenCentral, robolectricTestRunner);
     }
@@ -52,6 +73,32 @@ public class SdkEnvironment {
     return robolectricClassLoader;
   }
 
+  /**
+   * @return roughly how many bytes this environment keeps alive, judged by the classes its loader has defined
+   */
+  public long getEstimatedSize() {
+    return robolectricClassLoader instanceof AsmInstrumentingClassLoader
+        ? ((AsmInstrumentingClassLoader) robolectricClassLoader).getDefinedClassBytes() : 0;
+  }
+
+  /**
+   * Lets go of the class handlers and resources this environment was holding on to, so that once nothing else
+   * refers to it, its class loader and everything loaded into it can be collected.
+   */
+  public void unload() {
+    synchronized (classHandlersByShadowMap) {
+      for (ClassHandler classHandler : classHandlersByShadowMap.values()) {
+        if (classHandler instanceof ShadowWrangler) ((ShadowWrangler) classHandler).clearCaches();
+        if (parent != null) parent.forgetCurrentClassHandler(classHandler);
+      }
+      classHandlersByShadowMap.clear();
+    }
+    synchronized (this) {
+      currentClassHandler = null;
+      systemResourceLoader = null;
+    }
+  }
+
   /**
    * @deprecated use {@link org.robolectric.Robolectric.Reflection#setFinalStaticField(Class, String, Object)}
    */
@@ -60,11 +107,19 @@ public class SdkEnvironment {
   }
 
   public ClassHandler getCurrentClassHandler() {
-    return currentClassHandler;
+    return parent == null ? currentClassHandler : parent.getCurrentClassHandler();
+  }
+
+  private synchronized void forgetCurrentClassHandler(ClassHandler classHandler) {
+    if (currentClassHandler == classHandler) currentClassHandler = null;
   }
 
   public void setCurrentClassHandler(ClassHandler currentClassHandler) {
-    this.currentClassHandler = currentClassHandler;
+    if (parent != null) {
+      parent.setCurrentClassHandler(currentClassHandler);
+    } else {
+      this.currentClassHandler = currentClassHandler;
+    }
   }
 
   public interface Factory {
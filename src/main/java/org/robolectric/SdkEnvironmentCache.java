@@ -0,0 +1,180 @@
+package org.robolectric;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps track of every live {@link SdkEnvironment}, whichever {@link EnvHolder} it's in, and unloads the least
+ * recently used ones when there are too many of them or they're estimated to take up too much memory.
+ *
+ * Configure with the system properties {@code robolectric.sdkEnvironments.max} (default 4, or 4 per worker thread
+ * with {@link ParallelTestScheduler}, since each worker has its own environments) and
+ * {@code robolectric.sdkEnvironments.maxMegabytes} (by default there's no limit). Sizes are estimated from the
+ * class files each environment has loaded, see {@link SdkEnvironment#getEstimatedSize()}. The environment just
+ * used is never unloaded, however big it is, and neither is any environment a test is running in (see
+ * {@link EnvHolder#acquireSdkEnvironment}) until it's {@link #release(SdkEnvironment) released}, so budgets can
+ * be exceeded while more tests are running than the budget allows for.
+ */
+public class SdkEnvironmentCache {
+  public static final String MAX_ENVIRONMENTS_PROPERTY = "robolectric.sdkEnvironments.max";
+  public static final String MAX_MEGABYTES_PROPERTY = "robolectric.sdkEnvironments.maxMegabytes";
+  private static final int DEFAULT_MAX_ENVIRONMENTS = 4;
+
+  private static SdkEnvironmentCache instance;
+
+  private final int maxEnvironments;
+  private final long maxBytes;
+  // least recently used first
+  private final LinkedHashMap<SdkEnvironment, Owner> liveEnvironments = new LinkedHashMap<SdkEnvironment, Owner>(16, 0.75f, true);
+  // how many tests are running in each environment; kept apart from liveEnvironments, which reorders on lookup
+  private final Map<SdkEnvironment, Integer> useCounts = new HashMap<SdkEnvironment, Integer>();
+  private long hitCount;
+  private long buildCount;
+  private long rebuildCount;
+  private long evictionCount;
+
+  public SdkEnvironmentCache(int maxEnvironments, long maxBytes) {
+    if (maxEnvironments < 1) throw new IllegalArgumentException("must allow at least one SdkEnvironment");
+    this.maxEnvironments = maxEnvironments;
+    this.maxBytes = maxBytes;
+  }
+
+  public static synchronized SdkEnvironmentCache getInstance() {
+    if (instance == null) {
+      String maxEnvironments = System.getProperty(MAX_ENVIRONMENTS_PROPERTY);
+      String maxMegabytes = System.getProperty(MAX_MEGABYTES_PROPERTY);
+      String threads = System.getProperty(ParallelTestScheduler.THREADS_PROPERTY);
+      int defaultMaxEnvironments = DEFAULT_MAX_ENVIRONMENTS * (threads == null || threads.length() == 0 ? 1 : Math.max(1, Integer.parseInt(threads)));
+      instance = new SdkEnvironmentCache(
+          maxEnvironments == null || maxEnvironments.length() == 0 ? defaultMaxEnvironments : Integer.parseInt(maxEnvironments),
+          maxMegabytes == null || maxMegabytes.length() == 0 ? 0 : Long.parseLong(maxMegabytes) * 1024 * 1024);
+    }
+    return instance;
+  }
+
+  /**
+   * @return false if the environment was unloaded since its holder last looked, so a new one is needed
+   */
+  synchronized boolean used(SdkEnvironment sdkEnvironment, boolean acquire) {
+    if (liveEnvironments.get(sdkEnvironment) == null) return false; // get() also moves it to the end
+    hitCount++;
+    if (acquire) acquire(sdkEnvironment);
+    evictIfNecessary(sdkEnvironment);
+    return true;
+  }
+
+  synchronized void added(SdkEnvironment sdkEnvironment, EnvHolder envHolder, String fingerprint, SdkConfig sdkConfig, boolean rebuilt, boolean acquire) {
+    buildCount++;
+    if (rebuilt) rebuildCount++;
+    liveEnvironments.put(sdkEnvironment, new Owner(envHolder, fingerprint, sdkConfig));
+    if (acquire) acquire(sdkEnvironment);
+    evictIfNecessary(sdkEnvironment);
+  }
+
+  private void acquire(SdkEnvironment sdkEnvironment) {
+    Integer useCount = useCounts.get(sdkEnvironment);
+    useCounts.put(sdkEnvironment, useCount == null ? 1 : useCount + 1);
+  }
+
+  /**
+   * Says a test acquired with {@link EnvHolder#acquireSdkEnvironment} is done with its environment, which may then
+   * be unloaded to make room for others.
+   */
+  public synchronized void release(SdkEnvironment sdkEnvironment) {
+    Integer useCount = useCounts.get(sdkEnvironment);
+    if (useCount == null) throw new IllegalStateException(sdkEnvironment + " isn't in use");
+    if (useCount > 1) {
+      useCounts.put(sdkEnvironment, useCount - 1);
+    } else {
+      useCounts.remove(sdkEnvironment);
+      evictIfNecessary(null); // catch up on anything we couldn't unload while it was in use
+    }
+  }
+
+  public synchronized boolean isInUse(SdkEnvironment sdkEnvironment) {
+    return useCounts.containsKey(sdkEnvironment);
+  }
+
+  private void evictIfNecessary(SdkEnvironment justUsed) {
+    if (justUsed == null) justUsed = mostRecentlyUsed();
+
+    List<SdkEnvironment> evicted = new ArrayList<SdkEnvironment>();
+    int liveCount = liveEnvironments.size();
+    long liveBytes = maxBytes > 0 ? getEstimatedRetainedBytes() : 0;
+    for (SdkEnvironment sdkEnvironment : liveEnvironments.keySet()) {
+      boolean overBudget = liveCount > maxEnvironments || (maxBytes > 0 && liveBytes > maxBytes);
+      if (!overBudget) break;
+      if (sdkEnvironment == justUsed || useCounts.containsKey(sdkEnvironment)) continue;
+
+      evicted.add(sdkEnvironment);
+      liveCount--;
+      liveBytes -= sdkEnvironment.getEstimatedSize();
+    }
+
+    for (SdkEnvironment sdkEnvironment : evicted) {
+      Owner owner = liveEnvironments.remove(sdkEnvironment);
+      evictionCount++;
+      owner.envHolder.evicted(owner.fingerprint, sdkEnvironment);
+      sdkEnvironment.unload();
+    }
+  }
+
+  private SdkEnvironment mostRecentlyUsed() {
+    SdkEnvironment last = null;
+    for (SdkEnvironment sdkEnvironment : liveEnvironments.keySet()) {
+      last = sdkEnvironment;
+    }
+    return last;
+  }
+
+  public synchronized int getLiveCount() {
+    return liveEnvironments.size();
+  }
+
+  public synchronized long getEstimatedRetainedBytes() {
+    long bytes = 0;
+    for (SdkEnvironment sdkEnvironment : liveEnvironments.keySet()) {
+      bytes += sdkEnvironment.getEstimatedSize();
+    }
+    return bytes;
+  }
+
+  public synchronized long getHitCount() {
+    return hitCount;
+  }
+
+  public synchronized long getBuildCount() {
+    return buildCount;
+  }
+
+  /**
+   * @return how many environments had to be built again after being unloaded
+   */
+  public synchronized long getRebuildCount() {
+    return rebuildCount;
+  }
+
+  public synchronized long getEvictionCount() {
+    return evictionCount;
+  }
+
+  @Override public synchronized String toString() {
+    return "SdkEnvironmentCache{live=" + liveEnvironments.size() + ", inUse=" + useCounts.size() + ", estimatedRetainedBytes=" + getEstimatedRetainedBytes()
+        + ", hits=" + hitCount + ", builds=" + buildCount + ", rebuilds=" + rebuildCount + ", evictions=" + evictionCount + "}";
+  }
+
+  private static class Owner {
+    final EnvHolder envHolder;
+    final String fingerprint;
+    final SdkConfig sdkConfig;
+
+    Owner(EnvHolder envHolder, String fingerprint, SdkConfig sdkConfig) {
+      this.envHolder = envHolder;
+      this.fingerprint = fingerprint;
+      this.sdkConfig = sdkConfig;
+    }
+  }
+}
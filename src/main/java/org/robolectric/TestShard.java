@@ -0,0 +1,161 @@
+package org.robolectric;
+
+import org.junit.runner.Description;
+import org.junit.runner.manipulation.Filter;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Picks out one of several disjoint shards of a test suite, so a suite can be split across machines.
+ *
+ * Set the system properties {@code robolectric.shard.count} to the number of shards and
+ * {@code robolectric.shard.index} to this machine's shard, from 0. Each test method lands in a shard chosen by
+ * hashing its class and method names, which doesn't change between runs or machines.
+ *
+ * To even out shards with a few slow tests, point {@code robolectric.shard.timings} at timings from an earlier run:
+ * a CSV file whose lines start with {@code className#methodName} and end with that test's time in milliseconds,
+ * like the report written with {@code robolectric.timings.report}. Tests in the file are spread over the shards
+ * slowest first, each going to the shard with the least time so far; tests that aren't in it are hashed as usual.
+ * Every machine must use the same file.
+ */
+public class TestShard extends Filter {
+  public static final String INDEX_PROPERTY = "robolectric.shard.index";
+  public static final String COUNT_PROPERTY = "robolectric.shard.count";
+  public static final String TIMINGS_PROPERTY = "robolectric.shard.timings";
+
+  private static final Map<File, Map<String, Integer>> assignmentsByTimingsFile = new HashMap<File, Map<String, Integer>>();
+
+  private final int index;
+  private final int count;
+  private final Map<String, Integer> assignments;
+
+  public TestShard(int index, int count, Map<String, Integer> assignments) {
+    if (count < 1 || index < 0 || index >= count) {
+      throw new IllegalArgumentException("bad shard " + index + " of " + count);
+    }
+    this.index = index;
+    this.count = count;
+    this.assignments = assignments;
+  }
+
+  /**
+   * @return the shard to run, or null if sharding wasn't requested
+   */
+  public static TestShard fromSystemProperties() {
+    String countStr = System.getProperty(COUNT_PROPERTY);
+    if (countStr == null || countStr.length() == 0) return null;
+
+    int count = Integer.parseInt(countStr);
+    String indexStr = System.getProperty(INDEX_PROPERTY);
+    if (indexStr == null || indexStr.length() == 0) {
+      throw new IllegalArgumentException(COUNT_PROPERTY + " is set but " + INDEX_PROPERTY + " isn't");
+    }
+    int index = Integer.parseInt(indexStr);
+
+    String timingsPath = System.getProperty(TIMINGS_PROPERTY);
+    Map<String, Integer> assignments = Collections.emptyMap();
+    if (timingsPath != null && timingsPath.length() > 0) {
+      assignments = assignmentsFor(new File(timingsPath), count);
+    }
+    return new TestShard(index, count, assignments);
+  }
+
+  private static Map<String, Integer> assignmentsFor(File timingsFile, int count) {
+    synchronized (assignmentsByTimingsFile) {
+      Map<String, Integer> assignments = assignmentsByTimingsFile.get(timingsFile);
+      if (assignments == null) {
+        try {
+          assignments = assign(readTimings(timingsFile), count);
+        } catch (IOException e) {
+          throw new RuntimeException("couldn't read test timings from " + timingsFile, e);
+        }
+        assignmentsByTimingsFile.put(timingsFile, assignments);
+      }
+      return assignments;
+    }
+  }
+
+  static Map<String, Long> readTimings(File timingsFile) throws IOException {
+    Map<String, Long> timings = new HashMap<String, Long>();
+    BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(timingsFile), "UTF-8"));
+    try {
+      String line;
+      while ((line = in.readLine()) != null) {
+        int firstComma = line.indexOf(',');
+        int lastComma = line.lastIndexOf(',');
+        if (firstComma == -1 || line.indexOf('#') == -1) continue; // headers and the like
+
+        String testName = line.substring(0, firstComma).trim();
+        try {
+          long millis = Math.round(Double.parseDouble(line.substring(lastComma + 1).trim()));
+          Long previous = timings.get(testName);
+          timings.put(testName, previous == null ? millis : previous + millis);
+        } catch (NumberFormatException e) {
+          // not a timing
+        }
+      }
+    } finally {
+      in.close();
+    }
+    return timings;
+  }
+
+  /**
+   * Spreads timed tests over {@code count} shards, longest first, each to the shard with the least time so far.
+   * Ties are broken by name and by shard index, so every machine comes up with the same answer.
+   */
+  static Map<String, Integer> assign(final Map<String, Long> timings, int count) {
+    List<String> testNames = new ArrayList<String>(timings.keySet());
+    Collections.sort(testNames, new Comparator<String>() {
+      @Override public int compare(String a, String b) {
+        int byTime = timings.get(b).compareTo(timings.get(a));
+        return byTime != 0 ? byTime : a.compareTo(b);
+      }
+    });
+
+    long[] shardMillis = new long[count];
+    Map<String, Integer> assignments = new HashMap<String, Integer>();
+    for (String testName : testNames) {
+      int lightest = 0;
+      for (int i = 1; i < count; i++) {
+        if (shardMillis[i] < shardMillis[lightest]) lightest = i;
+      }
+      shardMillis[lightest] += timings.get(testName);
+      assignments.put(testName, lightest);
+    }
+    return assignments;
+  }
+
+  public int shardFor(String className, String methodName) {
+    String testName = className + "#" + methodName;
+    Integer assigned = assignments.get(testName);
+    if (assigned != null) return assigned;
+
+    int hash = testName.hashCode() * 0x9E3779B9; // spread out names which only differ at the end
+    return (hash >>> 1) % count;
+  }
+
+  @Override public boolean shouldRun(Description description) {
+    if (description.isTest()) {
+      return shardFor(description.getClassName(), description.getMethodName()) == index;
+    }
+    for (Description child : description.getChildren()) {
+      if (shouldRun(child)) return true;
+    }
+    return false;
+  }
+
+  @Override public String describe() {
+    return "shard " + index + " of " + count;
+  }
+}
@@ -0,0 +1,204 @@
+package org.robolectric;
+
+import org.robolectric.bytecode.AsmInstrumentingClassLoader;
+import org.robolectric.bytecode.ShadowWrangler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Records how long each phase of each test took, and writes it all out when the JVM exits.
+ *
+ * Enable by setting the system property {@code robolectric.timings.report} to the file to write. If it ends in
+ * {@code .json} you'll get JSON, otherwise CSV with one line per test, starting with {@code className#methodName}
+ * and ending with the total in milliseconds, which {@link TestShard} can use to balance shards.
+ *
+ * Class and shadow counts are deltas of JVM-wide counters, so with parallel execution they include whatever other
+ * tests were doing at the same time.
+ */
+public class TestTimingReport {
+  public static final String REPORT_PROPERTY = "robolectric.timings.report";
+
+  public enum Phase {
+    CONFIG("config"),
+    ENVIRONMENT("environment"),
+    BOOTSTRAP("bootstrap"),
+    SET_UP("setUp"),
+    TEST("test"),
+    TEAR_DOWN("tearDown"),
+    STATIC_RESET("staticReset");
+
+    final String key;
+
+    Phase(String key) {
+      this.key = key;
+    }
+  }
+
+  private static final Timing NOT_TIMING = new Timing(null) {
+    @Override public void lap(Phase phase) {
+    }
+
+    @Override public void finish() {
+    }
+  };
+  private static TestTimingReport instance;
+
+  private final File reportFile;
+  private final List<Timing> timings = new ArrayList<Timing>();
+
+  TestTimingReport(File reportFile) {
+    this.reportFile = reportFile;
+  }
+
+  /**
+   * Starts timing a test. Call {@link Timing#lap(Phase)} at the end of each phase and {@link Timing#finish()} when
+   * the test is done.
+   */
+  public static Timing startTest(String className, String methodName) {
+    TestTimingReport report = fromSystemProperties();
+    return report == null ? NOT_TIMING : new Timing(report).start(className + "#" + methodName);
+  }
+
+  static synchronized TestTimingReport fromSystemProperties() {
+    if (instance == null) {
+      String path = System.getProperty(REPORT_PROPERTY);
+      if (path == null || path.length() == 0) return null;
+
+      final TestTimingReport report = new TestTimingReport(new File(path));
+      Runtime.getRuntime().addShutdownHook(new Thread("robolectric-timings") {
+        @Override public void run() {
+          try {
+            report.write();
+          } catch (IOException e) {
+            System.err.println("[WARN] couldn't write test timings to " + report.reportFile + ": " + e);
+          }
+        }
+      });
+      instance = report;
+    }
+    return instance;
+  }
+
+  synchronized void add(Timing timing) {
+    timings.add(timing);
+  }
+
+  void write() throws IOException {
+    File parent = reportFile.getAbsoluteFile().getParentFile();
+    if (parent != null && !parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("couldn't create " + parent);
+    }
+    Writer out = new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8");
+    try {
+      if (reportFile.getName().endsWith(".json")) {
+        writeJson(out);
+      } else {
+        writeCsv(out);
+      }
+    } finally {
+      out.close();
+    }
+  }
+
+  synchronized void writeCsv(Writer out) throws IOException {
+    out.write("test");
+    for (Phase phase : Phase.values()) {
+      out.write("," + phase.key + "Millis");
+    }
+    out.write(",classesLoaded,classesInstrumented,shadowsCreated,totalMillis\n");
+
+    for (Timing timing : timings) {
+      out.write(timing.testName);
+      for (Phase phase : Phase.values()) {
+        out.write("," + millis(timing.phaseNanos[phase.ordinal()]));
+      }
+      out.write("," + timing.classesLoaded + "," + timing.classesInstrumented + "," + timing.shadowsCreated
+          + "," + millis(timing.totalNanos) + "\n");
+    }
+  }
+
+  synchronized void writeJson(Writer out) throws IOException {
+    out.write("{\"tests\":[");
+    for (int i = 0; i < timings.size(); i++) {
+      Timing timing = timings.get(i);
+      out.write(i == 0 ? "\n" : ",\n");
+      out.write("  {\"test\":" + jsonString(timing.testName) + ",\"phaseMillis\":{");
+      for (Phase phase : Phase.values()) {
+        if (phase.ordinal() > 0) out.write(",");
+        out.write("\"" + phase.key + "\":" + millis(timing.phaseNanos[phase.ordinal()]));
+      }
+      out.write("},\"classesLoaded\":" + timing.classesLoaded + ",\"classesInstrumented\":" + timing.classesInstrumented
+          + ",\"shadowsCreated\":" + timing.shadowsCreated + ",\"totalMillis\":" + millis(timing.totalNanos) + "}");
+    }
+    out.write("\n]}\n");
+  }
+
+  private static String millis(long nanos) {
+    return String.format(Locale.US, "%.3f", nanos / 1e6);
+  }
+
+  private static String jsonString(String value) {
+    StringBuilder buf = new StringBuilder("\"");
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c == '"' || c == '\\') {
+        buf.append('\\').append(c);
+      } else if (c < 0x20) {
+        buf.append(String.format("\\u%04x", (int) c));
+      } else {
+        buf.append(c);
+      }
+    }
+    return buf.append('"').toString();
+  }
+
+  /** The phases of one test, timed on the thread running it. */
+  public static class Timing {
+    private final TestTimingReport report;
+    private final long[] phaseNanos = new long[Phase.values().length];
+    private String testName;
+    private long startNanos;
+    private long lapNanos;
+    private long totalNanos;
+    private long classesLoaded;
+    private long classesInstrumented;
+    private long shadowsCreated;
+
+    Timing(TestTimingReport report) {
+      this.report = report;
+    }
+
+    Timing start(String testName) {
+      this.testName = testName;
+      classesLoaded = -AsmInstrumentingClassLoader.getLoadedClassCount();
+      classesInstrumented = -AsmInstrumentingClassLoader.getInstrumentedClassCount();
+      shadowsCreated = -ShadowWrangler.getCreatedShadowCount();
+      startNanos = lapNanos = System.nanoTime();
+      return this;
+    }
+
+    /**
+     * Charges the time since the last lap to {@code phase}. Phases may be charged more than once.
+     */
+    public void lap(Phase phase) {
+      long now = System.nanoTime();
+      phaseNanos[phase.ordinal()] += now - lapNanos;
+      lapNanos = now;
+    }
+
+    public void finish() {
+      totalNanos = System.nanoTime() - startNanos;
+      classesLoaded += AsmInstrumentingClassLoader.getLoadedClassCount();
+      classesInstrumented += AsmInstrumentingClassLoader.getInstrumentedClassCount();
+      shadowsCreated += ShadowWrangler.getCreatedShadowCount();
+      report.add(this);
+    }
+  }
+}
@@ -23,6 +23,10 @@ import org.objectweb.asm.tree.TypeInsnNode;
 import org.objectweb.asm.util.CheckClassAdapter;
 import org.objectweb.asm.util.TraceClassVisitor;
 
+import org.robolectric.SdkConfig;
+import org.robolectric.util.Util;
+
+import java.io.ByteArrayOutputStream;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -33,12 +37,16 @@ import java.lang.reflect.Modifier;
 import java.net.URL;
 import java.net.URLClassLoader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.objectweb.asm.Type.*;
 import static org.robolectric.util.Util.readBytes;
@@ -49,49 +57,160 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
   private static final Type STRING_TYPE = getType(String.class);
   private static final Type ROBOLECTRIC_INTERNALS_TYPE = Type.getType(RobolectricInternals.class);
   private static final Type PLAN_TYPE = Type.getType(ClassHandler.Plan.class);
+  private static final Type SPECIALIZED_PLAN_TYPE = Type.getType(SpecializedPlan.class);
   private static final Type THROWABLE_TYPE = Type.getType(Throwable.class);
   private static final Method INITIALIZING_METHOD = new Method("initializing", "(Ljava/lang/Object;)Ljava/lang/Object;");
-  private static final Method METHOD_INVOKED_METHOD = new Method("methodInvoked", "(Ljava/lang/String;ZLjava/lang/Class;)L" + PLAN_TYPE.getInternalName() + ";");
+  private static final Type STATIC_STATE_TYPE = Type.getType(StaticState.class);
+  private static final Method STATIC_SNAPSHOT_METHOD = new Method("snapshot", "(Ljava/lang/Class;)V");
+  private static final Method STATIC_WRITTEN_METHOD = new Method("written", "(Ljava/lang/String;)V");
+  private static final Type CACHED_PLAN_TYPE = Type.getType(RobolectricInternals.CachedPlan.class);
+  private static final Method CACHE_PLAN_METHOD = new Method("cachePlan", "(Ljava/lang/String;ZLjava/lang/Class;)" + CACHED_PLAN_TYPE.getDescriptor());
+  private static final Method IS_CURRENT_METHOD = new Method("isCurrent", "()Z");
+  private static final Method GET_PLAN_METHOD = new Method("getPlan", "()" + PLAN_TYPE.getDescriptor());
   private static final Method PLAN_RUN_METHOD = new Method("run", OBJECT_TYPE, new Type[]{OBJECT_TYPE, OBJECT_TYPE, Type.getType(Object[].class)});
   private static final Method HANDLE_EXCEPTION_METHOD = new Method("cleanStackTrace", THROWABLE_TYPE, new Type[]{THROWABLE_TYPE});
   private static final String DIRECT_OBJECT_MARKER_TYPE_DESC = Type.getObjectType(DirectObjectMarker.class.getName().replace('.', '/')).getDescriptor();
   private static final String ROBO_INIT_METHOD_NAME = "$$robo$init";
   static final String GET_ROBO_DATA_METHOD_NAME = "$$robo$getData";
   private static final String GET_ROBO_DATA_SIGNATURE = "()Ljava/lang/Object;";
+  private static final String CACHED_PLAN_FIELD_PREFIX = "$$robo$plan$";
 
   private static boolean debug = false;
+  private static final AtomicLong loadedClassCount = new AtomicLong();
+  private static final AtomicLong instrumentedClassCount = new AtomicLong();
+
+  static {
+    registerAsParallelCapableIfPossible();
+  }
 
   private final Setup setup;
   private final URLClassLoader urls;
-  private final Map<String, Class> classes = new HashMap<String, Class>();
+  private final ConcurrentMap<String, Class> classes = new ConcurrentHashMap<String, Class>();
+  private final ConcurrentMap<String, Object> classLoadingLocks = new ConcurrentHashMap<String, Object>();
   private final Set<Setup.MethodRef> methodsToIntercept;
   private final Map<String, String> classesToRemap;
+  private final InstrumentedClassCache instrumentedClassCache;
+  private final PreinstrumentedJar preinstrumentedJar;
+  private final AtomicLong definedClassBytes = new AtomicLong();
+  private volatile Set<String> refusedClassNames = Collections.emptySet();
+  private final ConcurrentMap<String, String> trackedStaticFieldOwners = new ConcurrentHashMap<String, String>();
   private int number = 0;
 
 
+  /**
+   * @return how many classes all instrumenting class loaders have defined so far
+   */
+  public static long getLoadedClassCount() {
+    return loadedClassCount.get();
+  }
+
+  /**
+   * @return how many of those classes were instrumented, rather than taken as-is or from a cache
+   */
+  public static long getInstrumentedClassCount() {
+    return instrumentedClassCount.get();
+  }
+
   public AsmInstrumentingClassLoader(Setup setup, URL... urls) {
-    super(AsmInstrumentingClassLoader.class.getClassLoader());
+    this(setup, AsmInstrumentingClassLoader.class.getClassLoader(), urls);
+  }
+
+  /**
+   * @param sdkConfig the SDK whose classpath {@code urls} are, so a matching pre-instrumented jar can be used
+   */
+  public AsmInstrumentingClassLoader(Setup setup, SdkConfig sdkConfig, URL... urls) {
+    this(setup, AsmInstrumentingClassLoader.class.getClassLoader(), sdkConfig, urls);
+  }
+
+  /**
+   * @param parent loader for classes {@link Setup#shouldAcquire(String)} says not to acquire; may itself be an
+   *     instrumenting class loader, in which case this one holds just the classes it acquires on top of it
+   */
+  public AsmInstrumentingClassLoader(Setup setup, ClassLoader parent, URL... urls) {
+    this(setup, parent, null, urls);
+  }
+
+  private AsmInstrumentingClassLoader(Setup setup, ClassLoader parent, SdkConfig sdkConfig, URL... urls) {
+    super(parent);
     this.setup = setup;
     this.urls = new URLClassLoader(urls, null);
     classesToRemap = convertToSlashes(setup.classNameTranslations());
     methodsToIntercept = convertToSlashes(setup.methodsToIntercept());
+    instrumentedClassCache = InstrumentedClassCache.fromSystemProperties(setupFingerprint());
+    preinstrumentedJar = PreinstrumentedJar.fromSystemProperties(instrumentationFingerprint(), sdkConfig);
+  }
+
+  /**
+   * Identifies the exact transformation this loader applies, for validating pre-instrumented or cached bytes.
+   */
+  String instrumentationFingerprint() {
+    return InstrumentedClassCache.sha1(instrumentorVersion() + "\n" + setupFingerprint());
+  }
+
+  String setupFingerprint() {
+    return setup.fingerprint();
+  }
+
+
+  /**
+   * @return the total size of the class files this loader has defined, a rough measure of the memory it retains
+   */
+  public long getDefinedClassBytes() {
+    return definedClassBytes.get();
+  }
+
+  /**
+   * @return the names of the classes this loader has defined itself, rather than delegated to its parent
+   */
+  public Set<String> getAcquiredClassNames() {
+    Set<String> classNames = new HashSet<String>();
+    for (Map.Entry<String, Class> entry : classes.entrySet()) {
+      if (entry.getValue().getClassLoader() == this) classNames.add(entry.getKey());
+    }
+    return classNames;
+  }
+
+  /**
+   * Makes this loader refuse to load the named classes, because a child loader loads fresh copies of them; otherwise
+   * code asking this loader for them by name would get a second, possibly stale, copy.
+   */
+  public void refuseClasses(Set<String> classNames) {
+    refusedClassNames = new HashSet<String>(classNames);
   }
 
   @Override
-  synchronized public Class loadClass(String name) throws ClassNotFoundException {
+  public Class loadClass(String name) throws ClassNotFoundException {
+    if (refusedClassNames.contains(name)) {
+      throw new ClassNotFoundException(name + " is loaded by a child of " + this);
+    }
+
     Class<?> theClass = classes.get(name);
-    if (theClass != null) {
-      if (theClass == MissingClassMarker.class) {
-        throw new ClassNotFoundException(name);
-      } else {
-        return theClass;
+    if (theClass == null) {
+      Object lock = lockFor(name);
+      try {
+        synchronized (lock) {
+          theClass = classes.get(name);
+          if (theClass == null) {
+            theClass = acquireOrDelegate(name);
+          }
+        }
+      } finally {
+        // if loading failed with an Error, other threads may still be waiting on this lock; keep it so a later
+        // caller can't take a fresh one and define the class alongside them
+        if (classes.containsKey(name)) classLoadingLocks.remove(name, lock);
       }
     }
 
-    boolean shouldComeFromThisClassLoader = setup.shouldAcquire(name);
+    if (theClass == MissingClassMarker.class) {
+      throw new ClassNotFoundException(name);
+    }
+    return theClass;
+  }
 
+  private Class<?> acquireOrDelegate(String name) throws ClassNotFoundException {
+    Class<?> theClass;
     try {
-      if (shouldComeFromThisClassLoader) {
+      if (setup.shouldAcquire(name)) {
         theClass = findClass(name);
       } else {
         theClass = getParent().loadClass(name);
@@ -105,57 +224,89 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
     return theClass;
   }
 
+  /**
+   * Released jars carry an Implementation-Version; for snapshots, hash the instrumentor's own bytecode so that
+   * changes to it invalidate anything instrumented by an earlier build.
+   */
+  static String instrumentorVersion() {
+    Package pkg = AsmInstrumentingClassLoader.class.getPackage();
+    String version = pkg == null ? null : pkg.getImplementationVersion();
+    if (version != null && !version.endsWith("-SNAPSHOT")) return version;
+
+    ByteArrayOutputStream instrumentorBytes = new ByteArrayOutputStream();
+    for (Class<?> instrumentorClass : new Class[] {AsmInstrumentingClassLoader.class, ClassInstrumentor.class, MyGenerator.class, RobolectricInternals.class}) {
+      InputStream in = instrumentorClass.getResourceAsStream("/" + instrumentorClass.getName().replace('.', '/') + ".class");
+      if (in == null) continue;
+      try {
+        Util.copy(in, instrumentorBytes);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return version + "@" + InstrumentedClassCache.sha1(instrumentorBytes.toByteArray());
+  }
+
+  private Object lockFor(String className) {
+    Object newLock = new Object();
+    Object lock = classLoadingLocks.putIfAbsent(className, newLock);
+    return lock == null ? newLock : lock;
+  }
+
   private static class MissingClassMarker {
   }
 
+  // ClassLoader.registerAsParallelCapable() only exists on Java 7+; without it, the JVM locks the whole loader anyway.
+  private static void registerAsParallelCapableIfPossible() {
+    try {
+      java.lang.reflect.Method method = ClassLoader.class.getDeclaredMethod("registerAsParallelCapable");
+      method.setAccessible(true);
+      method.invoke(null);
+    } catch (NoSuchMethodException e) {
+      // running on Java 6
+    } catch (Exception e) {
+      System.err.println("[WARN] couldn't register " + AsmInstrumentingClassLoader.class.getSimpleName() + " as parallel capable: " + e);
+    }
+  }
+
   @Override
   protected Class<?> findClass(final String className) throws ClassNotFoundException {
     if (setup.shouldAcquire(className)) {
-      String classFilename = className.replace('.', '/') + ".class";
-      InputStream classBytesStream = urls.getResourceAsStream(classFilename);
-      if (classBytesStream == null) {
-        classBytesStream = getResourceAsStream(classFilename);
-      }
-      if (classBytesStream == null) throw new ClassNotFoundException(className);
+      byte[] bytes = preinstrumentedJar == null ? null : preinstrumentedJar.getClassBytes(className);
 
-      byte[] origClassBytes;
-      try {
-        origClassBytes = readBytes(classBytesStream);
-      } catch (IOException e) {
-        throw new ClassNotFoundException("couldn't load " + className, e);
-      }
+      if (bytes == null) {
+        InputStream classBytesStream = getOriginalClassBytesStream(className);
+        if (classBytesStream == null) throw new ClassNotFoundException(className);
 
-      final ClassReader classReader = new ClassReader(origClassBytes);
-      ClassNode classNode = new ClassNode() {
-        @Override
-        public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
-          desc = remapParamType(desc);
-          return super.visitField(access, name, desc, signature, value);
+        byte[] origClassBytes;
+        try {
+          origClassBytes = readBytes(classBytesStream);
+        } catch (IOException e) {
+          throw new ClassNotFoundException("couldn't load " + className, e);
         }
 
-        @Override
-        public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
-          return super.visitMethod(access, name, remapParams(desc), signature, exceptions);
+        bytes = instrumentedClassCache == null ? null : instrumentedClassCache.get(origClassBytes);
+        if (bytes == null) {
+          bytes = instrumentIfNecessary(className, origClassBytes);
+          if (bytes == null) {
+            bytes = origClassBytes;
+          } else {
+            instrumentedClassCount.incrementAndGet();
+            if (instrumentedClassCache != null && !writesStaticFieldsOfOtherClasses(origClassBytes)) {
+              instrumentedClassCache.put(origClassBytes, bytes);
+            }
+          }
         }
-      };
-      classReader.accept(classNode, 0);
+      }
 
       try {
-        byte[] bytes;
-        AsmClassInfo classInfo = new AsmClassInfo(className, classNode);
-        if (setup.shouldInstrument(classInfo)) {
-          bytes = getInstrumentedBytes(className, classNode, setup.containsStubs(classInfo));
-        } else {
-          bytes = origClassBytes;
-        }
-//                System.out.println("[DEBUG] Defining " + classFilename + " (" + bytes.length + ") in " + this + ": class" + number++);
+//                System.out.println("[DEBUG] Defining " + className + " (" + bytes.length + ") in " + this + ": class" + number++);
         ensurePackage(className);
-        return defineClass(className, bytes, 0, bytes.length);
+        Class<?> theClass = defineClass(className, bytes, 0, bytes.length);
+        loadedClassCount.incrementAndGet();
+        definedClassBytes.addAndGet(bytes.length);
+        return theClass;
       } catch (Exception e) {
         throw new ClassNotFoundException("couldn't load " + className, e);
-      } catch (OutOfMemoryError e) {
-        System.err.println("[ERROR] couldn't load " + className + " in " + this);
-        throw e;
       }
     } else {
       throw new IllegalStateException("how did we get here? " + className);
@@ -163,13 +314,53 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
     }
   }
 
+  /**
+   * @return instrumented bytes, or null if {@link Setup#shouldInstrument(ClassInfo)} says to leave this class alone
+   */
+  byte[] instrumentIfNecessary(String className, byte[] origClassBytes) throws ClassNotFoundException {
+    final ClassReader classReader = new ClassReader(origClassBytes);
+    ClassNode classNode = new ClassNode() {
+      @Override
+      public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+        desc = remapParamType(desc);
+        return super.visitField(access, name, desc, signature, value);
+      }
+
+      @Override
+      public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+        return super.visitMethod(access, name, remapParams(desc), signature, exceptions);
+      }
+    };
+    classReader.accept(classNode, 0);
+
+    try {
+      AsmClassInfo classInfo = new AsmClassInfo(className, classNode);
+      if (setup.shouldInstrument(classInfo)) {
+        return getInstrumentedBytes(className, classNode, setup.containsStubs(classInfo));
+      } else if (setup.shouldTrackStaticState(classInfo)) {
+        return getStaticStateTrackingBytes(origClassBytes);
+      } else {
+        return null;
+      }
+    } catch (Exception e) {
+      throw new ClassNotFoundException("couldn't load " + className, e);
+    } catch (OutOfMemoryError e) {
+      System.err.println("[ERROR] couldn't load " + className + " in " + this);
+      throw e;
+    }
+  }
+
   private void ensurePackage(final String className) {
     int lastDotIndex = className.lastIndexOf('.');
     if (lastDotIndex != -1) {
       String pckgName = className.substring(0, lastDotIndex);
       Package pckg = getPackage(pckgName);
       if (pckg == null) {
-        definePackage(pckgName, null, null, null, null, null, null, null);
+        try {
+          definePackage(pckgName, null, null, null, null, null, null, null);
+        } catch (IllegalArgumentException e) {
+          // another thread defined it first
+        }
       }
     }
   }
@@ -263,6 +454,170 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
     return classBytes;
   }
 
+  /**
+   * Leaves the class alone apart from telling {@link StaticState} about its static initialization and static writes.
+   */
+  private byte[] getStaticStateTrackingBytes(byte[] origClassBytes) {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(origClassBytes).accept(classNode, 0);
+
+    boolean foundStaticInitializer = false;
+    for (Object methodObj : classNode.methods) {
+      MethodNode method = (MethodNode) methodObj;
+      trackStaticWrites(classNode, method);
+      if (method.name.equals("<clinit>")) {
+        foundStaticInitializer = true;
+        ListIterator<AbstractInsnNode> instructions = method.instructions.iterator();
+        while (instructions.hasNext()) {
+          AbstractInsnNode node = instructions.next();
+          if (node.getOpcode() == RETURN) {
+            instructions.previous();
+            instructions.add(new LdcInsnNode(Type.getObjectType(classNode.name)));
+            instructions.add(new MethodInsnNode(INVOKESTATIC, STATIC_STATE_TYPE.getInternalName(),
+                STATIC_SNAPSHOT_METHOD.getName(), STATIC_SNAPSHOT_METHOD.getDescriptor()));
+            instructions.next();
+          }
+        }
+      }
+    }
+    if (!foundStaticInitializer && hasNonFinalStaticFields(classNode)) {
+      classNode.methods.add(generateSnapshotStaticInitializer(classNode.name));
+    }
+
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    classNode.accept(classWriter);
+    return classWriter.toByteArray();
+  }
+
+  // only writes to fields StaticState will have a snapshot of are worth reporting, so each is reported against the
+  // class that declares the field. Writes made by a static initializer are part of the initial state rather than
+  // something to undo: its own class is snapshotted once it's done anyway, and any other class it writes to is
+  // snapshotted again straight away, since that class's snapshot was taken before the write.
+  private void trackStaticWrites(ClassNode classNode, MethodNode method) {
+    boolean inStaticInitializer = method.name.equals("<clinit>");
+    ListIterator<AbstractInsnNode> instructions = method.instructions.iterator();
+    while (instructions.hasNext()) {
+      AbstractInsnNode node = instructions.next();
+      if (node.getOpcode() == PUTSTATIC) {
+        FieldInsnNode fieldInsnNode = (FieldInsnNode) node;
+        String trackedOwner = findTrackedStaticFieldOwner(classNode, remapType(fieldInsnNode.owner), fieldInsnNode.name);
+        if (trackedOwner == null) continue;
+        if (inStaticInitializer) {
+          if (trackedOwner.equals(classNode.name)) continue;
+          instructions.add(new LdcInsnNode(Type.getObjectType(trackedOwner)));
+          instructions.add(new MethodInsnNode(INVOKESTATIC, STATIC_STATE_TYPE.getInternalName(),
+              STATIC_SNAPSHOT_METHOD.getName(), STATIC_SNAPSHOT_METHOD.getDescriptor()));
+          continue;
+        }
+        instructions.add(new LdcInsnNode(trackedOwner.replace('/', '.')));
+        instructions.add(new MethodInsnNode(INVOKESTATIC, STATIC_STATE_TYPE.getInternalName(),
+            STATIC_WRITTEN_METHOD.getName(), STATIC_WRITTEN_METHOD.getDescriptor()));
+      }
+    }
+  }
+
+  /**
+   * @return the internal name of the class declaring static field {@code owner.fieldName}, if writes to it should be
+   *     undone between tests, or null
+   */
+  private String findTrackedStaticFieldOwner(ClassNode classBeingTracked, String owner, String fieldName) {
+    String key = owner + "." + fieldName;
+    String trackedOwner = trackedStaticFieldOwners.get(key);
+    if (trackedOwner == null) {
+      trackedOwner = "";
+      for (String className = owner; className != null; ) {
+        ClassNode classNode = className.equals(classBeingTracked.name) ? classBeingTracked : readClassStructure(className);
+        if (classNode == null) break;
+        FieldNode field = findField(classNode, fieldName);
+        if (field != null) {
+          if (StaticState.isTracked(field.name, field.access) && (classNode == classBeingTracked || isStaticStateTracked(classNode))) {
+            trackedOwner = classNode.name;
+          }
+          break;
+        }
+        className = classNode.superName;
+      }
+      trackedStaticFieldOwners.put(key, trackedOwner);
+    }
+    return trackedOwner.isEmpty() ? null : trackedOwner;
+  }
+
+  /**
+   * Whether the class has static writes that {@link #findTrackedStaticFieldOwner} resolves by looking at other classes
+   * (a field of another class, or one inherited from a superclass). Its instrumented bytes then depend on those
+   * classes too, so they mustn't be cached under a key derived from its own bytes alone.
+   */
+  private boolean writesStaticFieldsOfOtherClasses(byte[] origClassBytes) {
+    ClassNode classNode = new ClassNode();
+    new ClassReader(origClassBytes).accept(classNode, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+    for (Object methodObj : classNode.methods) {
+      MethodNode method = (MethodNode) methodObj;
+      ListIterator<AbstractInsnNode> instructions = method.instructions.iterator();
+      while (instructions.hasNext()) {
+        AbstractInsnNode node = instructions.next();
+        if (node.getOpcode() == PUTSTATIC) {
+          FieldInsnNode fieldInsnNode = (FieldInsnNode) node;
+          if (!remapType(fieldInsnNode.owner).equals(classNode.name) || findField(classNode, fieldInsnNode.name) == null) {
+            return true;
+          }
+        }
+      }
+    }
+    return false;
+  }
+
+  private boolean isStaticStateTracked(ClassNode classNode) {
+    String className = classNode.name.replace('/', '.');
+    if (!setup.shouldAcquire(className)) return false; // another loader's StaticState looks after it
+    AsmClassInfo classInfo = new AsmClassInfo(className, classNode);
+    return setup.shouldInstrument(classInfo) || setup.shouldTrackStaticState(classInfo);
+  }
+
+  private ClassNode readClassStructure(String internalClassName) {
+    InputStream classBytesStream = getOriginalClassBytesStream(internalClassName.replace('/', '.'));
+    if (classBytesStream == null) return null;
+    try {
+      ClassNode classNode = new ClassNode();
+      new ClassReader(readBytes(classBytesStream)).accept(classNode, ClassReader.SKIP_CODE | ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+      return classNode;
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static FieldNode findField(ClassNode classNode, String fieldName) {
+    for (Object fieldObj : classNode.fields) {
+      FieldNode field = (FieldNode) fieldObj;
+      if (field.name.equals(fieldName)) return field;
+    }
+    return null;
+  }
+
+  private InputStream getOriginalClassBytesStream(String className) {
+    String classFilename = className.replace('.', '/') + ".class";
+    InputStream classBytesStream = urls.getResourceAsStream(classFilename);
+    return classBytesStream == null ? getResourceAsStream(classFilename) : classBytesStream;
+  }
+
+  private static boolean hasNonFinalStaticFields(ClassNode classNode) {
+    for (Object fieldObj : classNode.fields) {
+      FieldNode field = (FieldNode) fieldObj;
+      if (StaticState.isTracked(field.name, field.access)) return true;
+    }
+    return false;
+  }
+
+  // a class without a static initializer has nothing but default values, but we still need to know what it looked like
+  private static MethodNode generateSnapshotStaticInitializer(String internalClassName) {
+    MethodNode methodNode = new MethodNode(ACC_STATIC, "<clinit>", "()V", "()V", null);
+    MyGenerator m = new MyGenerator(methodNode);
+    m.push(Type.getObjectType(internalClassName));
+    m.invokeStatic(STATIC_STATE_TYPE, STATIC_SNAPSHOT_METHOD);
+    m.returnValue();
+    m.endMethod();
+    return methodNode;
+  }
+
   private static class MyGenerator extends GeneratorAdapter {
     private final boolean isStatic;
     private final String desc;
@@ -381,6 +736,7 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
     private final String internalClassName;
     private final String className;
     private final Type classType;
+    private int cachedPlanCount = 0;
 
     public ClassInstrumentor(ClassNode classNode, boolean containsStubs) {
       this.classNode = classNode;
@@ -402,6 +758,7 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
         foundMethods.add(method.name + method.desc);
 
         filterNasties(method);
+        trackStaticWrites(classNode, method);
 
         if (method.name.equals("<clinit>")) {
           method.name = STATIC_INITIALIZER_METHOD_NAME;
@@ -413,6 +770,10 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
         }
       }
 
+      if (!foundMethods.contains("<clinit>()V") && hasNonFinalStaticFields(classNode)) {
+        classNode.methods.add(generateSnapshotStaticInitializer(internalClassName));
+      }
+
       classNode.fields.add(0, new FieldNode(ACC_PUBLIC, CLASS_HANDLER_DATA_FIELD_NAME, OBJECT_DESC, OBJECT_DESC, null));
 
       if (!foundMethods.contains("<init>()V")) {
@@ -748,6 +1109,8 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
       MyGenerator m = new MyGenerator(methodNode);
       m.push(classType);
       m.invokeStatic(Type.getType(RobolectricInternals.class), new Method("classInitializing", "(Ljava/lang/Class;)V"));
+      m.push(classType);
+      m.invokeStatic(STATIC_STATE_TYPE, STATIC_SNAPSHOT_METHOD);
       m.returnValue();
       m.endMethod();
       return methodNode;
@@ -792,30 +1155,72 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
         m.mark(notInstanceOfThis);
       }
 
-      // prepare for call to classHandler.methodInvoked(String signature, boolean isStatic)
+      // use the plan cached in this method's static field, if it's still current (see RobolectricInternals.CachedPlan;
+      // we can't emit invokedynamic since instrumented classes have to stay loadable on Java 6)...
+      String cachedPlanFieldName = CACHED_PLAN_FIELD_PREFIX + cachedPlanCount++;
+      classNode.fields.add(new FieldNode(ACC_PRIVATE | ACC_STATIC | ACC_SYNTHETIC, cachedPlanFieldName, CACHED_PLAN_TYPE.getDescriptor(), null, null));
+      int cachedPlanLocalVar = m.newLocal(CACHED_PLAN_TYPE);
+      Label calculatePlan = new Label();
+      Label havePlan = new Label();
+
+      m.getStatic(classType, cachedPlanFieldName, CACHED_PLAN_TYPE);
+      m.storeLocal(cachedPlanLocalVar);
+      m.loadLocal(cachedPlanLocalVar);
+      m.ifNull(calculatePlan);
+      m.loadLocal(cachedPlanLocalVar);
+      m.invokeVirtual(CACHED_PLAN_TYPE, IS_CURRENT_METHOD);
+      m.ifZCmp(GeneratorAdapter.EQ, calculatePlan);
+      m.loadLocal(cachedPlanLocalVar);
+      m.goTo(havePlan);
+
+      // ... otherwise prepare for call to classHandler.methodInvoked(String signature, boolean isStatic) and cache the result
+      m.mark(calculatePlan);
       m.push(classType.getInternalName() + "/" + originalMethodName + originalMethod.desc);
       m.push(m.isStatic());
       m.push(classType);                                         // my class
-      m.invokeStatic(ROBOLECTRIC_INTERNALS_TYPE, METHOD_INVOKED_METHOD);
+      m.invokeStatic(ROBOLECTRIC_INTERNALS_TYPE, CACHE_PLAN_METHOD);
+      m.dup();
+      m.putStatic(classType, cachedPlanFieldName, CACHED_PLAN_TYPE);
+
+      m.mark(havePlan);
+      m.invokeVirtual(CACHED_PLAN_TYPE, GET_PLAN_METHOD);
       m.storeLocal(planLocalVar);
 
       m.loadLocal(planLocalVar); // plan
       m.ifNull(directCall);
 
-      // prepare for call to plan.run(Object instance, Object[] params)
       TryCatch tryCatchForHandler = m.tryStart(THROWABLE_TYPE);
+      Type returnType = m.getReturnType();
+
+      // if the plan has an entry point for this method's shape, call that so arguments don't need boxing...
+      String shape = SpecializedPlan.shapeOf(originalMethod.desc);
+      Label afterPlan = new Label();
+      if (shape != null) {
+        Label notSpecialized = new Label();
+        m.loadLocal(planLocalVar);
+        m.instanceOf(SPECIALIZED_PLAN_TYPE);
+        m.ifZCmp(GeneratorAdapter.EQ, notSpecialized);
+
+        m.loadLocal(planLocalVar);
+        m.checkCast(SPECIALIZED_PLAN_TYPE);
+        m.loadThisOrNull();        // instance
+        loadRoboData(m);           // roboData
+        m.loadArgs();              // unboxed params
+        m.invokeVirtual(SPECIALIZED_PLAN_TYPE, new Method(SpecializedPlan.entryPointName(shape), SpecializedPlan.entryPointDescriptor(shape)));
+        if (returnType.getSort() == OBJECT || returnType.getSort() == ARRAY) {
+          m.checkCast(returnType);
+        }
+        m.goTo(afterPlan);
+        m.mark(notSpecialized);
+      }
+
+      // ... otherwise prepare for call to plan.run(Object instance, Object[] params)
       m.loadLocal(planLocalVar); // plan
       m.loadThisOrNull();        // instance
-      if (m.isStatic()) {        // roboData
-        m.loadNull();
-      } else {
-        m.loadThis();
-        m.invokeVirtual(classType, new Method(GET_ROBO_DATA_METHOD_NAME, GET_ROBO_DATA_SIGNATURE));
-      }
+      loadRoboData(m);           // roboData
       m.loadArgArray();          // params
       m.invokeInterface(PLAN_TYPE, PLAN_RUN_METHOD);
 
-      Type returnType = m.getReturnType();
       int sort = returnType.getSort();
       switch (sort) {
         case VOID:
@@ -841,6 +1246,7 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
           m.mark(afterward);
           break;
       }
+      m.mark(afterPlan);
       tryCatchForHandler.end();
       m.goTo(doReturn);
 
@@ -871,6 +1277,15 @@ public class AsmInstrumentingClassLoader extends ClassLoader implements Opcodes,
       m.returnValue();
     }
 
+    private void loadRoboData(MyGenerator m) {
+      if (m.isStatic()) {
+        m.loadNull();
+      } else {
+        m.loadThis();
+        m.invokeVirtual(classType, new Method(GET_ROBO_DATA_METHOD_NAME, GET_ROBO_DATA_SIGNATURE));
+      }
+    }
+
     private boolean isEnum() {
       return (classNode.access & ACC_ENUM) != 0;
     }
@@ -0,0 +1,234 @@
+package org.robolectric.bytecode;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.robolectric.util.Util.readBytes;
+
+/**
+ * Content-addressed on-disk cache of instrumented class bytes, shared between JVMs.
+ *
+ * Entries are keyed by a hash of the original class bytes, the {@link Setup} fingerprint and the Robolectric
+ * version, so a stale entry is never picked up; it just stops being hit and is eventually evicted. Since that key
+ * only covers the class's own bytes, classes whose instrumentation depends on other classes (see
+ * {@link AsmInstrumentingClassLoader}'s static write tracking) are never stored here.
+ * Writers publish entries by renaming a fully-written temp file into place, so concurrent forks never see
+ * partial entries.
+ *
+ * Enable by setting the system property {@code robolectric.classCache.dir}; the size bound defaults to 256MB
+ * and can be set via {@code robolectric.classCache.maxBytes}.
+ */
+public class InstrumentedClassCache {
+  public static final String DIR_PROPERTY = "robolectric.classCache.dir";
+  public static final String MAX_BYTES_PROPERTY = "robolectric.classCache.maxBytes";
+  public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+  private static final String SUFFIX = ".class";
+  private static final int WRITES_BETWEEN_SIZE_CHECKS = 500;
+  private static final long TOUCH_GRANULARITY_MS = 60 * 60 * 1000;
+
+  private final File cacheDir;
+  private final long maxBytes;
+  private final byte[] fingerprint;
+  private final AtomicLong approximateSize = new AtomicLong(-1);
+  private final AtomicInteger writesSinceSizeCheck = new AtomicInteger();
+
+  public InstrumentedClassCache(File cacheDir, long maxBytes, String setupFingerprint) {
+    this.cacheDir = cacheDir;
+    this.maxBytes = maxBytes;
+    this.fingerprint = (AsmInstrumentingClassLoader.instrumentorVersion() + "\n" + setupFingerprint + "\n").getBytes();
+  }
+
+  public static InstrumentedClassCache fromSystemProperties(String setupFingerprint) {
+    String dir = System.getProperty(DIR_PROPERTY);
+    if (dir == null || dir.length() == 0) return null;
+
+    return new InstrumentedClassCache(new File(dir), maxBytesFrom(System.getProperty(MAX_BYTES_PROPERTY)), setupFingerprint);
+  }
+
+  static long maxBytesFrom(String maxBytesStr) {
+    if (maxBytesStr == null) return DEFAULT_MAX_BYTES;
+    try {
+      return Long.parseLong(maxBytesStr.trim());
+    } catch (NumberFormatException e) {
+      System.err.println("[WARN] ignoring malformed " + MAX_BYTES_PROPERTY + " \"" + maxBytesStr + "\", using " + DEFAULT_MAX_BYTES);
+      return DEFAULT_MAX_BYTES;
+    }
+  }
+
+  public byte[] get(byte[] origClassBytes) {
+    File file = fileFor(keyFor(origClassBytes));
+    if (!file.exists()) return null;
+
+    byte[] bytes;
+    try {
+      FileInputStream in = new FileInputStream(file);
+      bytes = readBytes(in);
+    } catch (IOException e) {
+      return null; // evicted out from under us, probably
+    }
+    if (!looksLikeClassFile(bytes)) return null;
+
+    long now = System.currentTimeMillis();
+    if (now - file.lastModified() > TOUCH_GRANULARITY_MS) {
+      //noinspection ResultOfMethodCallIgnored
+      file.setLastModified(now); // keeps recently-used entries from being evicted
+    }
+    return bytes;
+  }
+
+  public void put(byte[] origClassBytes, byte[] instrumentedClassBytes) {
+    File file = fileFor(keyFor(origClassBytes));
+    if (file.exists()) return;
+
+    File dir = file.getParentFile();
+    if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) return;
+
+    File tempFile = null;
+    try {
+      tempFile = File.createTempFile("tmp-", ".part", dir);
+      FileOutputStream out = new FileOutputStream(tempFile);
+      try {
+        out.write(instrumentedClassBytes);
+      } finally {
+        out.close();
+      }
+      if (tempFile.renameTo(file)) {
+        tempFile = null;
+        maybeEvict(instrumentedClassBytes.length);
+      }
+    } catch (IOException e) {
+      // the cache is only an optimization; carry on without it
+    } finally {
+      if (tempFile != null) {
+        //noinspection ResultOfMethodCallIgnored
+        tempFile.delete();
+      }
+    }
+  }
+
+  private void maybeEvict(int bytesAdded) {
+    if (approximateSize.get() < 0 || writesSinceSizeCheck.incrementAndGet() >= WRITES_BETWEEN_SIZE_CHECKS) {
+      writesSinceSizeCheck.set(0);
+      approximateSize.set(totalSize(listEntries()));
+    } else {
+      approximateSize.addAndGet(bytesAdded);
+    }
+
+    if (approximateSize.get() > maxBytes) {
+      evict();
+    }
+  }
+
+  synchronized void evict() {
+    List<File> entries = listEntries();
+    long size = totalSize(entries);
+    long target = maxBytes - maxBytes / 10;
+    if (size <= maxBytes) {
+      approximateSize.set(size);
+      return;
+    }
+
+    Entry[] sorted = new Entry[entries.size()];
+    for (int i = 0; i < sorted.length; i++) {
+      sorted[i] = new Entry(entries.get(i));
+    }
+    Arrays.sort(sorted, new Comparator<Entry>() {
+      @Override public int compare(Entry a, Entry b) {
+        return a.lastModified < b.lastModified ? -1 : (a.lastModified == b.lastModified ? 0 : 1);
+      }
+    });
+
+    for (Entry entry : sorted) {
+      if (size <= target) break;
+      long length = entry.file.length();
+      if (entry.file.delete()) {
+        size -= length;
+      }
+    }
+    approximateSize.set(size);
+  }
+
+  private static class Entry {
+    final File file;
+    final long lastModified;
+
+    Entry(File file) {
+      this.file = file;
+      this.lastModified = file.lastModified();
+    }
+  }
+
+  private List<File> listEntries() {
+    List<File> entries = new ArrayList<File>();
+    File[] shards = cacheDir.listFiles();
+    if (shards == null) return entries;
+    for (File shard : shards) {
+      File[] files = shard.listFiles();
+      if (files == null) continue;
+      for (File file : files) {
+        if (file.getName().endsWith(SUFFIX)) entries.add(file);
+      }
+    }
+    return entries;
+  }
+
+  private static long totalSize(List<File> entries) {
+    long size = 0;
+    for (File entry : entries) {
+      size += entry.length();
+    }
+    return size;
+  }
+
+  private File fileFor(String key) {
+    return new File(new File(cacheDir, key.substring(0, 2)), key.substring(2) + SUFFIX);
+  }
+
+  String keyFor(byte[] origClassBytes) {
+    MessageDigest digest = sha1Digest();
+    digest.update(fingerprint);
+    return toHex(digest.digest(origClassBytes));
+  }
+
+  static String sha1(String value) {
+    return sha1(value.getBytes());
+  }
+
+  static String sha1(byte[] bytes) {
+    return toHex(sha1Digest().digest(bytes));
+  }
+
+  private static MessageDigest sha1Digest() {
+    try {
+      return MessageDigest.getInstance("SHA-1");
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static boolean looksLikeClassFile(byte[] bytes) {
+    return bytes.length > 4
+        && (bytes[0] & 0xff) == 0xca && (bytes[1] & 0xff) == 0xfe
+        && (bytes[2] & 0xff) == 0xba && (bytes[3] & 0xff) == 0xbe;
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder buf = new StringBuilder();
+    for (byte b : bytes) {
+      buf.append(Character.forDigit((b >> 4) & 0xf, 16));
+      buf.append(Character.forDigit(b & 0xf, 16));
+    }
+    return buf.toString();
+  }
+}
@@ -0,0 +1,174 @@
+package org.robolectric.bytecode;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread-safe cache of {@link ClassHandler.Plan}s by method signature.
+ *
+ * Unbounded by default. Set the system property {@code robolectric.planCache.capacity} to bound it, and
+ * {@code robolectric.planCache.eviction} to {@code lru} (the default) or {@code lfu} to choose which entries go
+ * when it's full. Hit, miss and eviction counts are kept so the capacity can be tuned.
+ */
+public class PlanCache {
+  public static final String CAPACITY_PROPERTY = "robolectric.planCache.capacity";
+  public static final String EVICTION_PROPERTY = "robolectric.planCache.eviction";
+  public static final int UNBOUNDED = 0;
+
+  /** Returned by {@link #get(String)} when there's no entry; distinct from a cached null plan. */
+  public static final ClassHandler.Plan NOT_CACHED = new ClassHandler.Plan() {
+    @Override public Object run(Object instance, Object roboData, Object[] params) throws Exception {
+      throw new IllegalStateException("not a real plan");
+    }
+  };
+
+  public enum Eviction {
+    LRU {
+      @Override long rank(Entry entry) {
+        return entry.lastAccess;
+      }
+    },
+    LFU {
+      @Override long rank(Entry entry) {
+        return entry.accessCount.get();
+      }
+    };
+
+    abstract long rank(Entry entry);
+  }
+
+  private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+  private final int capacity;
+  private final Eviction eviction;
+  private final AtomicLong clock = new AtomicLong();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private final AtomicLong evictionCount = new AtomicLong();
+
+  public PlanCache() {
+    this(UNBOUNDED, Eviction.LRU);
+  }
+
+  public PlanCache(int capacity, Eviction eviction) {
+    if (capacity < 0) throw new IllegalArgumentException("capacity must be >= 0: " + capacity);
+    this.capacity = capacity;
+    this.eviction = eviction;
+  }
+
+  public static PlanCache fromSystemProperties() {
+    String capacityStr = System.getProperty(CAPACITY_PROPERTY);
+    int capacity = capacityStr == null || capacityStr.length() == 0 ? UNBOUNDED : Integer.parseInt(capacityStr);
+    String evictionStr = System.getProperty(EVICTION_PROPERTY);
+    Eviction eviction = evictionStr == null || evictionStr.length() == 0 ? Eviction.LRU : Eviction.valueOf(evictionStr.toUpperCase());
+    return new PlanCache(capacity, eviction);
+  }
+
+  /**
+   * @return the cached plan (which may be null, meaning "call real code"), or {@link #NOT_CACHED}
+   */
+  public ClassHandler.Plan get(String signature) {
+    Entry entry = entries.get(signature);
+    if (entry == null) {
+      missCount.incrementAndGet();
+      return NOT_CACHED;
+    }
+
+    hitCount.incrementAndGet();
+    entry.lastAccess = clock.incrementAndGet();
+    entry.accessCount.incrementAndGet();
+    return entry.plan;
+  }
+
+  public void put(String signature, ClassHandler.Plan plan) {
+    entries.put(signature, new Entry(plan, clock.incrementAndGet()));
+    if (capacity != UNBOUNDED && entries.size() > capacity) {
+      evict(signature);
+    }
+  }
+
+  public void clear() {
+    entries.clear();
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public int getCapacity() {
+    return capacity;
+  }
+
+  public Eviction getEviction() {
+    return eviction;
+  }
+
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  public long getEvictionCount() {
+    return evictionCount.get();
+  }
+
+  @Override public String toString() {
+    return "PlanCache{size=" + size() + ", capacity=" + (capacity == UNBOUNDED ? "unbounded" : capacity)
+        + ", eviction=" + eviction + ", hits=" + getHitCount() + ", misses=" + getMissCount()
+        + ", evictions=" + getEvictionCount() + "}";
+  }
+
+  // Trims to 90% of capacity in one go so we aren't sorting the whole cache on every put once it's full.
+  // The entry that was just added is spared, otherwise LFU would always throw it straight back out.
+  private synchronized void evict(String justAdded) {
+    if (entries.size() <= capacity) return;
+
+    List<Map.Entry<String, Entry>> candidates = new ArrayList<Map.Entry<String, Entry>>(entries.entrySet());
+    for (Map.Entry<String, Entry> candidate : candidates) {
+      Entry entry = candidate.getValue();
+      entry.rankSnapshot = eviction.rank(entry);
+      entry.lastAccessSnapshot = entry.lastAccess;
+    }
+    Collections.sort(candidates, new Comparator<Map.Entry<String, Entry>>() {
+      @Override public int compare(Map.Entry<String, Entry> o1, Map.Entry<String, Entry> o2) {
+        int byRank = compareLongs(o1.getValue().rankSnapshot, o2.getValue().rankSnapshot);
+        return byRank != 0 ? byRank : compareLongs(o1.getValue().lastAccessSnapshot, o2.getValue().lastAccessSnapshot);
+      }
+    });
+
+    int target = capacity - capacity / 10;
+    for (Map.Entry<String, Entry> candidate : candidates) {
+      if (entries.size() <= target) break;
+      if (candidate.getKey().equals(justAdded)) continue;
+      if (entries.remove(candidate.getKey(), candidate.getValue())) {
+        evictionCount.incrementAndGet();
+      }
+    }
+  }
+
+  private static int compareLongs(long a, long b) {
+    return a < b ? -1 : a == b ? 0 : 1;
+  }
+
+  static class Entry {
+    final ClassHandler.Plan plan;
+    final AtomicInteger accessCount = new AtomicInteger();
+    volatile long lastAccess;
+    long rankSnapshot;
+    long lastAccessSnapshot;
+
+    Entry(ClassHandler.Plan plan, long lastAccess) {
+      this.plan = plan;
+      this.lastAccess = lastAccess;
+    }
+  }
+}
@@ -0,0 +1,105 @@
+package org.robolectric.bytecode;
+
+import org.robolectric.MavenCentral;
+import org.robolectric.SdkConfig;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Enumeration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import static org.robolectric.util.Util.readBytes;
+
+/**
+ * Build-time tool which instruments every class in an SDK's classpath up front and writes the results to a jar
+ * suitable for {@link PreinstrumentedJar}.
+ *
+ * Usage: {@code PreInstrumenter <output.jar> [sdkArtifactVersion] [setupClassName]}
+ */
+public class PreInstrumenter {
+  public static void main(String[] args) throws Exception {
+    if (args.length < 1) {
+      System.err.println("usage: " + PreInstrumenter.class.getName() + " <output.jar> [sdkArtifactVersion] [setupClassName]");
+      System.exit(1);
+    }
+
+    File outputFile = new File(args[0]);
+    SdkConfig sdkConfig = new SdkConfig(args.length > 1 ? args[1] : SdkConfig.DEFAULT_ARTIFACT_VERSION);
+    Setup setup = args.length > 2 ? (Setup) Class.forName(args[2]).newInstance() : new Setup();
+
+    URL[] urls = new MavenCentral().getLocalArtifactUrls(null, sdkConfig.getSdkClasspathDependencies()).values().toArray(new URL[0]);
+    long startTime = System.currentTimeMillis();
+    int count = new PreInstrumenter(setup, sdkConfig, urls).writeJar(outputFile);
+    System.out.println(String.format("Instrumented %d classes into %s in %dms", count, outputFile, System.currentTimeMillis() - startTime));
+  }
+
+  private final URL[] urls;
+  private final AsmInstrumentingClassLoader instrumentingClassLoader;
+  private final Setup setup;
+  private final SdkConfig sdkConfig;
+
+  public PreInstrumenter(Setup setup, SdkConfig sdkConfig, URL... urls) {
+    this.setup = setup;
+    this.sdkConfig = sdkConfig;
+    this.urls = urls;
+    this.instrumentingClassLoader = new AsmInstrumentingClassLoader(setup, urls);
+  }
+
+  public int writeJar(File outputFile) throws IOException, ClassNotFoundException {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().put(PreinstrumentedJar.FINGERPRINT_ATTRIBUTE, instrumentingClassLoader.instrumentationFingerprint());
+    manifest.getMainAttributes().put(PreinstrumentedJar.SDK_ATTRIBUTE, PreinstrumentedJar.sdkArtifacts(sdkConfig));
+
+    Set<String> seenClassNames = new HashSet<String>();
+    int count = 0;
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(outputFile), manifest);
+    try {
+      for (URL url : urls) {
+        JarFile jarFile = new JarFile(fileFor(url));
+        try {
+          Enumeration<JarEntry> entries = jarFile.entries();
+          while (entries.hasMoreElements()) {
+            JarEntry entry = entries.nextElement();
+            String entryName = entry.getName();
+            if (!entryName.endsWith(".class")) continue;
+
+            String className = entryName.substring(0, entryName.length() - ".class".length()).replace('/', '.');
+            // first one on the classpath wins, just like at runtime
+            if (!seenClassNames.add(className) || !setup.shouldAcquire(className)) continue;
+
+            byte[] bytes = instrumentingClassLoader.instrumentIfNecessary(className, readBytes(jarFile.getInputStream(entry)));
+            if (bytes == null) continue;
+
+            out.putNextEntry(new JarEntry(entryName));
+            out.write(bytes);
+            out.closeEntry();
+            count++;
+          }
+        } finally {
+          jarFile.close();
+        }
+      }
+    } finally {
+      out.close();
+    }
+    return count;
+  }
+
+  private static File fileFor(URL url) {
+    try {
+      return new File(url.toURI());
+    } catch (URISyntaxException e) {
+      return new File(url.getFile()); // Util.url() doesn't escape paths, so one with spaces isn't a valid URI
+    }
+  }
+}
@@ -0,0 +1,126 @@
+package org.robolectric.bytecode;
+
+import org.apache.maven.model.Dependency;
+import org.robolectric.SdkConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.jar.Attributes;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+
+import static org.robolectric.util.Util.readBytes;
+
+/**
+ * A jar of classes already run through the instrumentor by {@link PreInstrumenter}.
+ *
+ * Point the system property {@code robolectric.preinstrumentedJar} at one and
+ * {@link AsmInstrumentingClassLoader} will define classes from it directly, but only for the {@link SdkConfig} it
+ * was built from. The jar is ignored (with a warning) if it was built by a different Robolectric or with a different
+ * {@link Setup}.
+ */
+public class PreinstrumentedJar {
+  public static final String JAR_PROPERTY = "robolectric.preinstrumentedJar";
+  public static final Attributes.Name FINGERPRINT_ATTRIBUTE = new Attributes.Name("Robolectric-Instrumentation-Fingerprint");
+  public static final Attributes.Name SDK_ATTRIBUTE = new Attributes.Name("Robolectric-Sdk-Artifacts");
+
+  // environments using the same jar share one open JarFile, so unloading and rebuilding them doesn't leak handles
+  private static final Map<String, PreinstrumentedJar> openJars = new HashMap<String, PreinstrumentedJar>();
+
+  private final JarFile jarFile;
+
+  PreinstrumentedJar(JarFile jarFile) {
+    this.jarFile = jarFile;
+  }
+
+  public static PreinstrumentedJar fromSystemProperties(String instrumentationFingerprint, SdkConfig sdkConfig) {
+    String path = System.getProperty(JAR_PROPERTY);
+    if (path == null || path.length() == 0 || sdkConfig == null) return null;
+    return open(new File(path), instrumentationFingerprint, sdkArtifacts(sdkConfig));
+  }
+
+  /**
+   * @return the coordinates of the artifacts making up {@code sdkConfig}'s classpath, which identify the classes a
+   *     jar was built from
+   */
+  public static String sdkArtifacts(SdkConfig sdkConfig) {
+    StringBuilder buf = new StringBuilder();
+    for (Dependency dependency : sdkConfig.getSdkClasspathDependencies()) {
+      if (buf.length() > 0) buf.append(' ');
+      buf.append(dependency.getGroupId()).append(':').append(dependency.getArtifactId()).append(':')
+          .append(dependency.getVersion());
+      if (dependency.getClassifier() != null) buf.append(':').append(dependency.getClassifier());
+    }
+    return buf.toString();
+  }
+
+  /**
+   * @return the jar, shared with earlier callers asking for the same file, fingerprint and SDK; or null if it's
+   *     missing, unreadable, or was built for something else
+   */
+  public static PreinstrumentedJar open(File file, String instrumentationFingerprint, String sdkArtifacts) {
+    String key = file.getAbsolutePath() + "\n" + instrumentationFingerprint + "\n" + sdkArtifacts;
+    synchronized (openJars) {
+      PreinstrumentedJar preinstrumentedJar = openJars.get(key);
+      if (preinstrumentedJar == null) {
+        preinstrumentedJar = openUnshared(file, instrumentationFingerprint, sdkArtifacts);
+        if (preinstrumentedJar != null) openJars.put(key, preinstrumentedJar);
+      }
+      return preinstrumentedJar;
+    }
+  }
+
+  private static PreinstrumentedJar openUnshared(File file, String instrumentationFingerprint, String sdkArtifacts) {
+    if (!file.exists()) {
+      System.err.println("[WARN] pre-instrumented jar " + file + " doesn't exist; instrumenting at runtime");
+      return null;
+    }
+
+    JarFile jarFile = null;
+    try {
+      jarFile = new JarFile(file);
+      Manifest manifest = jarFile.getManifest();
+      String jarFingerprint = manifest == null ? null : manifest.getMainAttributes().getValue(FINGERPRINT_ATTRIBUTE);
+      if (!instrumentationFingerprint.equals(jarFingerprint)) {
+        System.err.println("[WARN] pre-instrumented jar " + file + " was built with a different Robolectric or Setup; instrumenting at runtime");
+        jarFile.close();
+        return null;
+      }
+      String jarSdkArtifacts = manifest.getMainAttributes().getValue(SDK_ATTRIBUTE);
+      if (!sdkArtifacts.equals(jarSdkArtifacts)) {
+        System.err.println("[WARN] pre-instrumented jar " + file + " was built from " + jarSdkArtifacts + ", not " + sdkArtifacts + "; instrumenting at runtime");
+        jarFile.close();
+        return null;
+      }
+      return new PreinstrumentedJar(jarFile);
+    } catch (IOException e) {
+      System.err.println("[WARN] couldn't open pre-instrumented jar " + file + " (" + e + "); instrumenting at runtime");
+      closeQuietly(jarFile);
+      return null;
+    }
+  }
+
+  private static void closeQuietly(JarFile jarFile) {
+    if (jarFile == null) return;
+    try {
+      jarFile.close();
+    } catch (IOException ignored) {
+    }
+  }
+
+  public byte[] getClassBytes(String className) throws ClassNotFoundException {
+    ZipEntry entry = jarFile.getEntry(className.replace('.', '/') + ".class");
+    if (entry == null) return null;
+
+    try {
+      InputStream inputStream = jarFile.getInputStream(entry);
+      return readBytes(inputStream);
+    } catch (IOException e) {
+      throw new ClassNotFoundException("couldn't load " + className + " from " + jarFile.getName(), e);
+    }
+  }
+}
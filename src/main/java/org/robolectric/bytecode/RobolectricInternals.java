@@ -13,6 +13,7 @@ public class RobolectricInternals {
 
   @SuppressWarnings({"UnusedDeclaration"})
   private static ClassHandler classHandler; // initialized via magic by SdkEnvironment
+  private static volatile int planGeneration;
 
   public static boolean inActivityControllerBlock = false;
 
@@ -79,6 +80,21 @@ public class RobolectricInternals {
     return classHandler.methodInvoked(signature, isStatic, theClass);
   }
 
+  @SuppressWarnings({"UnusedDeclaration"})
+  public static CachedPlan cachePlan(String signature, boolean isStatic, Class<?> theClass) {
+    int generation = planGeneration;
+    ClassHandler currentClassHandler = classHandler;
+    return new CachedPlan(currentClassHandler, generation, currentClassHandler.methodInvoked(signature, isStatic, theClass));
+  }
+
+  /**
+   * Discards plans cached by instrumented methods. Plans are already discarded whenever a different
+   * ClassHandler is installed; call this if an installed ClassHandler starts answering differently.
+   */
+  public static synchronized void invalidatePlans() {
+    planGeneration++;
+  }
+
   @SuppressWarnings({"UnusedDeclaration"})
   public static Object intercept(String signature, Object instance, Object[] params, Class theClass) throws Throwable {
     try {
@@ -182,4 +198,34 @@ public class RobolectricInternals {
     String name = directMethodName(clazz.getName(), InstrumentingClassLoader.CONSTRUCTOR_METHOD_NAME);
     return method(name).withParameterTypes(parameterTypes).in(instance);
   }
+
+  /**
+   * Holds the plan for a single instrumented method, in a static field of the instrumented class.
+   *
+   * This is our stand-in for an invokedynamic call site: the field is the linked target, and the ClassHandler
+   * identity and {@link #invalidatePlans() generation} checks play the part of a SwitchPoint, forcing the site to
+   * relink when shadows are reconfigured. Plans that call real code skip the Plan and the argument array entirely,
+   * and shadow plans call through generated invokers which the JIT can inline per call site.
+   */
+  public static final class CachedPlan {
+    private final ClassHandler classHandler;
+    private final int generation;
+    private final ClassHandler.Plan plan;
+
+    CachedPlan(ClassHandler classHandler, int generation, ClassHandler.Plan plan) {
+      this.classHandler = classHandler;
+      this.generation = generation;
+      this.plan = plan;
+    }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public boolean isCurrent() {
+      return classHandler == RobolectricInternals.classHandler && generation == planGeneration;
+    }
+
+    @SuppressWarnings({"UnusedDeclaration"})
+    public ClassHandler.Plan getPlan() {
+      return plan;
+    }
+  }
 }
@@ -33,6 +33,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 import static java.util.Arrays.asList;
 
@@ -55,6 +56,8 @@ public class Setup {
       ResourceLoader.class,
       ClassHandler.class,
       ClassHandler.Plan.class,
+      SpecializedPlan.class,
+      ShadowFactory.class,
       Implements.class,
       Implementation.class,
       Instrument.class,
@@ -90,6 +93,13 @@ public class Setup {
     return classInfo.hasAnnotation(Instrument.class) || isFromAndroidSdk(classInfo);
   }
 
+  /**
+   * Shadows aren't instrumented, but their static state is tracked so it can be reset between tests.
+   */
+  public boolean shouldTrackStaticState(ClassInfo classInfo) {
+    return !classInfo.isInterface() && !classInfo.isAnnotation() && classInfo.hasAnnotation(Implements.class);
+  }
+
   public boolean isFromAndroidSdk(ClassInfo classInfo) {
     String className = classInfo.getName();
     return className.startsWith("android.")
@@ -170,6 +180,24 @@ public class Setup {
     return map;
   }
 
+  /**
+   * Identifies what this Setup does, so instrumented classes and whole {@link SdkEnvironment}s made with it can be
+   * reused by anything with the same fingerprint. Override this if your subclass's behavior depends on more than
+   * its class and the classes and methods it remaps and intercepts.
+   */
+  public String fingerprint() {
+    StringBuilder buf = new StringBuilder();
+    buf.append(getClass().getName()).append('\n');
+    buf.append(new TreeMap<String, String>(classNameTranslations())).append('\n');
+    List<String> methodRefs = new ArrayList<String>();
+    for (MethodRef methodRef : methodsToIntercept()) {
+      methodRefs.add(methodRef.className + "." + methodRef.methodName);
+    }
+    Collections.sort(methodRefs);
+    buf.append(methodRefs).append('\n');
+    return buf.toString();
+  }
+
   public static class FakeClass {
     public static class FakeInnerClass {}
   }
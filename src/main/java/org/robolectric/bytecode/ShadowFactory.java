@@ -0,0 +1,28 @@
+package org.robolectric.bytecode;
+
+import java.lang.reflect.Field;
+
+/**
+ * Creates the shadow for instances of one instrumented class and injects the instance into the shadow's
+ * {@link org.robolectric.annotation.RealObject} fields.
+ *
+ * {@link ShadowWrangler} builds one per instrumented class the first time it's constructed, so finding the shadow's
+ * constructor and fields happens once rather than for every object.
+ */
+public abstract class ShadowFactory {
+  private final Field[] realObjectFields;
+
+  protected ShadowFactory(Field[] realObjectFields) {
+    this.realObjectFields = realObjectFields;
+  }
+
+  public Object createShadowFor(Object realObject) throws Exception {
+    Object shadow = newShadow(realObject);
+    for (Field realObjectField : realObjectFields) {
+      realObjectField.set(shadow, realObject);
+    }
+    return shadow;
+  }
+
+  protected abstract Object newShadow(Object realObject) throws Exception;
+}
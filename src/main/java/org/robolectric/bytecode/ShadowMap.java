@@ -8,15 +8,22 @@ import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 public class ShadowMap {
   public static final ShadowMap EMPTY = new ShadowMap(Collections.<String, ShadowConfig>emptyMap());
   private static final Set<String> unloadableClassNames = new HashSet<String>();
 
+  private static final ShadowConfig NO_SHADOW = new ShadowConfig(Object.class.getName(), true, false, false);
+
   private final Map<String, ShadowConfig> map;
+  // shadows found by naming convention, plus negative entries; the shadows jar is the same for every SDK, so
+  // keying by name is safe, and unlike keying by Class it doesn't pin SdkEnvironments' class loaders
+  private final ConcurrentMap<String, ShadowConfig> conventionalShadows = new ConcurrentHashMap<String, ShadowConfig>();
 
   ShadowMap(Map<String, ShadowConfig> map) {
-    this.map = new HashMap<String, ShadowConfig>(map);
+    this.map = Collections.unmodifiableMap(new HashMap<String, ShadowConfig>(map));
   }
 
   private static void warnAbout(String unloadableClassName) {
@@ -81,21 +88,31 @@ public class ShadowMap {
     ShadowConfig shadowConfig = map.get(className);
     ClassLoader classLoader = clazz.getClassLoader();
     if (shadowConfig == null && classLoader != null) {
-      String shadowClassName = convertToShadowName(className);
-      Class<?> shadowClass;
-      try {
-        shadowClass = classLoader.loadClass(shadowClassName);
-      } catch (ClassNotFoundException e) {
-        return null;
-      }
-      ShadowInfo shadowInfo = getShadowInfo(shadowClass);
-      if (shadowInfo != null && shadowInfo.shadowedClassName.equals(className)) {
-        return shadowInfo.getShadowConfig();
+      shadowConfig = conventionalShadows.get(className);
+      if (shadowConfig == null) {
+        shadowConfig = findShadowByConvention(className, classLoader);
+        conventionalShadows.put(className, shadowConfig == null ? NO_SHADOW : shadowConfig);
       }
+      return shadowConfig == NO_SHADOW ? null : shadowConfig;
     }
     return shadowConfig;
   }
 
+  private static ShadowConfig findShadowByConvention(String className, ClassLoader classLoader) {
+    String shadowClassName = convertToShadowName(className);
+    Class<?> shadowClass;
+    try {
+      shadowClass = classLoader.loadClass(shadowClassName);
+    } catch (ClassNotFoundException e) {
+      return null;
+    }
+    ShadowInfo shadowInfo = getShadowInfo(shadowClass);
+    if (shadowInfo != null && shadowInfo.shadowedClassName.equals(className)) {
+      return shadowInfo.getShadowConfig();
+    }
+    return null;
+  }
+
   public static String convertToShadowName(String className) {
     String shadowClassName =
         "org.robolectric.shadows.Shadow" + className.substring(className.lastIndexOf(".") + 1);
@@ -0,0 +1,246 @@
+package org.robolectric.bytecode;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.Opcodes;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.GeneratorAdapter;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates a small {@link ClassHandler.Plan} class per shadow method which casts its arguments and calls the
+ * shadow directly, so intercepted calls don't pay for {@link Method#invoke(Object, Object...)}. If the shadow
+ * method's shape has a {@link SpecializedPlan} entry point, that's implemented too, so calls don't box at all.
+ *
+ * Also generates {@link ShadowFactory}s which call shadow constructors directly.
+ */
+class ShadowMethodInvokers implements Opcodes {
+  static final String INVOKER_CLASS_MARKER = "$$RoboInvoker$";
+  static final String FACTORY_CLASS_MARKER = "$$RoboFactory$";
+
+  private static final Type OBJECT_TYPE = Type.getType(Object.class);
+  private static final Type SPECIALIZED_PLAN_TYPE = Type.getType(SpecializedPlan.class);
+  private static final Type SHADOW_FACTORY_TYPE = Type.getType(ShadowFactory.class);
+  private static final org.objectweb.asm.commons.Method NEW_SHADOW_METHOD = new org.objectweb.asm.commons.Method(
+      "newShadow", OBJECT_TYPE, new Type[]{OBJECT_TYPE});
+  private static final Type SHADOW_WRANGLER_TYPE = Type.getType(ShadowWrangler.class);
+  private static final org.objectweb.asm.commons.Method SHADOW_MISMATCH_METHOD = new org.objectweb.asm.commons.Method(
+      "shadowMismatch", Type.getType(IllegalArgumentException.class),
+      new Type[]{Type.getType(String.class), Type.getType(Class.class), OBJECT_TYPE});
+  private static final org.objectweb.asm.commons.Method RUN_METHOD = new org.objectweb.asm.commons.Method("run",
+      OBJECT_TYPE, new Type[]{OBJECT_TYPE, OBJECT_TYPE, Type.getType(Object[].class)});
+  private static final AtomicInteger counter = new AtomicInteger();
+
+  private final Map<ClassLoader, InvokerClassLoader> classLoaders = new HashMap<ClassLoader, InvokerClassLoader>();
+
+  /**
+   * @return a plan which calls {@code shadowMethod}, or null if it can't be called directly from generated code
+   */
+  public SpecializedPlan invokerFor(Method shadowMethod) {
+    if (!isAccessible(shadowMethod)) return null;
+
+    Class<?> declaringClass = shadowMethod.getDeclaringClass();
+    String className = declaringClass.getName() + INVOKER_CLASS_MARKER + shadowMethod.getName() + "$" + counter.incrementAndGet();
+    try {
+      byte[] bytes = generate(className.replace('.', '/'), shadowMethod);
+      Class<?> invokerClass = classLoaderFor(declaringClass.getClassLoader()).define(className, bytes);
+      return (SpecializedPlan) invokerClass.newInstance();
+    } catch (Throwable e) {
+      System.err.println("[WARN] couldn't generate invoker for " + shadowMethod + ", falling back to reflection: " + e);
+      return null;
+    }
+  }
+
+  /**
+   * @param constructor the shadow constructor taking the real object, or null to use the no-arg constructor
+   * @return a factory which calls the shadow's constructor directly, or null if it can't be called from generated code
+   */
+  public ShadowFactory factoryFor(Class<?> shadowClass, Constructor<?> constructor, Field[] realObjectFields) {
+    if (Modifier.isAbstract(shadowClass.getModifiers()) || !isAccessible(shadowClass)) return null;
+    try {
+      if (constructor == null) constructor = shadowClass.getConstructor();
+    } catch (NoSuchMethodException e) {
+      return null;
+    }
+    if (!Modifier.isPublic(constructor.getModifiers())) return null;
+    for (Class<?> paramType : constructor.getParameterTypes()) {
+      if (!isAccessible(paramType)) return null;
+    }
+
+    String className = shadowClass.getName() + FACTORY_CLASS_MARKER + counter.incrementAndGet();
+    try {
+      byte[] bytes = generateFactory(className.replace('.', '/'), constructor);
+      Class<?> factoryClass = classLoaderFor(shadowClass.getClassLoader()).define(className, bytes);
+      return (ShadowFactory) factoryClass.getConstructor(Field[].class).newInstance((Object) realObjectFields);
+    } catch (Throwable e) {
+      System.err.println("[WARN] couldn't generate factory for " + shadowClass + ", falling back to reflection: " + e);
+      return null;
+    }
+  }
+
+  private boolean isAccessible(Method shadowMethod) {
+    if (!Modifier.isPublic(shadowMethod.getModifiers())) return false;
+    if (!isAccessible(shadowMethod.getDeclaringClass())) return false;
+    if (!isAccessible(shadowMethod.getReturnType())) return false;
+    for (Class<?> paramType : shadowMethod.getParameterTypes()) {
+      if (!isAccessible(paramType)) return false;
+    }
+    return true;
+  }
+
+  private boolean isAccessible(Class<?> type) {
+    while (type.isArray()) type = type.getComponentType();
+    if (type.isPrimitive()) return true;
+    for (Class<?> clazz = type; clazz != null; clazz = clazz.getEnclosingClass()) {
+      if (!Modifier.isPublic(clazz.getModifiers())) return false;
+    }
+    return true;
+  }
+
+  synchronized void clear() {
+    classLoaders.clear();
+  }
+
+  private synchronized InvokerClassLoader classLoaderFor(ClassLoader parent) {
+    InvokerClassLoader classLoader = classLoaders.get(parent);
+    if (classLoader == null) {
+      classLoader = new InvokerClassLoader(parent);
+      classLoaders.put(parent, classLoader);
+    }
+    return classLoader;
+  }
+
+  private byte[] generate(String internalClassName, Method shadowMethod) {
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    classWriter.visit(V1_6, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, internalClassName, null,
+        SPECIALIZED_PLAN_TYPE.getInternalName(), null);
+
+    org.objectweb.asm.commons.Method constructor = org.objectweb.asm.commons.Method.getMethod("void <init> ()");
+    GeneratorAdapter ctor = new GeneratorAdapter(ACC_PUBLIC, constructor, null, null, classWriter);
+    ctor.loadThis();
+    ctor.invokeConstructor(SPECIALIZED_PLAN_TYPE, constructor);
+    ctor.returnValue();
+    ctor.endMethod();
+
+    generateEntryPoint(classWriter, RUN_METHOD, shadowMethod, false);
+
+    // if the shadow method has a shape with its own entry point, implement that too, without any boxing
+    String shape = SpecializedPlan.shapeOf(Type.getMethodDescriptor(shadowMethod));
+    if (shape != null) {
+      org.objectweb.asm.commons.Method entryPoint = new org.objectweb.asm.commons.Method(
+          SpecializedPlan.entryPointName(shape), SpecializedPlan.entryPointDescriptor(shape));
+      generateEntryPoint(classWriter, entryPoint, shadowMethod, true);
+    }
+
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  private void generateEntryPoint(ClassWriter classWriter, org.objectweb.asm.commons.Method entryPoint,
+      Method shadowMethod, boolean specialized) {
+    GeneratorAdapter m = new GeneratorAdapter(ACC_PUBLIC, entryPoint, null, new Type[]{Type.getType(Throwable.class)}, classWriter);
+    Type declaringType = Type.getType(shadowMethod.getDeclaringClass());
+    org.objectweb.asm.commons.Method targetMethod = org.objectweb.asm.commons.Method.getMethod(shadowMethod);
+    boolean isStatic = Modifier.isStatic(shadowMethod.getModifiers());
+
+    if (!isStatic) {
+      Label isShadow = new Label();
+      m.loadArg(1);                 // roboData, i.e. the shadow
+      m.ifNull(isShadow);
+      m.loadArg(1);
+      m.instanceOf(declaringType);
+      m.ifZCmp(GeneratorAdapter.NE, isShadow);
+      m.push(shadowMethod.toString());
+      m.push(declaringType);
+      m.loadArg(1);
+      m.invokeStatic(SHADOW_WRANGLER_TYPE, SHADOW_MISMATCH_METHOD);
+      m.throwException();
+
+      m.mark(isShadow);
+      m.loadArg(1);
+      m.checkCast(declaringType);
+    }
+
+    Type[] argumentTypes = targetMethod.getArgumentTypes();
+    for (int i = 0; i < argumentTypes.length; i++) {
+      if (specialized) {
+        m.loadArg(2 + i);
+        if (isReference(argumentTypes[i])) m.checkCast(argumentTypes[i]);
+      } else {
+        m.loadArg(2);               // params
+        m.push(i);
+        m.arrayLoad(OBJECT_TYPE);
+        m.unbox(argumentTypes[i]);  // just a checkcast for reference types
+      }
+    }
+
+    if (isStatic) {
+      m.invokeStatic(declaringType, targetMethod);
+    } else {
+      m.invokeVirtual(declaringType, targetMethod);
+    }
+
+    Type returnType = targetMethod.getReturnType();
+    if (!specialized) {
+      if (returnType.getSort() == Type.VOID) {
+        m.visitInsn(ACONST_NULL);
+      } else {
+        m.valueOf(returnType);      // no-op for reference types
+      }
+    }
+    m.returnValue();
+    m.endMethod();
+  }
+
+  private byte[] generateFactory(String internalClassName, Constructor<?> constructor) {
+    ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    classWriter.visit(V1_6, ACC_PUBLIC | ACC_FINAL | ACC_SUPER | ACC_SYNTHETIC, internalClassName, null,
+        SHADOW_FACTORY_TYPE.getInternalName(), null);
+
+    org.objectweb.asm.commons.Method factoryConstructor = new org.objectweb.asm.commons.Method("<init>",
+        Type.VOID_TYPE, new Type[]{Type.getType(Field[].class)});
+    GeneratorAdapter ctor = new GeneratorAdapter(ACC_PUBLIC, factoryConstructor, null, null, classWriter);
+    ctor.loadThis();
+    ctor.loadArg(0);
+    ctor.invokeConstructor(SHADOW_FACTORY_TYPE, factoryConstructor);
+    ctor.returnValue();
+    ctor.endMethod();
+
+    GeneratorAdapter m = new GeneratorAdapter(ACC_PROTECTED, NEW_SHADOW_METHOD, null, new Type[]{Type.getType(Exception.class)}, classWriter);
+    Type shadowType = Type.getType(constructor.getDeclaringClass());
+    m.newInstance(shadowType);
+    m.dup();
+    Class<?>[] parameterTypes = constructor.getParameterTypes();
+    if (parameterTypes.length == 1) {
+      m.loadArg(0);                 // the real object
+      m.checkCast(Type.getType(parameterTypes[0]));
+    }
+    m.invokeConstructor(shadowType, org.objectweb.asm.commons.Method.getMethod(constructor));
+    m.returnValue();
+    m.endMethod();
+
+    classWriter.visitEnd();
+    return classWriter.toByteArray();
+  }
+
+  private static boolean isReference(Type type) {
+    return type.getSort() == Type.OBJECT || type.getSort() == Type.ARRAY;
+  }
+
+  private static class InvokerClassLoader extends ClassLoader {
+    InvokerClassLoader(ClassLoader parent) {
+      super(parent);
+    }
+
+    Class<?> define(String className, byte[] bytes) {
+      return defineClass(className, bytes, 0, bytes.length);
+    }
+  }
+}
@@ -8,14 +8,16 @@ import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
 import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.RealObject;
 import org.robolectric.shadows.ShadowWindow;
 import org.robolectric.util.Function;
+import org.robolectric.util.Util;
 
 import static org.fest.reflect.core.Reflection.method;
 import static org.fest.reflect.core.Reflection.type;
@@ -35,19 +37,43 @@ public class ShadowWrangler implements ClassHandler {
   public static final Plan CALL_REAL_CODE_PLAN = null;
   private static final boolean STRIP_SHADOW_STACK_TRACES = true;
   private static final ShadowConfig NO_SHADOW_CONFIG = new ShadowConfig(Object.class.getName(), true, false, false);
+  private static final ShadowFactory NO_SHADOW_FACTORY = new ShadowFactory(new Field[0]) {
+    @Override protected Object newShadow(Object realObject) {
+      return new Object();
+    }
+  };
+  private static final AtomicLong createdShadowCount = new AtomicLong();
   public boolean debug = false;
 
   private final ShadowMap shadowMap;
-  private final Map<Class, MetaShadow> metaShadowMap = new HashMap<Class, MetaShadow>();
-  private final Map<String, Plan> planCache = new LinkedHashMap<String, Plan>() {
-    @Override protected boolean removeEldestEntry(Map.Entry<String, Plan> eldest) {
-      return size() > 500;
-    }
-  };
-  private final Map<Class, ShadowConfig> shadowConfigCache = new HashMap<Class, ShadowConfig>();
+  private final ConcurrentMap<Class, ShadowFactory> shadowFactories = new ConcurrentHashMap<Class, ShadowFactory>();
+  private final PlanCache planCache;
+  private final ConcurrentMap<Class, ShadowConfig> shadowConfigCache = new ConcurrentHashMap<Class, ShadowConfig>();
+  private final ConcurrentMap<Class, ShadowConfig> nearestShadowConfigCache = new ConcurrentHashMap<Class, ShadowConfig>();
+  private final ShadowMethodInvokers shadowMethodInvokers = new ShadowMethodInvokers();
 
   public ShadowWrangler(ShadowMap shadowMap) {
+    this(shadowMap, PlanCache.fromSystemProperties());
+  }
+
+  public ShadowWrangler(ShadowMap shadowMap, PlanCache planCache) {
     this.shadowMap = shadowMap;
+    this.planCache = planCache;
+  }
+
+  public PlanCache getPlanCache() {
+    return planCache;
+  }
+
+  /**
+   * Forgets everything cached about the classes this handler has seen, so it no longer keeps their class loaders alive.
+   */
+  public void clearCaches() {
+    shadowFactories.clear();
+    planCache.clear();
+    shadowConfigCache.clear();
+    nearestShadowConfigCache.clear();
+    shadowMethodInvokers.clear();
   }
 
   @Override
@@ -78,10 +104,13 @@ public class ShadowWrangler implements ClassHandler {
   }
 
   @Override
-  synchronized public Plan methodInvoked(String signature, boolean isStatic, Class<?> theClass) {
+  public Plan methodInvoked(String signature, boolean isStatic, Class<?> theClass) {
     if (debug) System.out.println("[DEBUG] " + signature);
-    if (planCache.containsKey(signature)) return planCache.get(signature);
-    Plan plan = calculatePlan(signature, isStatic, theClass);
+    Plan plan = planCache.get(signature);
+    if (plan != PlanCache.NOT_CACHED) return plan;
+
+    // racing threads may both calculate a plan; they'll be equivalent, so last one in wins
+    plan = calculatePlan(signature, isStatic, theClass);
     planCache.put(signature, plan);
     return plan;
   }
@@ -106,7 +135,7 @@ public class ShadowWrangler implements ClassHandler {
     } else {
       try {
         final ClassLoader classLoader = theClass.getClassLoader();
-        final Class<?> shadowClass = classLoader.loadClass(shadowConfig.shadowClassName);
+        final Class<?> shadowClass = loadClass(shadowConfig.shadowClassName, classLoader);
         Method shadowMethod = getShadowedMethod(invocationProfile, classLoader, shadowClass);
 
         if (shadowMethod == null && shadowConfig.looseSignatures) {
@@ -138,7 +167,8 @@ public class ShadowWrangler implements ClassHandler {
           return CALL_REAL_CODE_PLAN;
         } else {
           if (debug) System.out.println("[DEBUG] found shadow for " + signature + "; will call " + shadowMethod);
-          return new ShadowMethodPlan(shadowMethod);
+          Plan invoker = shadowMethodInvokers.invokerFor(shadowMethod);
+          return invoker != null ? invoker : new ShadowMethodPlan(shadowMethod);
         }
       } catch (ClassNotFoundException e) {
         throw new RuntimeException(e);
@@ -146,7 +176,7 @@ public class ShadowWrangler implements ClassHandler {
     }
   }
 
-  synchronized private ShadowConfig getShadowConfig(Class clazz) {
+  private ShadowConfig getShadowConfig(Class clazz) {
     ShadowConfig shadowConfig = shadowConfigCache.get(clazz);
     if (shadowConfig == null) {
       shadowConfig = shadowMap.get(clazz);
@@ -157,6 +187,23 @@ public class ShadowWrangler implements ClassHandler {
     }
   }
 
+  /**
+   * @return the shadow config for {@code clazz} or its nearest shadowed ancestor, or null if none are shadowed
+   */
+  private ShadowConfig getNearestShadowConfig(Class clazz) {
+    ShadowConfig shadowConfig = nearestShadowConfigCache.get(clazz);
+    if (shadowConfig == null) {
+      shadowConfig = getShadowConfig(clazz);
+      if (shadowConfig == null && clazz.getSuperclass() != null) {
+        shadowConfig = getNearestShadowConfig(clazz.getSuperclass());
+      }
+      nearestShadowConfigCache.put(clazz, shadowConfig == null ? NO_SHADOW_CONFIG : shadowConfig);
+      return shadowConfig;
+    } else {
+      return (shadowConfig == NO_SHADOW_CONFIG) ? null : shadowConfig;
+    }
+  }
+
   private boolean isAndroidSupport(InvocationProfile invocationProfile) {
     return invocationProfile.clazz.getName().startsWith("android.support");
   }
@@ -275,7 +322,8 @@ public class ShadowWrangler implements ClassHandler {
           continue;
         }
 
-        if (className.equals(ShadowMethodPlan.class.getName())) {
+        if (className.equals(ShadowMethodPlan.class.getName()) || className.contains(ShadowMethodInvokers.INVOKER_CLASS_MARKER)
+            || className.contains(ShadowMethodInvokers.FACTORY_CLASS_MARKER)) {
           continue;
         }
 
@@ -316,7 +364,7 @@ public class ShadowWrangler implements ClassHandler {
     Class<?> clazz = RoboType.findPrimitiveClass(paramType);
     if (clazz == null) {
       try {
-        clazz = classLoader.loadClass(paramType);
+        clazz = Util.loadClass(paramType, classLoader);
       } catch (ClassNotFoundException e) {
         throw new RuntimeException(e);
       }
@@ -329,62 +377,59 @@ public class ShadowWrangler implements ClassHandler {
     return clazz;
   }
 
-  public Object createShadowFor(Object instance) {
-    Object shadow;
-
-    String shadowClassName = getShadowClassName(instance);
-
-    if (shadowClassName == null) return new Object();
+  /**
+   * @return how many shadows all ShadowWranglers have created so far
+   */
+  public static long getCreatedShadowCount() {
+    return createdShadowCount.get();
+  }
 
-    if (debug)
-      System.out.println("creating new " + shadowClassName + " as shadow for " + instance.getClass().getName());
+  public Object createShadowFor(Object instance) {
     try {
-      Class<?> shadowClass = loadClass(shadowClassName, instance.getClass().getClassLoader());
-      Constructor<?> constructor = findConstructor(instance, shadowClass);
-      if (constructor != null) {
-        shadow = constructor.newInstance(instance);
-      } else {
-        shadow = shadowClass.newInstance();
-      }
-
-      injectRealObjectOn(shadow, shadowClass, instance);
-
-      return shadow;
-    } catch (InstantiationException e) {
-      throw new RuntimeException(e);
-    } catch (IllegalAccessException e) {
-      throw new RuntimeException(e);
-    } catch (InvocationTargetException e) {
+      ShadowFactory shadowFactory = getShadowFactory(instance.getClass());
+      if (shadowFactory != NO_SHADOW_FACTORY) createdShadowCount.incrementAndGet();
+      return shadowFactory.createShadowFor(instance);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Exception e) {
       throw new RuntimeException(e);
     }
   }
 
-  private String getShadowClassName(Object instance) {
-    Class clazz = instance.getClass();
-    ShadowConfig shadowConfig = null;
-    while (shadowConfig == null && clazz != null) {
-      shadowConfig = getShadowConfig(clazz);
-      clazz = clazz.getSuperclass();
+  private ShadowFactory getShadowFactory(Class<?> clazz) {
+    ShadowFactory shadowFactory = shadowFactories.get(clazz);
+    if (shadowFactory == null) {
+      shadowFactory = createShadowFactory(clazz);
+      shadowFactories.put(clazz, shadowFactory);
     }
-    return shadowConfig == null ? null : shadowConfig.shadowClassName;
+    return shadowFactory;
   }
 
-  private void injectRealObjectOn(Object shadow, Class<?> shadowClass, Object instance) {
-    MetaShadow metaShadow = getMetaShadow(shadowClass);
-    for (Field realObjectField : metaShadow.realObjectFields) {
-      writeField(shadow, instance, realObjectField);
-    }
+  private ShadowFactory createShadowFactory(Class<?> clazz) {
+    ShadowConfig shadowConfig = getNearestShadowConfig(clazz);
+    if (shadowConfig == null) return NO_SHADOW_FACTORY;
+
+    if (debug) System.out.println("[DEBUG] will create " + shadowConfig.shadowClassName + " as shadow for " + clazz.getName());
+    Class<?> shadowClass = loadClass(shadowConfig.shadowClassName, clazz.getClassLoader());
+    Constructor<?> constructor = findConstructor(clazz, shadowClass);
+    Field[] realObjectFields = findRealObjectFields(shadowClass);
+
+    ShadowFactory generatedFactory = shadowMethodInvokers.factoryFor(shadowClass, constructor, realObjectFields);
+    return generatedFactory != null ? generatedFactory : new ReflectiveShadowFactory(shadowClass, constructor, realObjectFields);
   }
 
-  private MetaShadow getMetaShadow(Class<?> shadowClass) {
-    synchronized (metaShadowMap) {
-      MetaShadow metaShadow = metaShadowMap.get(shadowClass);
-      if (metaShadow == null) {
-        metaShadow = new MetaShadow(shadowClass);
-        metaShadowMap.put(shadowClass, metaShadow);
+  private static Field[] findRealObjectFields(Class<?> shadowClass) {
+    List<Field> realObjectFields = new ArrayList<Field>();
+    while (shadowClass != null) {
+      for (Field field : shadowClass.getDeclaredFields()) {
+        if (field.isAnnotationPresent(RealObject.class)) {
+          field.setAccessible(true);
+          realObjectFields.add(field);
+        }
       }
-      return metaShadow;
+      shadowClass = shadowClass.getSuperclass();
     }
+    return realObjectFields.toArray(new Field[realObjectFields.size()]);
   }
 
   private Class<?> findDirectShadowClass(Class<?> originalClass) {
@@ -395,9 +440,7 @@ public class ShadowWrangler implements ClassHandler {
     return loadClass(shadowConfig.shadowClassName, originalClass.getClassLoader());
   }
 
-  private Constructor<?> findConstructor(Object instance, Class<?> shadowClass) {
-    Class clazz = instance.getClass();
-
+  private Constructor<?> findConstructor(Class<?> clazz, Class<?> shadowClass) {
     Constructor constructor;
     for (constructor = null; constructor == null && clazz != null; clazz = clazz.getSuperclass()) {
       try {
@@ -416,35 +459,18 @@ public class ShadowWrangler implements ClassHandler {
     return method(AsmInstrumentingClassLoader.GET_ROBO_DATA_METHOD_NAME).withReturnType(Object.class).in(instance).invoke();
   }
 
-  private void writeField(Object target, Object value, Field realObjectField) {
-    try {
-      realObjectField.set(target, value);
-    } catch (IllegalAccessException e) {
-      throw new RuntimeException(e);
-    }
+  public static IllegalArgumentException shadowMismatch(String shadowMethod, Class<?> shadowClass, Object shadow) {
+    return new IllegalArgumentException("attempted to invoke " + shadowMethod
+        + (shadow == null ? "" : " on instance of " + shadow.getClass() + ", but " + shadow.getClass().getSimpleName() + " doesn't extend " + shadowClass.getSimpleName()));
   }
 
-  private class MetaShadow {
-    List<Field> realObjectFields = new ArrayList<Field>();
-
-    public MetaShadow(Class<?> shadowClass) {
-      while (shadowClass != null) {
-        for (Field field : shadowClass.getDeclaredFields()) {
-          if (field.isAnnotationPresent(RealObject.class)) {
-            field.setAccessible(true);
-            realObjectFields.add(field);
-          }
-        }
-        shadowClass = shadowClass.getSuperclass();
-      }
-
-    }
-  }
-
-  private static class ShadowMethodPlan implements Plan {
+  /**
+   * Calls a shadow method reflectively, for when {@link ShadowMethodInvokers} can't generate an invoker for it.
+   */
+  static class ShadowMethodPlan implements Plan {
     private final Method shadowMethod;
 
-    public ShadowMethodPlan(Method shadowMethod) {
+    ShadowMethodPlan(Method shadowMethod) {
       this.shadowMethod = shadowMethod;
     }
 
@@ -454,11 +480,25 @@ public class ShadowWrangler implements ClassHandler {
       try {
         return shadowMethod.invoke(shadow, params);
       } catch (IllegalArgumentException e) {
-        throw new IllegalArgumentException("attempted to invoke " + shadowMethod
-            + (shadow == null ? "" : " on instance of " + shadow.getClass() + ", but " + shadow.getClass().getSimpleName() + " doesn't extend " + shadowMethod.getDeclaringClass().getSimpleName()));
+        throw shadowMismatch(shadowMethod.toString(), shadowMethod.getDeclaringClass(), shadow);
       } catch (InvocationTargetException e) {
         throw e.getCause();
       }
     }
   }
+
+  private static class ReflectiveShadowFactory extends ShadowFactory {
+    private final Class<?> shadowClass;
+    private final Constructor<?> constructor;
+
+    ReflectiveShadowFactory(Class<?> shadowClass, Constructor<?> constructor, Field[] realObjectFields) {
+      super(realObjectFields);
+      this.shadowClass = shadowClass;
+      this.constructor = constructor;
+    }
+
+    @Override protected Object newShadow(Object realObject) throws Exception {
+      return constructor != null ? constructor.newInstance(realObject) : shadowClass.newInstance();
+    }
+  }
 }
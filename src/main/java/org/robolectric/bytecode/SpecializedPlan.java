@@ -0,0 +1,174 @@
+package org.robolectric.bytecode;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * A {@link ClassHandler.Plan} with extra entry points for common method shapes, which instrumented code calls
+ * instead of {@link #run(Object, Object, Object[])} so primitive arguments and return values aren't boxed and no
+ * argument array is allocated.
+ *
+ * A shape is the method's parameter types followed by {@code _} and its return type, using {@code I}, {@code Z},
+ * {@code J} and {@code F} for primitives, {@code L} for any reference type and {@code V} for void; e.g.
+ * {@code void setPadding(int, int, int, int)} has shape {@code IIII_V} and is called through {@link #runIIII_V}.
+ *
+ * Each entry point boxes its arguments and delegates to {@code run()} unless overridden, so subclasses only need
+ * to override the ones that they can implement directly.
+ */
+public abstract class SpecializedPlan implements ClassHandler.Plan {
+  private static final Object[] NO_PARAMS = new Object[0];
+  static final String[] SHAPES = {
+      "_V", "_Z", "_I", "_J", "_F", "_L",
+      "I_V", "Z_V", "F_V", "J_V", "L_V",
+      "I_I", "I_Z", "I_L", "L_Z", "L_L",
+      "II_V", "FF_V", "II_I", "LL_V", "IIII_V", "FFFF_V"
+  };
+  private static final Set<String> SUPPORTED_SHAPES = new HashSet<String>(Arrays.asList(SHAPES));
+
+  /**
+   * @return the shape of a method with the given descriptor, or null if there's no entry point for it
+   */
+  public static String shapeOf(String methodDescriptor) {
+    StringBuilder shape = new StringBuilder();
+    int i = 1; // skip '('
+    while (i < methodDescriptor.length()) {
+      char c = methodDescriptor.charAt(i);
+      switch (c) {
+        case ')':
+          shape.append('_');
+          break;
+        case '[':
+          while (methodDescriptor.charAt(i) == '[') i++;
+          if (methodDescriptor.charAt(i) == 'L') i = methodDescriptor.indexOf(';', i);
+          shape.append('L');
+          break;
+        case 'L':
+          i = methodDescriptor.indexOf(';', i);
+          shape.append('L');
+          break;
+        case 'I': case 'Z': case 'J': case 'F': case 'V':
+          shape.append(c);
+          break;
+        default:
+          return null; // byte, char, short and double don't get entry points
+      }
+      i++;
+    }
+    String shapeString = shape.toString();
+    return SUPPORTED_SHAPES.contains(shapeString) ? shapeString : null;
+  }
+
+  public static String entryPointName(String shape) {
+    return "run" + shape;
+  }
+
+  public static String entryPointDescriptor(String shape) {
+    StringBuilder buf = new StringBuilder("(Ljava/lang/Object;Ljava/lang/Object;");
+    for (int i = 0; i < shape.length(); i++) {
+      char c = shape.charAt(i);
+      if (c == '_') {
+        buf.append(')');
+      } else {
+        buf.append(c == 'L' ? "Ljava/lang/Object;" : String.valueOf(c));
+      }
+    }
+    return buf.toString();
+  }
+
+  public void run_V(Object instance, Object roboData) throws Throwable {
+    run(instance, roboData, NO_PARAMS);
+  }
+
+  public boolean run_Z(Object instance, Object roboData) throws Throwable {
+    Object result = run(instance, roboData, NO_PARAMS);
+    return result == null ? false : (Boolean) result;
+  }
+
+  public int run_I(Object instance, Object roboData) throws Throwable {
+    Object result = run(instance, roboData, NO_PARAMS);
+    return result == null ? 0 : ((Number) result).intValue();
+  }
+
+  public long run_J(Object instance, Object roboData) throws Throwable {
+    Object result = run(instance, roboData, NO_PARAMS);
+    return result == null ? 0L : ((Number) result).longValue();
+  }
+
+  public float run_F(Object instance, Object roboData) throws Throwable {
+    Object result = run(instance, roboData, NO_PARAMS);
+    return result == null ? 0f : ((Number) result).floatValue();
+  }
+
+  public Object run_L(Object instance, Object roboData) throws Throwable {
+    return run(instance, roboData, NO_PARAMS);
+  }
+
+  public void runI_V(Object instance, Object roboData, int p0) throws Throwable {
+    run(instance, roboData, new Object[]{p0});
+  }
+
+  public void runZ_V(Object instance, Object roboData, boolean p0) throws Throwable {
+    run(instance, roboData, new Object[]{p0});
+  }
+
+  public void runF_V(Object instance, Object roboData, float p0) throws Throwable {
+    run(instance, roboData, new Object[]{p0});
+  }
+
+  public void runJ_V(Object instance, Object roboData, long p0) throws Throwable {
+    run(instance, roboData, new Object[]{p0});
+  }
+
+  public void runL_V(Object instance, Object roboData, Object p0) throws Throwable {
+    run(instance, roboData, new Object[]{p0});
+  }
+
+  public int runI_I(Object instance, Object roboData, int p0) throws Throwable {
+    Object result = run(instance, roboData, new Object[]{p0});
+    return result == null ? 0 : ((Number) result).intValue();
+  }
+
+  public boolean runI_Z(Object instance, Object roboData, int p0) throws Throwable {
+    Object result = run(instance, roboData, new Object[]{p0});
+    return result == null ? false : (Boolean) result;
+  }
+
+  public Object runI_L(Object instance, Object roboData, int p0) throws Throwable {
+    return run(instance, roboData, new Object[]{p0});
+  }
+
+  public boolean runL_Z(Object instance, Object roboData, Object p0) throws Throwable {
+    Object result = run(instance, roboData, new Object[]{p0});
+    return result == null ? false : (Boolean) result;
+  }
+
+  public Object runL_L(Object instance, Object roboData, Object p0) throws Throwable {
+    return run(instance, roboData, new Object[]{p0});
+  }
+
+  public void runII_V(Object instance, Object roboData, int p0, int p1) throws Throwable {
+    run(instance, roboData, new Object[]{p0, p1});
+  }
+
+  public void runFF_V(Object instance, Object roboData, float p0, float p1) throws Throwable {
+    run(instance, roboData, new Object[]{p0, p1});
+  }
+
+  public int runII_I(Object instance, Object roboData, int p0, int p1) throws Throwable {
+    Object result = run(instance, roboData, new Object[]{p0, p1});
+    return result == null ? 0 : ((Number) result).intValue();
+  }
+
+  public void runLL_V(Object instance, Object roboData, Object p0, Object p1) throws Throwable {
+    run(instance, roboData, new Object[]{p0, p1});
+  }
+
+  public void runIIII_V(Object instance, Object roboData, int p0, int p1, int p2, int p3) throws Throwable {
+    run(instance, roboData, new Object[]{p0, p1, p2, p3});
+  }
+
+  public void runFFFF_V(Object instance, Object roboData, float p0, float p1, float p2, float p3) throws Throwable {
+    run(instance, roboData, new Object[]{p0, p1, p2, p3});
+  }
+}
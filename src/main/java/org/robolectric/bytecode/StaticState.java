@@ -0,0 +1,115 @@
+package org.robolectric.bytecode;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tracks the static state of instrumented classes and shadows so it can be put back between tests.
+ *
+ * The instrumenting class loader calls {@link #snapshot(Class)} when a tracked class finishes static
+ * initialization, and {@link #written(String)} after each write to one of its static fields from outside of it,
+ * naming the class that declares the field. Writes to classes that aren't tracked aren't reported at all. A write
+ * made by another class's static initializer counts as part of the initial state: rather than being reported, it
+ * has the written class snapshotted again, so {@link #reset()} keeps it.
+ * {@link #reset()} then restores just the classes that were written to since the last reset.
+ *
+ * This isn't a complete reset. Only {@code PUTSTATIC}s in classes the loader instruments or tracks (Android classes
+ * and {@code @Implements} shadows) report writes, so these are never undone:
+ * <ul>
+ *   <li>writes made by test classes and other classes that aren't instrumented, including Robolectric's own
+ *       non-shadow classes;</li>
+ *   <li>writes made reflectively, with {@link Field#set(Object, Object)} and friends;</li>
+ *   <li>changes made inside the objects static fields refer to (say, entries put into a static map), since fields are
+ *       restored to the objects they held.</li>
+ * </ul>
+ * Code doing any of these needs to put things back itself, for instance in a shadow's {@code reset()}.
+ *
+ * Like {@link RobolectricInternals}, each instrumenting class loader has its own copy of this class.
+ */
+public class StaticState {
+  private static final Map<String, Snapshot> snapshots = new ConcurrentHashMap<String, Snapshot>();
+  private static final Set<String> dirtyClassNames = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+  /**
+   * @param clazz the class that just finished static initialization, or whose static fields another class's static
+   *     initializer just wrote to; it's passed in rather than looked up by name, since it may have been defined by a
+   *     child of the loader that loaded this class
+   */
+  @SuppressWarnings({"UnusedDeclaration"})
+  public static void snapshot(Class<?> clazz) {
+    snapshots.put(clazz.getName(), new Snapshot(clazz));
+  }
+
+  @SuppressWarnings({"UnusedDeclaration"})
+  public static void written(String className) {
+    if (!dirtyClassNames.contains(className)) {
+      dirtyClassNames.add(className);
+    }
+  }
+
+  /**
+   * @return the number of classes whose static fields were restored
+   */
+  public static int reset() {
+    int restoredCount = 0;
+    List<String> classNames = new ArrayList<String>(dirtyClassNames);
+    dirtyClassNames.removeAll(classNames);
+    for (String className : classNames) {
+      Snapshot snapshot = snapshots.get(className);
+      if (snapshot != null) {
+        snapshot.restore();
+        restoredCount++;
+      }
+    }
+    return restoredCount;
+  }
+
+  public static Set<String> getDirtyClassNames() {
+    return Collections.unmodifiableSet(dirtyClassNames);
+  }
+
+  static boolean isTracked(String fieldName, int modifiers) {
+    // our own fields, like cached plans, look after themselves
+    return Modifier.isStatic(modifiers) && !Modifier.isFinal(modifiers) && !fieldName.startsWith("$$robo$");
+  }
+
+  private static class Snapshot {
+    private final Field[] fields;
+    private final Object[] values;
+
+    Snapshot(Class<?> clazz) {
+      List<Field> fields = new ArrayList<Field>();
+      for (Field field : clazz.getDeclaredFields()) {
+        if (isTracked(field.getName(), field.getModifiers())) {
+          field.setAccessible(true);
+          fields.add(field);
+        }
+      }
+      this.fields = fields.toArray(new Field[fields.size()]);
+      this.values = new Object[this.fields.length];
+      for (int i = 0; i < this.fields.length; i++) {
+        try {
+          values[i] = this.fields[i].get(null);
+        } catch (IllegalAccessException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    }
+
+    void restore() {
+      for (int i = 0; i < fields.length; i++) {
+        try {
+          fields[i].set(null, values[i]);
+        } catch (IllegalAccessException e) {
+          throw new RuntimeException(e);
+        }
+      }
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package org.robolectric.daemon;
+
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunNotifier;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a test class in a {@link RobolectricDaemon} and reports the results as if it had been run here.
+ *
+ * {@link org.robolectric.RobolectricTestRunner} uses this when the system property
+ * {@code robolectric.daemon.port} is set.
+ */
+public class DaemonClient {
+  public static final String PORT_PROPERTY = "robolectric.daemon.port";
+  public static final int DEFAULT_PORT = 7123;
+
+  private final int port;
+  private final List<File> classDirs;
+  private final File tokenFile;
+
+  public DaemonClient(int port, List<File> classDirs) {
+    this(port, classDirs, DaemonToken.tokenFileFromSystemProperties(port));
+  }
+
+  /**
+   * @param tokenFile the file the daemon wrote its {@link DaemonToken} to
+   */
+  public DaemonClient(int port, List<File> classDirs, File tokenFile) {
+    this.port = port;
+    this.classDirs = classDirs;
+    this.tokenFile = tokenFile;
+  }
+
+  /**
+   * @return a client which reloads the directories on this JVM's classpath, or null if no daemon port was given
+   */
+  public static DaemonClient fromSystemProperties() {
+    String portStr = System.getProperty(PORT_PROPERTY);
+    if (portStr == null || portStr.length() == 0) return null;
+
+    List<File> classDirs = new ArrayList<File>();
+    for (String path : System.getProperty("java.class.path").split(File.pathSeparator)) {
+      File file = new File(path);
+      if (file.isDirectory()) classDirs.add(file.getAbsoluteFile());
+    }
+    return new DaemonClient(portFromSystemProperties(), classDirs);
+  }
+
+  static int portFromSystemProperties() {
+    String portStr = System.getProperty(PORT_PROPERTY);
+    return portStr == null || portStr.length() == 0 ? DEFAULT_PORT : Integer.parseInt(portStr);
+  }
+
+  /**
+   * @param description the description of the tests to run, as already reported to JUnit
+   */
+  public void run(Class<?> testClass, Description description, RunNotifier notifier) {
+    Map<String, Description> descriptionsByMethodName = new HashMap<String, Description>();
+    for (Description child : description.getChildren()) {
+      descriptionsByMethodName.put(child.getMethodName(), child);
+    }
+
+    Socket socket = null;
+    try {
+      String token = DaemonToken.read(tokenFile);
+      socket = new Socket(InetAddress.getByName("127.0.0.1"), port);
+      Writer out = new OutputStreamWriter(socket.getOutputStream(), Protocol.UTF8);
+      out.write(Protocol.line(Protocol.AUTH, token) + "\n");
+      for (File classDir : classDirs) {
+        out.write(Protocol.line(Protocol.RELOAD, classDir.getPath()) + "\n");
+      }
+      out.write(Protocol.line(Protocol.TEST, testClass.getName()) + "\n");
+      for (String methodName : descriptionsByMethodName.keySet()) {
+        out.write(Protocol.line(Protocol.METHOD, methodName) + "\n");
+      }
+      out.write(Protocol.RUN + "\n");
+      out.flush();
+
+      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), Protocol.UTF8));
+      String line;
+      while ((line = in.readLine()) != null) {
+        String[] fields = Protocol.fields(line);
+        String event = fields[0];
+        if (event.equals(Protocol.DONE)) return;
+
+        Description testDescription = fields.length > 1 ? descriptionsByMethodName.get(fields[1]) : null;
+        if (testDescription == null) testDescription = description;
+
+        if (event.equals(Protocol.STARTED)) {
+          notifier.fireTestStarted(testDescription);
+        } else if (event.equals(Protocol.FAILURE) || event.equals(Protocol.ERROR)) {
+          notifier.fireTestFailure(new Failure(testDescription, new RemoteFailure(fields[2], fields[3])));
+          if (event.equals(Protocol.ERROR)) return;
+        } else if (event.equals(Protocol.ASSUMPTION_FAILED)) {
+          notifier.fireTestAssumptionFailed(new Failure(testDescription, new RemoteFailure(fields[2], fields[3])));
+        } else if (event.equals(Protocol.IGNORED)) {
+          notifier.fireTestIgnored(testDescription);
+        } else if (event.equals(Protocol.FINISHED)) {
+          notifier.fireTestFinished(testDescription);
+        }
+      }
+      notifier.fireTestFailure(new Failure(description, new IOException("daemon on port " + port + " hung up")));
+    } catch (IOException e) {
+      notifier.fireTestFailure(new Failure(description, e));
+    } finally {
+      if (socket != null) {
+        try {
+          socket.close();
+        } catch (IOException ignored) {
+        }
+      }
+    }
+  }
+
+  /** A failure in the daemon, carrying its stack trace as text. */
+  static class RemoteFailure extends Exception {
+    private final String trace;
+
+    RemoteFailure(String message, String trace) {
+      super(message);
+      this.trace = trace;
+    }
+
+    @Override public void printStackTrace(PrintStream s) {
+      s.print(trace);
+    }
+
+    @Override public void printStackTrace(PrintWriter s) {
+      s.print(trace);
+    }
+  }
+}
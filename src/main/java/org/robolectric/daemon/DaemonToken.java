@@ -0,0 +1,101 @@
+package org.robolectric.daemon;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.SecureRandom;
+
+import static org.robolectric.util.Util.readBytes;
+
+/**
+ * The secret a {@link DaemonClient} must present before a {@link RobolectricDaemon} will run anything for it.
+ *
+ * The daemon writes a fresh random token to a file only its user can read, by default
+ * {@code ~/.robolectric/daemon-<port>.token}, and clients of the same user read it from there. Set the system
+ * property {@code robolectric.daemon.tokenFile} to use a different file.
+ */
+class DaemonToken {
+  static final String TOKEN_FILE_PROPERTY = "robolectric.daemon.tokenFile";
+
+  private static final int TOKEN_BYTES = 32;
+
+  static File tokenFileFromSystemProperties(int port) {
+    String path = System.getProperty(TOKEN_FILE_PROPERTY);
+    if (path != null && path.length() > 0) return new File(path);
+    return new File(new File(System.getProperty("user.home"), ".robolectric"), "daemon-" + port + ".token");
+  }
+
+  /**
+   * Writes a new token to {@code file}, readable and writable only by the current user.
+   *
+   * @throws IOException if the file couldn't be written or its permissions couldn't be restricted
+   */
+  static String create(File file) throws IOException {
+    File dir = file.getAbsoluteFile().getParentFile();
+    if (!dir.isDirectory()) {
+      if (!dir.mkdirs() && !dir.isDirectory()) throw new IOException("couldn't create " + dir);
+      restrictToOwner(dir, true);
+    }
+
+    byte[] bytes = new byte[TOKEN_BYTES];
+    new SecureRandom().nextBytes(bytes);
+    String token = toHex(bytes);
+
+    // restrict the file before anything secret goes into it, and only then move it into place
+    File tempFile = File.createTempFile("tmp-", ".token", dir);
+    try {
+      restrictToOwner(tempFile, false);
+      FileOutputStream out = new FileOutputStream(tempFile);
+      try {
+        out.write(token.getBytes(Protocol.UTF8));
+      } finally {
+        out.close();
+      }
+      if (!tempFile.renameTo(file)) {
+        //noinspection ResultOfMethodCallIgnored
+        file.delete();
+        if (!tempFile.renameTo(file)) throw new IOException("couldn't write " + file);
+      }
+      tempFile = null;
+    } finally {
+      if (tempFile != null) {
+        //noinspection ResultOfMethodCallIgnored
+        tempFile.delete();
+      }
+    }
+    return token;
+  }
+
+  static String read(File file) throws IOException {
+    return new String(readBytes(new FileInputStream(file)), Protocol.UTF8).trim();
+  }
+
+  /**
+   * Compares in time independent of where the tokens differ, so a client can't guess the token a character at a time.
+   */
+  static boolean matches(String expected, String actual) {
+    if (actual == null || actual.length() != expected.length()) return false;
+    int difference = 0;
+    for (int i = 0; i < expected.length(); i++) {
+      difference |= expected.charAt(i) ^ actual.charAt(i);
+    }
+    return difference == 0;
+  }
+
+  private static void restrictToOwner(File file, boolean executable) throws IOException {
+    boolean restricted = file.setReadable(false, false) && file.setReadable(true, true)
+        && file.setWritable(false, false) && file.setWritable(true, true)
+        && file.setExecutable(false, false) && (!executable || file.setExecutable(true, true));
+    if (!restricted) throw new IOException("couldn't make " + file + " private to the current user");
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder buf = new StringBuilder();
+    for (byte b : bytes) {
+      buf.append(Character.forDigit((b >> 4) & 0xf, 16));
+      buf.append(Character.forDigit(b & 0xf, 16));
+    }
+    return buf.toString();
+  }
+}
@@ -0,0 +1,73 @@
+package org.robolectric.daemon;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The line-based protocol spoken between {@link DaemonClient} and {@link RobolectricDaemon}.
+ *
+ * The client first sends {@code auth <token>} with the daemon's {@link DaemonToken}, then {@code reload <dir>} for each class directory to reload, {@code test <class name>},
+ * {@code method <name>} for each test method to run (none means all), and then {@code run}. The daemon replies with
+ * one line per test event, tab-separated as {@code <event> <method name> <message> <trace>}, ending with
+ * {@code done}, or {@code error} if the tests couldn't be run at all.
+ */
+class Protocol {
+  static final Charset UTF8 = Charset.forName("UTF-8");
+
+  static final String AUTH = "auth";
+  static final String RELOAD = "reload";
+  static final String TEST = "test";
+  static final String METHOD = "method";
+  static final String RUN = "run";
+
+  static final String STARTED = "started";
+  static final String FAILURE = "failure";
+  static final String ASSUMPTION_FAILED = "assumptionFailed";
+  static final String IGNORED = "ignored";
+  static final String FINISHED = "finished";
+  static final String ERROR = "error";
+  static final String DONE = "done";
+
+  static String line(String... fields) {
+    StringBuilder buf = new StringBuilder();
+    for (int i = 0; i < fields.length; i++) {
+      if (i > 0) buf.append('\t');
+      escape(fields[i], buf);
+    }
+    return buf.toString();
+  }
+
+  static String[] fields(String line) {
+    List<String> fields = new ArrayList<String>();
+    StringBuilder buf = new StringBuilder();
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '\t') {
+        fields.add(buf.toString());
+        buf.setLength(0);
+      } else if (c == '\\' && i + 1 < line.length()) {
+        char next = line.charAt(++i);
+        buf.append(next == 'n' ? '\n' : next == 'r' ? '\r' : next == 't' ? '\t' : next);
+      } else {
+        buf.append(c);
+      }
+    }
+    fields.add(buf.toString());
+    return fields.toArray(new String[fields.size()]);
+  }
+
+  private static void escape(String s, StringBuilder buf) {
+    if (s == null) return;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '\\': buf.append("\\\\"); break;
+        case '\n': buf.append("\\n"); break;
+        case '\r': buf.append("\\r"); break;
+        case '\t': buf.append("\\t"); break;
+        default: buf.append(c);
+      }
+    }
+  }
+}
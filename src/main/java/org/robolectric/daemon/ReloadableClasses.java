@@ -0,0 +1,213 @@
+package org.robolectric.daemon;
+
+import org.robolectric.SdkEnvironment;
+import org.robolectric.bytecode.AsmInstrumentingClassLoader;
+import org.robolectric.bytecode.ClassInfo;
+import org.robolectric.bytecode.Setup;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The classes in a set of class directories (typically a project's compiled app and test classes), loaded fresh on
+ * top of long-lived {@link SdkEnvironment}s.
+ *
+ * Android and library classes stay in the long-lived environment's class loader; only classes found in the
+ * directories are loaded by child class loaders, so picking up a recompiled test doesn't mean instrumenting the
+ * Android SDK again. The long-lived class loader refuses to load those classes itself, so there's only ever one copy
+ * of each; code loaded into it that looks classes up by name goes through the thread's context class loader instead
+ * (see {@link org.robolectric.util.Util#loadClass(String, ClassLoader)}).
+ */
+public class ReloadableClasses {
+  private static volatile ReloadableClasses current;
+
+  private final List<File> classDirs;
+  private final Map<String, Long> snapshot;
+  private final Set<String> classNames = new HashSet<String>();
+  private final URL[] urls;
+  private final ClassLoader classLoader;
+  private final Map<SdkEnvironment, SdkEnvironment> reloadedEnvironments = new HashMap<SdkEnvironment, SdkEnvironment>();
+
+  public ReloadableClasses(List<File> classDirs, ClassLoader parent) {
+    this.classDirs = new ArrayList<File>(classDirs);
+    this.snapshot = snapshot(classDirs);
+    for (String path : snapshot.keySet()) {
+      if (path.endsWith(".class")) {
+        classNames.add(path.substring(path.indexOf('!') + 1, path.length() - ".class".length()).replace('/', '.'));
+      }
+    }
+
+    urls = new URL[classDirs.size()];
+    for (int i = 0; i < urls.length; i++) {
+      try {
+        urls[i] = classDirs.get(i).toURI().toURL();
+      } catch (MalformedURLException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    classLoader = new ChildFirstClassLoader(urls, parent, classNames);
+  }
+
+  /**
+   * @return the reloadable classes tests are currently being run against, or null if we're not in a daemon
+   */
+  public static ReloadableClasses current() {
+    return current;
+  }
+
+  public static void setCurrent(ReloadableClasses reloadableClasses) {
+    current = reloadableClasses;
+  }
+
+  public boolean isReloadable(String className) {
+    return classNames.contains(className);
+  }
+
+  /**
+   * @return true if no class files in the directories have been added, removed or rewritten since these were loaded
+   */
+  public boolean isUpToDate(List<File> classDirs) {
+    return this.classDirs.equals(classDirs) && snapshot.equals(snapshot(classDirs));
+  }
+
+  /**
+   * @return a non-instrumenting class loader which loads reloadable classes itself; used to find test classes
+   */
+  public ClassLoader getClassLoader() {
+    return classLoader;
+  }
+
+  /**
+   * @return an environment which loads reloadable classes through a child of {@code sdkEnvironment}'s class loader
+   */
+  public synchronized SdkEnvironment reload(SdkEnvironment sdkEnvironment, Setup setup) {
+    SdkEnvironment reloadedEnvironment = reloadedEnvironments.get(sdkEnvironment);
+    if (reloadedEnvironment == null) {
+      refuseInParent(sdkEnvironment.getRobolectricClassLoader(), setup);
+      ClassLoader childClassLoader = new AsmInstrumentingClassLoader(new ReloadingSetup(setup, this),
+          sdkEnvironment.getRobolectricClassLoader(), urls);
+      reloadedEnvironment = sdkEnvironment.withChildClassLoader(childClassLoader);
+      reloadedEnvironments.put(sdkEnvironment, reloadedEnvironment);
+    }
+    return reloadedEnvironment;
+  }
+
+  /**
+   * Unloads the environments created by {@link #reload(SdkEnvironment, Setup)}, once these classes have been
+   * replaced by newer ones.
+   */
+  public synchronized void unload() {
+    for (SdkEnvironment reloadedEnvironment : reloadedEnvironments.values()) {
+      reloadedEnvironment.unload();
+    }
+    reloadedEnvironments.clear();
+  }
+
+  synchronized Collection<SdkEnvironment> getReloadedEnvironments() {
+    return new ArrayList<SdkEnvironment>(reloadedEnvironments.values());
+  }
+
+  // otherwise code in the long-lived environment that looks classes up by name would find its own, stale, copies
+  private void refuseInParent(ClassLoader parent, Setup setup) {
+    if (!(parent instanceof AsmInstrumentingClassLoader)) return;
+    Set<String> acquiredClassNames = new HashSet<String>();
+    for (String className : classNames) {
+      if (setup.shouldAcquire(className)) acquiredClassNames.add(className);
+    }
+    ((AsmInstrumentingClassLoader) parent).refuseClasses(acquiredClassNames);
+  }
+
+  // keyed by "dir!relative/path", valued by last modified time and length
+  private static Map<String, Long> snapshot(List<File> classDirs) {
+    Map<String, Long> snapshot = new HashMap<String, Long>();
+    for (File classDir : classDirs) {
+      snapshot(classDir.getPath() + "!", classDir, snapshot);
+    }
+    return snapshot;
+  }
+
+  private static void snapshot(String prefix, File dir, Map<String, Long> snapshot) {
+    File[] files = dir.listFiles();
+    if (files == null) return;
+    for (File file : files) {
+      if (file.isDirectory()) {
+        snapshot(prefix + file.getName() + "/", file, snapshot);
+      } else {
+        snapshot.put(prefix + file.getName(), file.lastModified() * 31 + file.length());
+      }
+    }
+  }
+
+  private static class ChildFirstClassLoader extends URLClassLoader {
+    private final Set<String> classNames;
+
+    ChildFirstClassLoader(URL[] urls, ClassLoader parent, Set<String> classNames) {
+      super(urls, parent);
+      this.classNames = classNames;
+    }
+
+    @Override protected synchronized Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      if (!classNames.contains(name)) return super.loadClass(name, resolve);
+
+      Class<?> theClass = findLoadedClass(name);
+      if (theClass == null) theClass = findClass(name);
+      if (resolve) resolveClass(theClass);
+      return theClass;
+    }
+  }
+
+  private static class ReloadingSetup extends Setup {
+    private final Setup setup;
+    private final ReloadableClasses reloadableClasses;
+
+    ReloadingSetup(Setup setup, ReloadableClasses reloadableClasses) {
+      this.setup = setup;
+      this.reloadableClasses = reloadableClasses;
+    }
+
+    @Override public boolean shouldAcquire(String name) {
+      return reloadableClasses.isReloadable(name) && setup.shouldAcquire(name);
+    }
+
+    @Override public List<String> getClassesToDelegateFromRcl() {
+      return setup.getClassesToDelegateFromRcl();
+    }
+
+    @Override public boolean shouldInstrument(ClassInfo classInfo) {
+      return setup.shouldInstrument(classInfo);
+    }
+
+    @Override public boolean shouldTrackStaticState(ClassInfo classInfo) {
+      return setup.shouldTrackStaticState(classInfo);
+    }
+
+    @Override public boolean isFromAndroidSdk(ClassInfo classInfo) {
+      return setup.isFromAndroidSdk(classInfo);
+    }
+
+    @Override public Set<MethodRef> methodsToIntercept() {
+      return setup.methodsToIntercept();
+    }
+
+    @Override public Map<String, String> classNameTranslations() {
+      return setup.classNameTranslations();
+    }
+
+    @Override public boolean containsStubs(ClassInfo classInfo) {
+      return setup.containsStubs(classInfo);
+    }
+
+    @Override public String fingerprint() {
+      return getClass().getName() + "\n" + setup.fingerprint();
+    }
+  }
+}
@@ -0,0 +1,210 @@
+package org.robolectric.daemon;
+
+import org.junit.runner.Description;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Request;
+import org.junit.runner.manipulation.Filter;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs tests on behalf of {@link DaemonClient}s, keeping Robolectric's {@link org.robolectric.SdkEnvironment}s,
+ * resolved artifacts and system resources warm between runs.
+ *
+ * Start it with your project's test classpath:
+ * <pre>
+ *   java -cp ... org.robolectric.daemon.RobolectricDaemon [port]
+ * </pre>
+ * and then run tests with the system property {@code robolectric.daemon.port} set to the same port. Classes in
+ * directories on the test classpath are reloaded whenever they change; jars are assumed not to.
+ *
+ * Since running a test means running whatever code the client points it at, the daemon only listens on the loopback
+ * interface and only serves clients presenting the {@link DaemonToken} it writes to a file private to its user. It
+ * won't start if it can't write that file.
+ *
+ * Connections are served one at a time, since tests share the daemon's Android static state.
+ */
+public class RobolectricDaemon {
+  private static final Logger LOGGER = Logger.getLogger(RobolectricDaemon.class.getName());
+
+  private final ServerSocket serverSocket;
+  private final String token;
+  private ReloadableClasses reloadableClasses;
+
+  public RobolectricDaemon(int port) throws IOException {
+    this(port, null);
+  }
+
+  /**
+   * @param tokenFile where to write the token clients must present, or null for the default for the port
+   */
+  public RobolectricDaemon(int port, File tokenFile) throws IOException {
+    serverSocket = new ServerSocket(port, 50, InetAddress.getByName("127.0.0.1"));
+    try {
+      token = DaemonToken.create(tokenFile == null ? DaemonToken.tokenFileFromSystemProperties(getPort()) : tokenFile);
+    } catch (IOException e) {
+      serverSocket.close();
+      throw new IOException("refusing to start without a private token file: " + e.getMessage(), e);
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    int port = args.length > 0 ? Integer.parseInt(args[0]) : DaemonClient.portFromSystemProperties();
+    System.clearProperty(DaemonClient.PORT_PROPERTY); // so tests we run don't try to call back into us
+
+    RobolectricDaemon daemon = new RobolectricDaemon(port);
+    LOGGER.info("Robolectric daemon listening on port " + daemon.getPort());
+    daemon.serve();
+  }
+
+  public int getPort() {
+    return serverSocket.getLocalPort();
+  }
+
+  public void serve() throws IOException {
+    while (!serverSocket.isClosed()) {
+      Socket socket = serverSocket.accept();
+      try {
+        handle(socket);
+      } catch (IOException e) {
+        LOGGER.log(Level.WARNING, "lost connection to client", e);
+      } finally {
+        socket.close();
+      }
+    }
+  }
+
+  public void close() throws IOException {
+    serverSocket.close();
+  }
+
+  void handle(Socket socket) throws IOException {
+    BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), Protocol.UTF8));
+    final Writer out = new OutputStreamWriter(socket.getOutputStream(), Protocol.UTF8);
+
+    String[] auth = Protocol.fields(String.valueOf(in.readLine()));
+    if (!auth[0].equals(Protocol.AUTH) || auth.length < 2 || !DaemonToken.matches(token, auth[1])) {
+      LOGGER.warning("refusing client on " + socket.getRemoteSocketAddress() + " which didn't present the daemon's token");
+      send(out, Protocol.ERROR, "", "daemon token didn't match; is the daemon running as another user?", "");
+      return;
+    }
+
+    List<File> classDirs = new ArrayList<File>();
+    String testClassName = null;
+    final Set<String> methodNames = new HashSet<String>();
+    String line;
+    while ((line = in.readLine()) != null) {
+      String[] fields = Protocol.fields(line);
+      if (fields[0].equals(Protocol.RUN)) break;
+      if (fields[0].equals(Protocol.RELOAD)) classDirs.add(new File(fields[1]));
+      if (fields[0].equals(Protocol.TEST)) testClassName = fields[1];
+      if (fields[0].equals(Protocol.METHOD)) methodNames.add(fields[1]);
+    }
+    if (line == null) return;
+
+    ClassLoader originalContextClassLoader = Thread.currentThread().getContextClassLoader();
+    try {
+      ReloadableClasses reloadableClasses = getReloadableClasses(classDirs);
+      ReloadableClasses.setCurrent(reloadableClasses);
+      Thread.currentThread().setContextClassLoader(reloadableClasses.getClassLoader());
+
+      Class<?> testClass = reloadableClasses.getClassLoader().loadClass(testClassName);
+      Request request = Request.aClass(testClass);
+      if (!methodNames.isEmpty()) {
+        request = request.filterWith(new Filter() {
+          @Override public boolean shouldRun(Description description) {
+            if (description.isTest()) return methodNames.contains(description.getMethodName());
+            for (Description child : description.getChildren()) {
+              if (shouldRun(child)) return true;
+            }
+            return false;
+          }
+
+          @Override public String describe() {
+            return "methods " + methodNames;
+          }
+        });
+      }
+
+      JUnitCore junitCore = new JUnitCore();
+      junitCore.addListener(new StreamingListener(out));
+      junitCore.run(request);
+      send(out, Protocol.DONE);
+    } catch (IOException e) {
+      throw e;
+    } catch (Throwable e) {
+      StringWriter trace = new StringWriter();
+      e.printStackTrace(new PrintWriter(trace));
+      send(out, Protocol.ERROR, "", String.valueOf(e.getMessage()), trace.toString());
+    } finally {
+      ReloadableClasses.setCurrent(null);
+      Thread.currentThread().setContextClassLoader(originalContextClassLoader);
+    }
+  }
+
+  private ReloadableClasses getReloadableClasses(List<File> classDirs) {
+    if (reloadableClasses == null || !reloadableClasses.isUpToDate(classDirs)) {
+      if (reloadableClasses != null) reloadableClasses.unload();
+      reloadableClasses = new ReloadableClasses(classDirs, RobolectricDaemon.class.getClassLoader());
+      RobolectricTestRunner.clearAppResourceLoaders(); // R classes may have changed
+    }
+    return reloadableClasses;
+  }
+
+  private static void send(Writer out, String... fields) throws IOException {
+    out.write(Protocol.line(fields));
+    out.write('\n');
+    out.flush();
+  }
+
+  private static class StreamingListener extends RunListener {
+    private final Writer out;
+
+    StreamingListener(Writer out) {
+      this.out = out;
+    }
+
+    @Override public void testStarted(Description description) throws Exception {
+      send(out, Protocol.STARTED, description.getMethodName());
+    }
+
+    @Override public void testFailure(Failure failure) throws Exception {
+      send(out, Protocol.FAILURE, failure.getDescription().getMethodName(), failure.getMessage(), failure.getTrace());
+    }
+
+    @Override public void testAssumptionFailure(Failure failure) {
+      try {
+        send(out, Protocol.ASSUMPTION_FAILED, failure.getDescription().getMethodName(), failure.getMessage(), failure.getTrace());
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    @Override public void testIgnored(Description description) throws Exception {
+      send(out, Protocol.IGNORED, description.getMethodName());
+    }
+
+    @Override public void testFinished(Description description) throws Exception {
+      send(out, Protocol.FINISHED, description.getMethodName());
+    }
+  }
+}
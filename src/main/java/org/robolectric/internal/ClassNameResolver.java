@@ -1,5 +1,7 @@
 package org.robolectric.internal;
 
+import org.robolectric.util.Util;
+
 public class ClassNameResolver<T> {
   private String packageName;
   private String className;
@@ -34,7 +36,7 @@ public class ClassNameResolver<T> {
 
   private Class<? extends T> safeClassForName(String classNamePath) {
     try {
-      return (Class<? extends T>) Class.forName(classNamePath);
+      return (Class<? extends T>) Util.loadClass(classNamePath, ClassNameResolver.class.getClassLoader());
     } catch (ClassNotFoundException e) {
       return null;
     }
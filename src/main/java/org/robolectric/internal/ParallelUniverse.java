@@ -1,18 +1,22 @@
 package org.robolectric.internal;
 
 import android.app.Application;
-import android.app.Instrumentation;
 import android.content.Context;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.res.Configuration;
 import android.content.res.Resources;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import org.robolectric.AndroidManifest;
 import org.robolectric.RoboInstrumentation;
 import org.robolectric.Robolectric;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.TestLifecycle;
+import org.robolectric.bytecode.StaticState;
 import org.robolectric.res.ResourceLoader;
 import org.robolectric.res.builder.RobolectricPackageManager;
 import org.robolectric.shadows.ShadowActivityThread;
@@ -20,17 +24,14 @@ import org.robolectric.shadows.ShadowContextImpl;
 import org.robolectric.shadows.ShadowResources;
 import org.robolectric.util.DatabaseConfig;
 
-import static org.fest.reflect.core.Reflection.constructor;
-import static org.fest.reflect.core.Reflection.field;
-import static org.fest.reflect.core.Reflection.method;
-import static org.fest.reflect.core.Reflection.type;
 import static org.robolectric.Robolectric.shadowOf;
 
 public class ParallelUniverse implements ParallelUniverseInterface {
   private static final String DEFAULT_PACKAGE_NAME = "org.robolectric.default";
-  private Class<?> contextImplClass;
+  private static Bootstrap bootstrap;
 
   public void resetStaticState() {
+    StaticState.reset();
     Robolectric.reset();
   }
 
@@ -53,28 +54,11 @@ public class ParallelUniverse implements ParallelUniverseInterface {
     shadowOf(configuration).overrideQualifiers(qualifiers);
     systemResources.updateConfiguration(configuration, systemResources.getDisplayMetrics());
 
-    contextImplClass = type(ShadowContextImpl.CLASS_NAME)
-        .withClassLoader(getClass().getClassLoader())
-        .load();
-
-    Class<?> activityThreadClass = type(ShadowActivityThread.CLASS_NAME)
-        .withClassLoader(getClass().getClassLoader())
-        .load();
-
-    Object activityThread = constructor()
-        .in(activityThreadClass)
-        .newInstance();
+    Bootstrap bootstrap = bootstrap();
+    Object activityThread = bootstrap.newActivityThread();
     Robolectric.activityThread = activityThread;
-
-    field("mInstrumentation")
-        .ofType(Instrumentation.class)
-        .in(activityThread)
-        .set(new RoboInstrumentation());
-
-    field("mCompatConfiguration")
-        .ofType(Configuration.class)
-        .in(activityThread)
-        .set(configuration);
+    set(bootstrap.instrumentationField, activityThread, new RoboInstrumentation());
+    set(bootstrap.compatConfigurationField, activityThread, configuration);
 
     ResourceLoader resourceLoader;
     if (appManifest != null) {
@@ -83,11 +67,7 @@ public class ParallelUniverse implements ParallelUniverseInterface {
       resourceLoader = systemResourceLoader;
     }
 
-    Context systemContextImpl = (Context) method("createSystemContext")
-        .withReturnType(contextImplClass)
-        .withParameterTypes(activityThreadClass)
-        .in(contextImplClass)
-        .invoke(activityThread);
+    Context systemContextImpl = (Context) invoke(bootstrap.createSystemContextMethod, null, activityThread);
 
     final Application application = (Application) testLifecycle.createApplication(method, appManifest);
     if (application != null) {
@@ -101,11 +81,8 @@ public class ParallelUniverse implements ParallelUniverseInterface {
         throw new RuntimeException(e);
       }
 
-      Class<?> compatibilityInfoClass = type("android.content.res.CompatibilityInfo").load();
-      Object loadedApk = method("getPackageInfo")
-          .withParameterTypes(ApplicationInfo.class, compatibilityInfoClass, ClassLoader.class, boolean.class, boolean.class)
-          .in(activityThread)
-          .invoke(applicationInfo, null, getClass().getClassLoader(), false, true);
+      Object loadedApk = invoke(bootstrap.getPackageInfoMethod, activityThread,
+          applicationInfo, null, getClass().getClassLoader(), false, true);
 
       shadowOf(application).bind(appManifest, resourceLoader);
       if (appManifest == null) {
@@ -113,23 +90,17 @@ public class ParallelUniverse implements ParallelUniverseInterface {
         shadowOf(application).setPackageName(applicationInfo.packageName);
       }
       Resources appResources = application.getResources();
-      field("mResources").ofType(Resources.class).in(loadedApk).set(appResources);
-
-      Context contextImpl = method("createPackageContext")
-          .withReturnType(Context.class)
-          .withParameterTypes(String.class, int.class) // packageName, flags
-          .in(systemContextImpl)
-          .invoke(applicationInfo.packageName, Context.CONTEXT_INCLUDE_CODE);
+      set(bootstrap.loadedApkResourcesField, loadedApk, appResources);
 
-      field("mInitialApplication")
-          .ofType(Application.class)
-          .in(activityThread)
-          .set(application);
+      Context contextImpl;
+      try {
+        contextImpl = systemContextImpl.createPackageContext(applicationInfo.packageName, Context.CONTEXT_INCLUDE_CODE);
+      } catch (PackageManager.NameNotFoundException e) {
+        throw new RuntimeException(e);
+      }
 
-      method("attach")
-          .withParameterTypes(Context.class)
-          .in(application)
-          .invoke(contextImpl);
+      set(bootstrap.initialApplicationField, activityThread, application);
+      invoke(bootstrap.attachMethod, application, contextImpl);
 
       appResources.updateConfiguration(configuration, appResources.getDisplayMetrics());
       shadowOf(application).setStrictI18n(strictI18n);
@@ -148,4 +119,96 @@ public class ParallelUniverse implements ParallelUniverseInterface {
   @Override public Object getCurrentApplication() {
     return Robolectric.application;
   }
+
+  private static synchronized Bootstrap bootstrap() {
+    if (bootstrap == null) bootstrap = new Bootstrap();
+    return bootstrap;
+  }
+
+  private static Object invoke(Method method, Object target, Object... args) {
+    try {
+      return method.invoke(target, args);
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    } catch (InvocationTargetException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw new RuntimeException(cause);
+    }
+  }
+
+  private static void set(Field field, Object target, Object value) {
+    try {
+      field.set(target, value);
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * The hidden framework members we need to bring up an application, looked up once per SDK rather than for every
+   * test. Each SdkEnvironment loads its own copy of this class, so these always belong to the right SDK.
+   */
+  private static class Bootstrap {
+    final Constructor<?> activityThreadConstructor;
+    final Field instrumentationField;
+    final Field compatConfigurationField;
+    final Field initialApplicationField;
+    final Method createSystemContextMethod;
+    final Method getPackageInfoMethod;
+    final Field loadedApkResourcesField;
+    final Method attachMethod;
+
+    Bootstrap() {
+      ClassLoader classLoader = ParallelUniverse.class.getClassLoader();
+      try {
+        Class<?> activityThreadClass = classLoader.loadClass(ShadowActivityThread.CLASS_NAME);
+        Class<?> contextImplClass = classLoader.loadClass(ShadowContextImpl.CLASS_NAME);
+        Class<?> compatibilityInfoClass = classLoader.loadClass("android.content.res.CompatibilityInfo");
+
+        activityThreadConstructor = accessible(activityThreadClass.getDeclaredConstructor());
+        instrumentationField = field(activityThreadClass, "mInstrumentation");
+        compatConfigurationField = field(activityThreadClass, "mCompatConfiguration");
+        initialApplicationField = field(activityThreadClass, "mInitialApplication");
+        createSystemContextMethod = accessible(contextImplClass.getDeclaredMethod("createSystemContext", activityThreadClass));
+        getPackageInfoMethod = accessible(activityThreadClass.getDeclaredMethod("getPackageInfo",
+            ApplicationInfo.class, compatibilityInfoClass, ClassLoader.class, boolean.class, boolean.class));
+        loadedApkResourcesField = field(getPackageInfoMethod.getReturnType(), "mResources");
+        attachMethod = accessible(Application.class.getDeclaredMethod("attach", Context.class));
+      } catch (ClassNotFoundException e) {
+        throw new RuntimeException(e);
+      } catch (NoSuchMethodException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    Object newActivityThread() {
+      try {
+        return activityThreadConstructor.newInstance();
+      } catch (InstantiationException e) {
+        throw new RuntimeException(e);
+      } catch (IllegalAccessException e) {
+        throw new RuntimeException(e);
+      } catch (InvocationTargetException e) {
+        throw new RuntimeException(e.getCause());
+      }
+    }
+
+    private static Field field(Class<?> clazz, String name) {
+      for (Class<?> c = clazz; c != null; c = c.getSuperclass()) {
+        try {
+          return accessible(c.getDeclaredField(name));
+        } catch (NoSuchFieldException e) {
+          // keep looking
+        }
+      }
+      throw new RuntimeException("no field " + name + " in " + clazz.getName());
+    }
+
+    private static <T extends AccessibleObject> T accessible(T member) {
+      member.setAccessible(true);
+      return member;
+    }
+  }
 }
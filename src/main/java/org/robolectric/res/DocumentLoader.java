@@ -7,12 +7,34 @@ import org.jetbrains.annotations.NotNull;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Parses resource XML files and hands them to {@link XmlLoader}s.
+ *
+ * Files are parsed on a small shared pool, a few files ahead of the loaders, but the loaders always see them one at
+ * a time, on the calling thread, in the same order as they would if everything were sequential; so loaders needn't
+ * be thread-safe, and resources with the same name and qualifiers resolve the same way. Set the system property
+ * {@code robolectric.resources.parseThreads} to change the size of the pool, or to 1 to parse on the calling thread.
+ */
 public class DocumentLoader {
   public static boolean DEBUG_PERF = false;
-  private Map<String, Long> perfResponsibleParties = new HashMap<String, Long>();
+  public static final String PARSE_THREADS_PROPERTY = "robolectric.resources.parseThreads";
+  private static final int DEFAULT_PARSE_THREADS = defaultParseThreads();
+  // how many files may be parsed but not yet loaded, per parse thread; keeps memory bounded on huge res trees
+  private static final int FILES_AHEAD_PER_THREAD = 4;
+  private static final Map<Integer, ExecutorService> parseExecutors = new HashMap<Integer, ExecutorService>();
+
+  private final Map<String, Long> perfResponsibleParties = new HashMap<String, Long>();
 
   private static final FsFile.Filter ENDS_WITH_XML = new FsFile.Filter() {
     @Override public boolean accept(@NotNull FsFile fsFile) {
@@ -22,12 +44,16 @@ public class DocumentLoader {
 
   private final FsFile resourceBase;
   private final String packageName;
-  private final VTDGen vtdGen;
+  private final int parseThreads;
 
   public DocumentLoader(ResourcePath resourcePath) {
+    this(resourcePath, DEFAULT_PARSE_THREADS);
+  }
+
+  DocumentLoader(ResourcePath resourcePath, int parseThreads) {
     this.resourceBase = resourcePath.resourceBase;
     this.packageName = resourcePath.getPackageName();
-    vtdGen = new VTDGen();
+    this.parseThreads = parseThreads;
   }
 
   public void load(String folderBaseName, XmlLoader... xmlLoaders) throws Exception {
@@ -38,8 +64,17 @@ public class DocumentLoader {
     if (files == null) {
       throw new RuntimeException(resourceBase.join(folderBaseName) + " is not a directory");
     }
+    List<FsFile> xmlFiles = new ArrayList<FsFile>();
     for (FsFile dir : files) {
-      loadFile(dir, xmlLoaders);
+      xmlFiles.addAll(listXmlFiles(dir));
+    }
+
+    if (parseThreads > 1 && xmlFiles.size() > 1) {
+      loadInParallel(xmlFiles, xmlLoaders);
+    } else {
+      for (FsFile xmlFile : xmlFiles) {
+        loadResourceXmlFile(xmlFile, parse(xmlFile), xmlLoaders);
+      }
     }
 
     if (DEBUG_PERF) {
@@ -52,21 +87,57 @@ public class DocumentLoader {
     }
   }
 
-  private void loadFile(FsFile dir, XmlLoader[] xmlLoaders) throws Exception {
+  private List<FsFile> listXmlFiles(FsFile dir) {
     if (!dir.exists()) {
       throw new RuntimeException("no such directory " + dir);
     }
 
-    for (FsFile file : dir.listFiles(ENDS_WITH_XML)) {
-      loadResourceXmlFile(file, xmlLoaders);
+    List<FsFile> xmlFiles = new ArrayList<FsFile>();
+    Collections.addAll(xmlFiles, dir.listFiles(ENDS_WITH_XML));
+    return xmlFiles;
+  }
+
+  private void loadInParallel(List<FsFile> xmlFiles, XmlLoader[] xmlLoaders) throws Exception {
+    ExecutorService executor = parseExecutor(parseThreads);
+    int maxFilesAhead = parseThreads * FILES_AHEAD_PER_THREAD;
+    LinkedList<Future<VTDNav>> parsed = new LinkedList<Future<VTDNav>>();
+    int nextToParse = 0;
+    try {
+      for (FsFile xmlFile : xmlFiles) {
+        while (nextToParse < xmlFiles.size() && parsed.size() < maxFilesAhead) {
+          final FsFile fileToParse = xmlFiles.get(nextToParse++);
+          parsed.add(executor.submit(new Callable<VTDNav>() {
+            @Override public VTDNav call() throws Exception {
+              return parse(fileToParse);
+            }
+          }));
+        }
+
+        long startTime = DEBUG_PERF ? System.currentTimeMillis() : 0;
+        VTDNav vtdNav = waitFor(parsed.removeFirst());
+        if (DEBUG_PERF) perfBlame("DocumentLoader.waitForParse", startTime);
+        loadResourceXmlFile(xmlFile, vtdNav, xmlLoaders);
+      }
+    } finally {
+      for (Future<VTDNav> future : parsed) {
+        future.cancel(false);
+      }
     }
   }
 
-  private void loadResourceXmlFile(FsFile fsFile, XmlLoader... xmlLoaders) throws Exception {
-    long startTime = DEBUG_PERF ? System.currentTimeMillis() : 0;
-    VTDNav vtdNav = parse(fsFile);
-    if (DEBUG_PERF) perfBlame("DocumentLoader.parse", startTime);
+  private static VTDNav waitFor(Future<VTDNav> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof Exception) throw (Exception) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw e;
+    }
+  }
 
+  private void loadResourceXmlFile(FsFile fsFile, VTDNav vtdNav, XmlLoader... xmlLoaders) throws Exception {
+    long startTime;
     for (XmlLoader xmlLoader : xmlLoaders) {
       startTime = DEBUG_PERF ? System.currentTimeMillis() : 0;
       xmlLoader.processResourceXml(fsFile, vtdNav, packageName);
@@ -74,17 +145,44 @@ public class DocumentLoader {
     }
   }
 
-  private void perfBlame(String responsibleParty, long startTime) {
+  private synchronized void perfBlame(String responsibleParty, long startTime) {
     long myElapsedMs = System.currentTimeMillis() - startTime;
     Long totalElapsedMs = perfResponsibleParties.get(responsibleParty);
     perfResponsibleParties.put(responsibleParty, totalElapsedMs == null ? myElapsedMs : totalElapsedMs + myElapsedMs);
   }
 
   private VTDNav parse(FsFile xmlFile) throws Exception {
+    long startTime = DEBUG_PERF ? System.currentTimeMillis() : 0;
     byte[] bytes = xmlFile.getBytes();
+    // a VTDGen per file, since we may still be using a nav from one parse while the next is under way
+    VTDGen vtdGen = new VTDGen();
     vtdGen.setDoc(bytes);
     vtdGen.parse(true);
+    if (DEBUG_PERF) perfBlame("DocumentLoader.parse", startTime);
 
     return vtdGen.getNav();
   }
+
+  private static int defaultParseThreads() {
+    String threads = System.getProperty(PARSE_THREADS_PROPERTY);
+    if (threads != null && threads.length() > 0) return Math.max(1, Integer.parseInt(threads));
+    return Math.min(4, Runtime.getRuntime().availableProcessors());
+  }
+
+  private static synchronized ExecutorService parseExecutor(int threads) {
+    ExecutorService parseExecutor = parseExecutors.get(threads);
+    if (parseExecutor == null) {
+      parseExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        @Override public Thread newThread(Runnable runnable) {
+          Thread thread = new Thread(runnable, "robolectric-resource-parser-" + threadCount.incrementAndGet());
+          thread.setDaemon(true);
+          return thread;
+        }
+      });
+      parseExecutors.put(threads, parseExecutor);
+    }
+    return parseExecutor;
+  }
 }
@@ -66,6 +66,14 @@ public class FileFsFile implements FsFile {
     return Util.readBytes(new FileInputStream(file));
   }
 
+  @Override public long length() {
+    return file.length();
+  }
+
+  @Override public long lastModified() {
+    return file.lastModified();
+  }
+
   @Override public FsFile join(String... pathParts) {
     File f = file;
     for (String pathPart : pathParts) {
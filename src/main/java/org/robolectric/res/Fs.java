@@ -135,6 +135,16 @@ abstract public class Fs {
         return Util.readBytes(getInputStream());
       }
 
+      @Override public long length() {
+        JarEntry jarEntry = jarEntryMap.get(path);
+        return jarEntry == null ? 0 : jarEntry.getSize();
+      }
+
+      @Override public long lastModified() {
+        JarEntry jarEntry = jarEntryMap.get(path);
+        return jarEntry == null ? 0 : jarEntry.getTime();
+      }
+
       @Override public FsFile join(String... pathParts) {
         return new JarFsFile(path + "/" + Join.join("/", asList(pathParts)));
       }
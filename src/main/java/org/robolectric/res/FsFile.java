@@ -26,6 +26,10 @@ public interface FsFile {
 
   byte[] getBytes() throws IOException;
 
+  long length();
+
+  long lastModified();
+
   FsFile join(String... pathParts);
 
   @Override String toString();
@@ -1,6 +1,7 @@
 package org.robolectric.res;
 
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
@@ -8,14 +9,21 @@ import java.util.Set;
 public class MergedResourceIndex extends ResourceIndex {
   private final ResourceIndex[] subIndexes;
   private final Set<String> actualPackageNames = new HashSet<String>();
+  private final ResourceIdTable resourceIdTable;
 
   public MergedResourceIndex(ResourceIndex... subIndexes) {
     this.subIndexes = subIndexes;
+    Map<ResName, Integer> resourceNameToId = new HashMap<ResName, Integer>();
+    Map<Integer, ResName> resourceIdToResName = new HashMap<Integer, ResName>();
     for (ResourceIndex subIndex : subIndexes) {
       actualPackageNames.addAll(subIndex.getPackages());
-      merge(resourceNameToId, subIndex.resourceNameToId, "resourceNameToId");
-      merge(resourceIdToResName, subIndex.resourceIdToResName, "resourceIdToResName");
+      Map<ResName, Integer> subResourceNameToId = new HashMap<ResName, Integer>();
+      Map<Integer, ResName> subResourceIdToResName = new HashMap<Integer, ResName>();
+      subIndex.copyTo(subResourceNameToId, subResourceIdToResName);
+      merge(resourceNameToId, subResourceNameToId, "resourceNameToId");
+      merge(resourceIdToResName, subResourceIdToResName, "resourceIdToResName");
     }
+    resourceIdTable = new ResourceIdTable(resourceNameToId, resourceIdToResName);
   }
 
   private static <K,V> void merge(Map<K, V> map1, Map<K, V> map2, String name) {
@@ -29,7 +37,7 @@ public class MergedResourceIndex extends ResourceIndex {
   @Override
   public Integer getResourceId(ResName resName) {
     // todo: this is pretty silly...
-    Integer id = resourceNameToId.get(resName);
+    Integer id = resourceIdTable.getResourceId(resName);
     if (id == null) {
       for (ResourceIndex subIndex : subIndexes) {
         id = subIndex.getResourceId(resName);
@@ -42,7 +50,7 @@ public class MergedResourceIndex extends ResourceIndex {
   @Override
   public ResName getResName(int resourceId) {
     // todo: this is pretty silly...
-    ResName resName = resourceIdToResName.get(resourceId);
+    ResName resName = resourceIdTable.getResName(resourceId);
     if (resName == null) {
       for (ResourceIndex subIndex : subIndexes) {
         resName = subIndex.getResName(resourceId);
@@ -55,4 +63,8 @@ public class MergedResourceIndex extends ResourceIndex {
   @Override public Collection<String> getPackages() {
     return actualPackageNames;
   }
+
+  @Override protected void copyTo(Map<ResName, Integer> resourceNameToId, Map<Integer, ResName> resourceIdToResName) {
+    resourceIdTable.copyTo(resourceNameToId, resourceIdToResName);
+  }
 }
\ No newline at end of file
@@ -11,6 +11,7 @@ import java.util.Set;
 class OverlayResourceIndex extends ResourceIndex {
   private final String packageName;
   private final Set<String> actualPackageNames = new HashSet<String>();
+  private final ResourceIdTable resourceIdTable;
 
   public OverlayResourceIndex(String packageName, List<PackageResourceLoader> subResourceLoaders) {
     this(packageName, map(subResourceLoaders));
@@ -29,10 +30,14 @@ class OverlayResourceIndex extends ResourceIndex {
     actualPackageNames.add(packageName);
 
     final ResEntries resEntries = new ResEntries();
+    Map<ResName, Integer> resourceNameToId = new HashMap<ResName, Integer>();
+    Map<Integer, ResName> resourceIdToResName = new HashMap<Integer, ResName>();
     for (ResourceIndex subResourceIndex : subResourceIndexes) {
       actualPackageNames.addAll(subResourceIndex.getPackages());
 
-      for (Map.Entry<ResName, Integer> entry : subResourceIndex.resourceNameToId.entrySet()) {
+      Map<ResName, Integer> subResourceNameToId = new HashMap<ResName, Integer>();
+      subResourceIndex.copyTo(subResourceNameToId, new HashMap<Integer, ResName>());
+      for (Map.Entry<ResName, Integer> entry : subResourceNameToId.entrySet()) {
         ResName resName = entry.getKey();
         int value = entry.getValue();
         ResName localResName = resName.withPackageName(packageName);
@@ -41,6 +46,7 @@ class OverlayResourceIndex extends ResourceIndex {
         resourceIdToResName.put(value, localResName);
       }
     }
+    resourceIdTable = new ResourceIdTable(resourceNameToId, resourceIdToResName);
 
 //        if (OverlayResourceLoader.DEBUG) resEntries.check(subResourceIndexes);
   }
@@ -50,12 +56,12 @@ class OverlayResourceIndex extends ResourceIndex {
     if (!actualPackageNames.contains(resName.packageName)) {
       return null;
     }
-    return resourceNameToId.get(resName.withPackageName(packageName));
+    return resourceIdTable.getResourceId(resName.withPackageName(packageName));
   }
 
   @Override
   public ResName getResName(int resourceId) {
-    ResName resName = resourceIdToResName.get(resourceId);
+    ResName resName = resourceIdTable.getResName(resourceId);
     return resName == null ? null : resName.withPackageName(packageName);
   }
 
@@ -63,6 +69,10 @@ class OverlayResourceIndex extends ResourceIndex {
     return actualPackageNames;
   }
 
+  @Override protected void copyTo(Map<ResName, Integer> resourceNameToId, Map<Integer, ResName> resourceIdToResName) {
+    resourceIdTable.copyTo(resourceNameToId, resourceIdToResName);
+  }
+
   class ResEntries {
     private final Map<ResName, List<ResEntry>> resEntries = new HashMap<ResName, List<ResEntry>>();
 
@@ -11,11 +11,17 @@ public class OverlayResourceLoader extends XResourceLoader {
 
   private final String packageName;
   private final List<PackageResourceLoader> subResourceLoaders;
+  private final boolean lazy;
 
   public OverlayResourceLoader(String packageName, List<PackageResourceLoader> subResourceLoaders) {
     super(new OverlayResourceIndex(packageName, subResourceLoaders));
     this.packageName = packageName;
     this.subResourceLoaders = subResourceLoaders;
+    this.lazy = PackageResourceLoader.lazyByDefault();
+  }
+
+  @Override boolean isLazy() {
+    return lazy;
   }
 
   @Override
@@ -34,6 +40,35 @@ public class OverlayResourceLoader extends XResourceLoader {
     }
   }
 
+  @Override void doInitialize(ResourceGroup group) {
+    for (PackageResourceLoader subResourceLoader : subResourceLoaders) {
+      subResourceLoader.initialize(group);
+
+      switch (group) {
+        case VALUES:
+          pluralsData.mergeLibraryStyle(subResourceLoader.pluralsData, packageName);
+          stringData.mergeLibraryStyle(subResourceLoader.stringData, packageName);
+          break;
+        case MENUS:
+          menuData.mergeLibraryStyle(subResourceLoader.menuData, packageName);
+          break;
+        case DRAWABLES:
+          drawableData.mergeLibraryStyle(subResourceLoader.drawableData, packageName);
+          break;
+        case XML:
+          preferenceData.mergeLibraryStyle(subResourceLoader.preferenceData, packageName);
+          xmlDocuments.mergeLibraryStyle(subResourceLoader.xmlDocuments, packageName);
+          break;
+        case RAW:
+          rawResources.mergeLibraryStyle(subResourceLoader.rawResources, packageName);
+          break;
+      }
+      for (String type : subResourceLoader.data.getTypes()) {
+        if (ResourceGroup.forType(type) == group) data.mergeLibraryStyle(subResourceLoader.data, packageName, type);
+      }
+    }
+  }
+
   @Override public DrawableNode getDrawableNode(ResName resName, String qualifiers) {
     return super.getDrawableNode(resName.withPackageName(packageName), qualifiers);
   }
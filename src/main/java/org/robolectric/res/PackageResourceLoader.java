@@ -2,21 +2,83 @@ package org.robolectric.res;
 
 import org.robolectric.util.I18nException;
 
+/**
+ * Loads the resources in one package's res directory.
+ *
+ * By default everything is loaded the first time any resource is asked for. Set the system property
+ * {@code robolectric.resources.lazy} to {@code true} to load values, layouts, menus, drawables, xml and raw
+ * resources separately, each the first time one of them is asked for, so tests that only look up a few strings
+ * don't pay for parsing every layout.
+ */
 public class PackageResourceLoader extends XResourceLoader {
+  public static final String LAZY_PROPERTY = "robolectric.resources.lazy";
+
   ResourcePath resourcePath;
+  private final boolean lazy;
 
   public PackageResourceLoader(ResourcePath resourcePath) {
     this(resourcePath, new ResourceExtractor(resourcePath));
   }
 
   public PackageResourceLoader(ResourcePath resourcePath, ResourceIndex resourceIndex) {
+    this(resourcePath, resourceIndex, lazyByDefault());
+  }
+
+  PackageResourceLoader(ResourcePath resourcePath, ResourceIndex resourceIndex, boolean lazy) {
     super(resourceIndex);
     this.resourcePath = resourcePath;
+    this.lazy = lazy;
+  }
+
+  static boolean lazyByDefault() {
+    return Boolean.valueOf(System.getProperty(LAZY_PROPERTY));
+  }
+
+  @Override boolean isLazy() {
+    return lazy;
   }
 
   void doInitialize() {
+    System.out.println("DEBUG: Loading resources for " + resourcePath.getPackageName() + " from " + resourcePath.resourceBase + "...");
+
+    DocumentLoader documentLoader = new DocumentLoader(resourcePath);
+    for (ResourceGroup group : ResourceGroup.values()) {
+      load(group, documentLoader);
+    }
+    loadOtherResources(resourcePath);
+  }
+
+  @Override void doInitialize(ResourceGroup group) {
+    load(group, new DocumentLoader(resourcePath));
+    if (group == ResourceGroup.VALUES) loadOtherResources(resourcePath);
+  }
+
+  private void load(ResourceGroup group, DocumentLoader documentLoader) {
     try {
-      loadEverything();
+      switch (group) {
+        case VALUES:
+          loadValues(documentLoader);
+          break;
+        case LAYOUTS:
+          documentLoader.load("layout", new OpaqueFileLoader(data, "layout"));
+          break;
+        case MENUS:
+          documentLoader.load("menu", new MenuLoader(menuData));
+          break;
+        case DRAWABLES:
+          documentLoader.load("drawable", new OpaqueFileLoader(data, "drawable"));
+          documentLoader.load("anim", new OpaqueFileLoader(data, "anim"));
+          new DrawableResourceLoader(drawableData).findDrawableResources(resourcePath);
+          break;
+        case XML:
+          documentLoader.load("xml", new PreferenceLoader(preferenceData), new XmlFileLoader(xmlDocuments));
+          break;
+        case RAW:
+          new RawResourceLoader(resourcePath).loadTo(rawResources);
+          break;
+        default:
+          throw new IllegalArgumentException(group.toString());
+      }
     } catch (I18nException e) {
       throw e;
     } catch (Exception e) {
@@ -24,35 +86,31 @@ public class PackageResourceLoader extends XResourceLoader {
     }
   }
 
-  private void loadEverything() throws Exception {
-    System.out.println("DEBUG: Loading resources for " + resourcePath.getPackageName() + " from " + resourcePath.resourceBase + "...");
+  private void loadValues(DocumentLoader documentLoader) throws Exception {
+    ResourceTableCache resourceTableCache = ResourceTableCache.fromSystemProperties(resourcePath);
+    if (resourceTableCache == null || !resourceTableCache.load(data, pluralsData)) {
+      documentLoader.load("values",
+          new ValueResourceLoader(data, "/resources/bool", "bool", ResType.BOOLEAN),
+          new ValueResourceLoader(data, "/resources/color", "color", ResType.COLOR),
+          new ValueResourceLoader(data, "/resources/dimen", "dimen", ResType.DIMEN),
+          new ValueResourceLoader(data, "/resources/integer", "integer", ResType.INTEGER),
+          new ValueResourceLoader(data, "/resources/integer-array", "array", ResType.INTEGER_ARRAY),
+          new PluralResourceLoader(pluralsData),
+          new ValueResourceLoader(data, "/resources/string", "string", ResType.CHAR_SEQUENCE),
+          new ValueResourceLoader(data, "/resources/string-array", "array", ResType.CHAR_SEQUENCE_ARRAY),
+          new AttrResourceLoader(data),
+          new StyleResourceLoader(data)
+      );
+      // before the color directory, so the cache only gets what came from the values directories
+      if (resourceTableCache != null) resourceTableCache.save(data, pluralsData);
+    }
 
-    DocumentLoader documentLoader = new DocumentLoader(resourcePath);
-    documentLoader.load("values",
-        new ValueResourceLoader(data, "/resources/bool", "bool", ResType.BOOLEAN),
-        new ValueResourceLoader(data, "/resources/color", "color", ResType.COLOR),
-        new ValueResourceLoader(data, "/resources/dimen", "dimen", ResType.DIMEN),
-        new ValueResourceLoader(data, "/resources/integer", "integer", ResType.INTEGER),
-        new ValueResourceLoader(data, "/resources/integer-array", "array", ResType.INTEGER_ARRAY),
-        new PluralResourceLoader(pluralsData),
-        new ValueResourceLoader(data, "/resources/string", "string", ResType.CHAR_SEQUENCE),
-        new ValueResourceLoader(data, "/resources/string-array", "array", ResType.CHAR_SEQUENCE_ARRAY),
-        new AttrResourceLoader(data),
-        new StyleResourceLoader(data)
-    );
-
-    documentLoader.load("layout", new OpaqueFileLoader(data, "layout"));
-    documentLoader.load("menu", new MenuLoader(menuData));
-    documentLoader.load("drawable", new OpaqueFileLoader(data, "drawable"));
-    documentLoader.load("anim", new OpaqueFileLoader(data, "anim"));
     documentLoader.load("color", new ColorResourceLoader(data));
-    documentLoader.load("xml", new PreferenceLoader(preferenceData), new XmlFileLoader(xmlDocuments));
-    new DrawableResourceLoader(drawableData).findDrawableResources(resourcePath);
-    new RawResourceLoader(resourcePath).loadTo(rawResources);
-
-    loadOtherResources(resourcePath);
   }
 
+  /**
+   * Override to load more resources. When loading lazily, this is called along with the values.
+   */
   protected void loadOtherResources(ResourcePath resourcePath) {
   }
 
@@ -0,0 +1,69 @@
+package org.robolectric.res;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The values of one resource, each for its own set of qualifiers, as kept by {@link ResBunch} and {@link ResBundle}.
+ *
+ * Remembers which value was picked for each set of qualifiers it's asked about; values are only ever added, which
+ * forgets them.
+ */
+abstract class QualifiedValues<V extends Comparable<? super V>> extends ArrayList<V> {
+  private volatile Qualifiers[] candidates;
+  private volatile Map<String, V> picks;
+
+  abstract Qualifiers qualifiersOf(V value);
+
+  V pick(String qualifiers) {
+    Map<String, V> picks = this.picks;
+    if (picks == null) {
+      this.picks = picks = new ConcurrentHashMap<String, V>();
+    } else {
+      V value = picks.get(qualifiers);
+      if (value != null) return value;
+    }
+
+    Qualifiers[] candidates = this.candidates;
+    if (candidates == null) {
+      candidates = new Qualifiers[size()];
+      for (int i = 0; i < candidates.length; i++) {
+        candidates[i] = qualifiersOf(get(i));
+      }
+      this.candidates = candidates;
+    }
+
+    int index = Qualifiers.parse(qualifiers).pick(candidates);
+    if (index == -1) return null;
+    V value = get(index);
+    picks.put(qualifiers, value);
+    return value;
+  }
+
+  /**
+   * Adds {@code value} and keeps the values sorted by qualifiers.
+   */
+  void addSorted(V value) {
+    super.add(value);
+    Collections.sort(this);
+    forgetPicks(); // sorting moves values around without going through add()
+  }
+
+  @Override public boolean add(V value) {
+    forgetPicks();
+    return super.add(value);
+  }
+
+  @Override public boolean addAll(Collection<? extends V> values) {
+    forgetPicks();
+    return super.addAll(values);
+  }
+
+  private void forgetPicks() {
+    candidates = null;
+    picks = null;
+  }
+}
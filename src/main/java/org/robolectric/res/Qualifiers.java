@@ -0,0 +1,84 @@
+package org.robolectric.res;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A qualifier string like {@code en-port-hdpi}, split up once and turned into small integer ids, so choosing the
+ * best value for a configuration is a handful of bit tests rather than string searches on every lookup.
+ */
+class Qualifiers {
+  private static final Map<String, Integer> ids = new HashMap<String, Integer>();
+  private static final Map<String, Qualifiers> parsed = new ConcurrentHashMap<String, Qualifiers>();
+
+  private final int[] qualifierIds;
+  private final BitSet qualifierIdSet = new BitSet();
+
+  private Qualifiers(String qualifiers) {
+    StringTokenizer st = new StringTokenizer(qualifiers, "-");
+    qualifierIds = new int[st.countTokens()];
+    for (int i = 0; i < qualifierIds.length; i++) {
+      qualifierIds[i] = idFor(st.nextToken());
+      qualifierIdSet.set(qualifierIds[i]);
+    }
+  }
+
+  /**
+   * @param qualifiers the qualifiers, separated by dashes, or null for none
+   */
+  static Qualifiers parse(String qualifiers) {
+    if (qualifiers == null) qualifiers = "";
+    Qualifiers result = parsed.get(qualifiers);
+    if (result == null) {
+      result = new Qualifiers(qualifiers);
+      parsed.put(qualifiers, result);
+    }
+    return result;
+  }
+
+  private static synchronized int idFor(String qualifier) {
+    Integer id = ids.get(qualifier);
+    if (id == null) {
+      id = ids.size();
+      ids.put(qualifier, id);
+    }
+    return id;
+  }
+
+  /**
+   * Works through these qualifiers in order, at each step discarding the candidates without that qualifier (unless
+   * none of them have it), until only one candidate matched.
+   *
+   * @return the index of the first of the remaining candidates
+   */
+  int pick(Qualifiers[] candidates) {
+    final int count = candidates.length;
+    if (count >= Long.SIZE) throw new RuntimeException("really, more than " + Long.SIZE + " qualifiers?!?");
+    if (count == 0) return -1;
+
+    long possibles = (1L << count) - 1;
+
+    for (int qualifierId : qualifierIds) {
+      long matches = 0;
+
+      for (int i = 0; i < count; i++) {
+        if ((possibles & (1L << i)) == 0) continue;
+
+        if (candidates[i].qualifierIdSet.get(qualifierId)) {
+          matches |= 1L << i;
+        }
+      }
+
+      if (matches != 0) {
+        possibles &= matches; // eliminate any that didn't match this qualifier
+      }
+
+      if (Long.bitCount(matches) == 1) break;
+    }
+
+    return Long.numberOfTrailingZeros(possibles);
+  }
+}
@@ -2,29 +2,27 @@ package org.robolectric.res;
 
 import org.jetbrains.annotations.NotNull;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.StringTokenizer;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ResBunch {
-  private final Map<String, ResMap<TypedResource>> types = new LinkedHashMap<String, ResMap<TypedResource>>();
+  // concurrent, since lazy loaders add some types while others are being read
+  private final ConcurrentHashMap<String, ResMap<TypedResource>> types = new ConcurrentHashMap<String, ResMap<TypedResource>>();
 
   public void put(String attrType, String name, TypedResource value, XmlLoader.XmlContext xmlContext) {
     ResName resName = new ResName(xmlContext.packageName, attrType, name);
     ResMap<TypedResource> valuesMap = getValuesMap(attrType);
     Values values = valuesMap.find(resName);
-    values.add(new Value(xmlContext.getQualifiers(), value, xmlContext));
-    Collections.sort(values);
+    values.addSorted(new Value(xmlContext.getQualifiers(), value, xmlContext));
   }
 
   private ResMap<TypedResource> getValuesMap(String attrType) {
     ResMap<TypedResource> valuesMap = types.get(attrType);
     if (valuesMap == null) {
-      valuesMap = new ResMap<TypedResource>();
-      types.put(attrType, valuesMap);
+      ResMap<TypedResource> existing = types.putIfAbsent(attrType, valuesMap = new ResMap<TypedResource>());
+      if (existing != null) valuesMap = existing;
     }
     return valuesMap;
   }
@@ -35,44 +33,21 @@ public class ResBunch {
   }
 
   public Value getValue(@NotNull ResName resName, String qualifiers) {
-    ResMap<TypedResource> valuesMap = getValuesMap(resName.type);
-    Values values = valuesMap.find(resName);
+    ResMap<TypedResource> valuesMap = types.get(resName.type);
+    Values values = valuesMap == null ? null : valuesMap.get(resName);
     return (values != null) ? pick(values, qualifiers) : null;
   }
 
   public static <T> Value pick(Values values, String qualifiers) {
-    final int count = values.size();
-    if (count >= Long.SIZE) throw new RuntimeException("really, more than " + Long.SIZE + " qualifiers?!?");
-    if (count == 0) return null;
-
-    long possibles = 0;
-    for (int i = 0; i < count; i++) possibles |= 1 << i;
-
-    StringTokenizer st = new StringTokenizer(qualifiers, "-");
-    while (st.hasMoreTokens()) {
-      String qualifier = st.nextToken();
-      String paddedQualifier = "-" + qualifier + "-";
-      long matches = 0;
-
-      for (int i = 0; i < count; i++) {
-        if ((possibles & (1 << i)) == 0) continue;
-
-        if (values.get(i).qualifiers.contains(paddedQualifier)) {
-          matches |= 1 << i;
-        }
-      }
-
-      if (matches != 0) {
-        possibles &= matches; // eliminate any that didn't match this qualifier
-      }
-
-      if (Long.bitCount(matches) == 1) break;
-    }
+    return values.pick(qualifiers);
+  }
 
-    for (int i = 0; i < count; i++) {
-      if ((possibles & (1 << i)) != 0) return values.get(i);
+  Map<ResName, Values> getAllValues() {
+    Map<ResName, Values> allValues = new LinkedHashMap<ResName, Values>();
+    for (ResMap<TypedResource> map : types.values()) {
+      allValues.putAll(map.map);
     }
-    throw new IllegalStateException("couldn't handle qualifiers \"" + qualifiers + "\"");
+    return allValues;
   }
 
   public int size() {
@@ -90,13 +65,23 @@ public class ResBunch {
   }
 
   public void mergeLibraryStyle(ResBunch fromResBundle, String packageName) {
-    for (Map.Entry<String, ResMap<TypedResource>> entry : fromResBundle.types.entrySet()) {
-      getValuesMap(entry.getKey()).merge(packageName, entry.getValue());
+    for (String type : fromResBundle.getTypes()) {
+      mergeLibraryStyle(fromResBundle, packageName, type);
     }
   }
 
+  void mergeLibraryStyle(ResBunch fromResBundle, String packageName, String type) {
+    ResMap<TypedResource> fromMap = fromResBundle.types.get(type);
+    if (fromMap != null) getValuesMap(type).merge(packageName, fromMap);
+  }
+
+  Set<String> getTypes() {
+    return types.keySet();
+  }
+
   public static class Value implements Comparable<Value> {
     final String qualifiers;
+    final Qualifiers parsedQualifiers;
     final TypedResource value;
     final XmlLoader.XmlContext xmlContext;
 
@@ -107,6 +92,7 @@ public class ResBunch {
 
       this.xmlContext = xmlContext;
       this.qualifiers = qualifiers == null ? "--" : "-" + qualifiers + "-";
+      this.parsedQualifiers = Qualifiers.parse(qualifiers);
       this.value = value;
     }
 
@@ -124,16 +110,26 @@ public class ResBunch {
     }
   }
 
-  static class Values extends ArrayList<Value> {
+  static class Values extends QualifiedValues<Value> {
+    @Override Qualifiers qualifiersOf(Value value) {
+      return value.parsedQualifiers;
+    }
   }
 
   private static class ResMap<T> {
-    private final Map<ResName, Values> map = new HashMap<ResName, Values>();
+    private final ConcurrentHashMap<ResName, Values> map = new ConcurrentHashMap<ResName, Values>();
     private boolean immutable;
 
+    public Values get(ResName resName) {
+      return map.get(resName);
+    }
+
     public Values find(ResName resName) {
       Values values = map.get(resName);
-      if (values == null) map.put(resName, values = new Values());
+      if (values == null) {
+        Values existing = map.putIfAbsent(resName, values = new Values());
+        if (existing != null) values = existing;
+      }
       return values;
     }
 
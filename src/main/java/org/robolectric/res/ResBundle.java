@@ -1,6 +1,5 @@
 package org.robolectric.res;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -14,8 +13,7 @@ public class ResBundle<T> {
   public void put(String attrType, String name, T value, XmlLoader.XmlContext xmlContext) {
     ResName resName = new ResName(maybeOverride(xmlContext.packageName), attrType, name);
     Values<T> values = valuesMap.find(resName);
-    values.add(new Value<T>(xmlContext.getQualifiers(), value, xmlContext));
-    Collections.sort(values);
+    values.addSorted(new Value<T>(xmlContext.getQualifiers(), value, xmlContext));
   }
 
   public T get(ResName resName, String qualifiers) {
@@ -24,42 +22,16 @@ public class ResBundle<T> {
   }
 
   public Value<T> getValue(ResName resName, String qualifiers) {
-    Values<T> values = valuesMap.find(maybeOverride(resName));
+    Values<T> values = valuesMap.get(maybeOverride(resName));
     return (values != null) ? pick(values, qualifiers) : null;
   }
 
   public static <T> Value<T> pick(Values<T> values, String qualifiers) {
-    final int count = values.size();
-    if (count >= Long.SIZE) throw new RuntimeException("really, more than " + Long.SIZE + " qualifiers?!?");
-    if (count == 0) return null;
-
-    long possibles = 0;
-    for (int i = 0; i < count; i++) possibles |= 1 << i;
-
-    String[] qualifierList = qualifiers.split("-");
-    for (String qualifier : qualifierList) {
-      String paddedQualifier = "-" + qualifier + "-";
-      long matches = 0;
-
-      for (int i = 0; i < count; i++) {
-        if ((possibles & (1 << i)) == 0) continue;
-
-        if (values.get(i).qualifiers.contains(paddedQualifier)) {
-          matches |= 1 << i;
-        }
-      }
-
-      if (matches != 0) {
-        possibles &= matches; // eliminate any that didn't match this qualifier
-      }
-
-      if (Long.bitCount(matches) == 1) break;
-    }
+    return values.pick(qualifiers);
+  }
 
-    for (int i = 0; i < count; i++) {
-      if ((possibles & (1 << i)) != 0) return values.get(i);
-    }
-    throw new IllegalStateException("couldn't handle qualifiers \"" + qualifiers + "\"");
+  Map<ResName, Values<T>> getAllValues() {
+    return Collections.unmodifiableMap(valuesMap.map);
   }
 
   public int size() {
@@ -91,6 +63,7 @@ public class ResBundle<T> {
 
   static class Value<T> implements Comparable<Value<T>> {
     final String qualifiers;
+    final Qualifiers parsedQualifiers;
     final T value;
     final XmlLoader.XmlContext xmlContext;
 
@@ -101,6 +74,7 @@ public class ResBundle<T> {
 
       this.xmlContext = xmlContext;
       this.qualifiers = qualifiers == null ? "--" : "-" + qualifiers + "-";
+      this.parsedQualifiers = Qualifiers.parse(qualifiers);
       this.value = value;
     }
 
@@ -110,13 +84,20 @@ public class ResBundle<T> {
     }
   }
 
-  static class Values<T> extends ArrayList<Value<T>> {
+  static class Values<T> extends QualifiedValues<Value<T>> {
+    @Override Qualifiers qualifiersOf(Value<T> value) {
+      return value.parsedQualifiers;
+    }
   }
 
   private static class ResMap<T> {
     private final Map<ResName, Values<T>> map = new HashMap<ResName, Values<T>>();
     private boolean immutable;
 
+    public Values<T> get(ResName resName) {
+      return map.get(resName);
+    }
+
     public Values<T> find(ResName resName) {
       Values<T> values = map.get(resName);
       if (values == null) map.put(resName, values = new Values<T>());
@@ -4,8 +4,10 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ResourceExtractor extends ResourceIndex {
   private static final ResourceRemapper RESOURCE_REMAPPER = new ResourceRemapper();
@@ -14,12 +16,18 @@ public class ResourceExtractor extends ResourceIndex {
   private final Class<?> processedRFile;
   private final String packageName;
   private final List<String> packageNames;
-  private Integer maxUsedInt = null;
+  private final ResourceIdTable resourceIdTable;
+
+  // ids handed out for resources that aren't in any R class; rare, so kept apart from the table
+  private final Map<ResName, Integer> assignedIds = new ConcurrentHashMap<ResName, Integer>();
+  private final Map<Integer, ResName> assignedResNames = new ConcurrentHashMap<Integer, ResName>();
+  private int maxUsedInt;
 
   public ResourceExtractor() {
     processedRFile = null;
     packageName = "";
     packageNames = Arrays.asList();
+    resourceIdTable = freeze(new HashMap<ResName, Integer>(), new HashMap<Integer, ResName>());
   }
 
   /**
@@ -28,33 +36,47 @@ public class ResourceExtractor extends ResourceIndex {
    */
   public ResourceExtractor(ClassLoader classLoader) {
     Class<?> androidRClass;
+    Map<ResName, Integer> resourceNameToId = new HashMap<ResName, Integer>();
+    Map<Integer, ResName> resourceIdToResName = new HashMap<Integer, ResName>();
     try {
       androidRClass = classLoader.loadClass("android.R");
       Class<?> androidInternalRClass = classLoader.loadClass("com.android.internal.R");
 
-      gatherResourceIdsAndNames(androidRClass, "android", true);
-      gatherResourceIdsAndNames(androidInternalRClass, "android", false);
+      gatherResourceIdsAndNames(androidRClass, "android", true, resourceNameToId, resourceIdToResName);
+      gatherResourceIdsAndNames(androidInternalRClass, "android", false, resourceNameToId, resourceIdToResName);
     } catch (ClassNotFoundException e) {
       throw new RuntimeException(e);
     }
     processedRFile = androidRClass;
     packageName = processedRFile.getPackage().getName();
     packageNames = Arrays.asList(packageName);
+    resourceIdTable = freeze(resourceNameToId, resourceIdToResName);
   }
 
   public ResourceExtractor(ResourcePath resourcePath) {
     packageName = resourcePath.getPackageName();
     packageNames = Arrays.asList(packageName);
-    if (resourcePath.rClass == null) {
-      processedRFile = null;
-      return;
-    }
-    if (REMAP_RESOURCES) RESOURCE_REMAPPER.remapRClass(resourcePath.rClass);
     processedRFile = resourcePath.rClass;
-    gatherResourceIdsAndNames(resourcePath.rClass, packageName, true);
+    Map<ResName, Integer> resourceNameToId = new HashMap<ResName, Integer>();
+    Map<Integer, ResName> resourceIdToResName = new HashMap<Integer, ResName>();
+    if (processedRFile != null) {
+      if (REMAP_RESOURCES) RESOURCE_REMAPPER.remapRClass(processedRFile);
+      gatherResourceIdsAndNames(processedRFile, packageName, true, resourceNameToId, resourceIdToResName);
+    }
+    resourceIdTable = freeze(resourceNameToId, resourceIdToResName);
+  }
+
+  /**
+   * Turns what was gathered into a more compact, lock-free table; the maps can be dropped afterwards.
+   */
+  private ResourceIdTable freeze(Map<ResName, Integer> resourceNameToId, Map<Integer, ResName> resourceIdToResName) {
+    ResourceIdTable resourceIdTable = new ResourceIdTable(resourceNameToId, resourceIdToResName);
+    maxUsedInt = resourceIdTable.getMaxId();
+    return resourceIdTable;
   }
 
-  private void gatherResourceIdsAndNames(Class<?> rClass, String packageName, boolean checkForCollisions) {
+  private static void gatherResourceIdsAndNames(Class<?> rClass, String packageName, boolean checkForCollisions,
+                                                Map<ResName, Integer> resourceNameToId, Map<Integer, ResName> resourceIdToResName) {
     for (Class innerClass : rClass.getClasses()) {
       for (Field field : innerClass.getDeclaredFields()) {
         if (field.getType().equals(Integer.TYPE) && Modifier.isStatic(field.getModifiers())) {
@@ -91,23 +113,36 @@ public class ResourceExtractor extends ResourceIndex {
   }
 
   @Override
-  public synchronized Integer getResourceId(ResName resName) {
-    Integer id = resourceNameToId.get(resName);
+  public Integer getResourceId(ResName resName) {
+    Integer id = resourceIdTable.getResourceId(resName);
+    if (id == null) id = assignedIds.get(resName);
     if (id == null && ("android".equals(resName.packageName) || "".equals(resName.packageName))) {
-      if (maxUsedInt == null) {
-        maxUsedInt = resourceIdToResName.isEmpty() ? 0 : Collections.max(resourceIdToResName.keySet());
-      }
+      id = assignId(resName);
+    }
+    return id;
+  }
+
+  private synchronized Integer assignId(ResName resName) {
+    Integer id = assignedIds.get(resName);
+    if (id == null) {
       id = ++maxUsedInt;
-      resourceNameToId.put(resName, id);
-      resourceIdToResName.put(id, resName);
+      assignedResNames.put(id, resName);
+      assignedIds.put(resName, id);
       System.out.println("INFO: no id mapping found for " + resName.getFullyQualifiedName() + "; assigning ID #0x" + Integer.toHexString(id));
     }
     return id;
   }
 
   @Override
-  public synchronized ResName getResName(int resourceId) {
-    return resourceIdToResName.get(resourceId);
+  public ResName getResName(int resourceId) {
+    ResName resName = resourceIdTable.getResName(resourceId);
+    return resName != null ? resName : assignedResNames.get(resourceId);
+  }
+
+  @Override protected void copyTo(Map<ResName, Integer> resourceNameToId, Map<Integer, ResName> resourceIdToResName) {
+    resourceIdTable.copyTo(resourceNameToId, resourceIdToResName);
+    resourceNameToId.putAll(assignedIds);
+    resourceIdToResName.putAll(assignedResNames);
   }
 
   @Override public Collection<String> getPackages() {
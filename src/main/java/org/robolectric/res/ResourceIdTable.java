@@ -0,0 +1,101 @@
+package org.robolectric.res;
+
+import java.util.Map;
+
+/**
+ * An immutable, open-addressed mapping between resource ids and {@link ResName}s, built once from the maps an index
+ * was gathered into. Ids are kept as primitive ints, and since nothing changes after construction, lookups need no
+ * locking.
+ */
+class ResourceIdTable {
+  private static final int NO_SLOT = -1;
+
+  private final int[] ids;
+  private final ResName[] resNamesById;
+  private final ResName[] resNames;
+  private final int[] idsByResName;
+  private final int mask;
+  private final int size;
+  private final int maxId;
+
+  ResourceIdTable(Map<ResName, Integer> resourceNameToId, Map<Integer, ResName> resourceIdToResName) {
+    int capacity = 2;
+    while (capacity < 2 * Math.max(resourceNameToId.size(), resourceIdToResName.size())) capacity <<= 1;
+    mask = capacity - 1;
+
+    ids = new int[capacity];
+    resNamesById = new ResName[capacity];
+    int maxId = 0;
+    boolean first = true;
+    for (Map.Entry<Integer, ResName> entry : resourceIdToResName.entrySet()) {
+      int id = entry.getKey();
+      int slot = slotFor(id);
+      while (resNamesById[slot] != null) slot = (slot + 1) & mask;
+      ids[slot] = id;
+      resNamesById[slot] = entry.getValue();
+      if (first || id > maxId) maxId = id;
+      first = false;
+    }
+    this.maxId = maxId;
+
+    resNames = new ResName[capacity];
+    idsByResName = new int[capacity];
+    for (Map.Entry<ResName, Integer> entry : resourceNameToId.entrySet()) {
+      ResName resName = entry.getKey();
+      int slot = slotFor(resName);
+      while (resNames[slot] != null) slot = (slot + 1) & mask;
+      resNames[slot] = resName;
+      idsByResName[slot] = entry.getValue();
+    }
+    size = resourceNameToId.size();
+  }
+
+  Integer getResourceId(ResName resName) {
+    int slot = find(resName);
+    return slot == NO_SLOT ? null : idsByResName[slot];
+  }
+
+  ResName getResName(int resourceId) {
+    for (int slot = slotFor(resourceId); ; slot = (slot + 1) & mask) {
+      ResName resName = resNamesById[slot];
+      if (resName == null) return null;
+      if (ids[slot] == resourceId) return resName;
+    }
+  }
+
+  /**
+   * @return the largest id in the table, or 0 if it's empty
+   */
+  int getMaxId() {
+    return maxId;
+  }
+
+  int size() {
+    return size;
+  }
+
+  void copyTo(Map<ResName, Integer> resourceNameToId, Map<Integer, ResName> resourceIdToResName) {
+    for (int slot = 0; slot <= mask; slot++) {
+      if (resNames[slot] != null) resourceNameToId.put(resNames[slot], idsByResName[slot]);
+      if (resNamesById[slot] != null) resourceIdToResName.put(ids[slot], resNamesById[slot]);
+    }
+  }
+
+  private int find(ResName resName) {
+    for (int slot = slotFor(resName); ; slot = (slot + 1) & mask) {
+      ResName candidate = resNames[slot];
+      if (candidate == null) return NO_SLOT;
+      if (candidate.equals(resName)) return slot;
+    }
+  }
+
+  private int slotFor(int id) {
+    int hash = id * 0x9E3779B9;
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+
+  private int slotFor(ResName resName) {
+    int hash = resName.hashCode();
+    return (hash ^ (hash >>> 16)) & mask;
+  }
+}
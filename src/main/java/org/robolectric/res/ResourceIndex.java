@@ -1,13 +1,9 @@
 package org.robolectric.res;
 
 import java.util.Collection;
-import java.util.HashMap;
 import java.util.Map;
 
 public abstract class ResourceIndex {
-  protected final Map<ResName, Integer> resourceNameToId = new HashMap<ResName, Integer>();
-  protected final Map<Integer, ResName> resourceIdToResName = new HashMap<Integer, ResName>();
-
   public abstract Integer getResourceId(ResName resName);
 
   public String getResourceName(int resourceId) {
@@ -18,4 +14,9 @@ public abstract class ResourceIndex {
   public abstract ResName getResName(int resourceId);
 
   public abstract Collection<String> getPackages();
+
+  /**
+   * Copies every name and id this index knows about into the given maps, for indexes built on top of it.
+   */
+  protected abstract void copyTo(Map<ResName, Integer> resourceNameToId, Map<Integer, ResName> resourceIdToResName);
 }
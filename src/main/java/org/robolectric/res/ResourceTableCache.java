@@ -0,0 +1,474 @@
+package org.robolectric.res;
+
+import org.robolectric.util.Util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves the resources parsed from a package's {@code values} directories to a compact binary file, so later runs
+ * can read them back in one go instead of parsing every XML file again.
+ *
+ * Enable by setting the system property {@code robolectric.resources.cacheDir} to a directory. Each file is stamped
+ * with a digest of the names, sizes and modification times of the package's values files (for the system resources,
+ * of the entries in the android-res jar); if anything has changed, the resources are parsed again and the file is
+ * rewritten. The digest also covers the code that parses the resources and writes the file (see
+ * {@link #loaderVersion()}), so a new Robolectric never reads a file an older one wrote.
+ */
+public class ResourceTableCache {
+  public static final String CACHE_DIR_PROPERTY = "robolectric.resources.cacheDir";
+  // bump this whenever the file format changes; changes to what the values loaders produce are picked up by
+  // loaderVersion() on their own
+  private static final int FORMAT_VERSION = 1;
+  private static final int MAGIC = 0x52657354; // "ResT"
+
+  private static final int KIND_STRING = 0;
+  private static final int KIND_ARRAY = 1;
+  private static final int KIND_ATTR = 2;
+  private static final int KIND_STYLE = 3;
+
+  private static String loaderVersion;
+
+  private final ResourcePath resourcePath;
+  private final File cacheFile;
+  private String digest;
+
+  ResourceTableCache(ResourcePath resourcePath, File cacheDir) {
+    this.resourcePath = resourcePath;
+    this.cacheFile = new File(cacheDir, resourcePath.getPackageName() + "-"
+        + toHex(sha1(resourcePath.resourceBase.getPath())).substring(0, 12) + ".restable");
+  }
+
+  /**
+   * @return a cache for {@code resourcePath}, or null if caching isn't enabled
+   */
+  public static ResourceTableCache fromSystemProperties(ResourcePath resourcePath) {
+    String cacheDir = System.getProperty(CACHE_DIR_PROPERTY);
+    if (cacheDir == null || cacheDir.length() == 0) return null;
+    return new ResourceTableCache(resourcePath, new File(cacheDir));
+  }
+
+  File getCacheFile() {
+    return cacheFile;
+  }
+
+  /**
+   * Fills {@code data} and {@code pluralsData} from the cache file.
+   *
+   * @return false if there's no up-to-date cache file, in which case nothing has been loaded
+   */
+  public boolean load(ResBunch data, ResBundle<PluralResourceLoader.PluralRules> pluralsData) {
+    if (!cacheFile.isFile()) return false;
+
+    try {
+      DataInputStream in = new DataInputStream(new ByteArrayInputStream(readFully(cacheFile)));
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return false;
+      if (!in.readUTF().equals(getDigest())) return false;
+
+      ResBunch stagedData = new ResBunch();
+      ResBundle<PluralResourceLoader.PluralRules> stagedPluralsData = new ResBundle<PluralResourceLoader.PluralRules>();
+      new Reader(in).read(stagedData, stagedPluralsData);
+
+      data.mergeLibraryStyle(stagedData, resourcePath.getPackageName());
+      pluralsData.mergeLibraryStyle(stagedPluralsData, resourcePath.getPackageName());
+      return true;
+    } catch (IOException e) {
+      System.err.println("[WARN] couldn't read resource cache " + cacheFile + ", parsing resources instead: " + e);
+      return false;
+    } catch (RuntimeException e) {
+      System.err.println("[WARN] couldn't read resource cache " + cacheFile + ", parsing resources instead: " + e);
+      return false;
+    }
+  }
+
+  /**
+   * Writes the values resources in {@code data} and {@code pluralsData}, which should hold exactly what was loaded
+   * from the values directories, to the cache file.
+   */
+  public void save(ResBunch data, ResBundle<PluralResourceLoader.PluralRules> pluralsData) {
+    try {
+      Writer writer = new Writer();
+      byte[] body = writer.write(data, pluralsData);
+
+      File cacheDir = cacheFile.getAbsoluteFile().getParentFile();
+      if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) throw new IOException("couldn't create " + cacheDir);
+
+      // write to a temporary file and rename it, so other JVMs never see a partial file
+      File tmpFile = File.createTempFile(cacheFile.getName(), ".tmp", cacheDir);
+      DataOutputStream out = new DataOutputStream(new FileOutputStream(tmpFile));
+      try {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(getDigest());
+        writer.writeStrings(out);
+        out.write(body);
+      } finally {
+        out.close();
+      }
+      if (!tmpFile.renameTo(cacheFile)) {
+        cacheFile.delete();
+        if (!tmpFile.renameTo(cacheFile)) {
+          tmpFile.delete();
+          throw new IOException("couldn't rename " + tmpFile + " to " + cacheFile);
+        }
+      }
+    } catch (IOException e) {
+      System.err.println("[WARN] couldn't write resource cache " + cacheFile + ": " + e);
+    }
+  }
+
+  synchronized String getDigest() {
+    if (digest == null) {
+      StringBuilder buf = new StringBuilder();
+      buf.append(FORMAT_VERSION).append('\n').append(loaderVersion()).append('\n');
+      buf.append(resourcePath.getPackageName()).append('\n');
+      for (FsFile dir : sorted(resourcePath.resourceBase.listFiles(new DirectoryMatchingFilter("values")))) {
+        buf.append(dir.getName()).append('\n');
+        for (FsFile file : sorted(dir.listFiles())) {
+          buf.append(' ').append(file.getName())
+              .append(' ').append(file.length())
+              .append(' ').append(file.lastModified()).append('\n');
+        }
+      }
+      digest = toHex(sha1(buf.toString()));
+    }
+    return digest;
+  }
+
+  /**
+   * Released jars carry an Implementation-Version; for snapshots, hash the bytecode of this class and the values
+   * loaders, so that changing how resources are parsed or saved invalidates files written by an earlier build.
+   */
+  static synchronized String loaderVersion() {
+    if (loaderVersion == null) {
+      Package pkg = ResourceTableCache.class.getPackage();
+      String version = pkg == null ? null : pkg.getImplementationVersion();
+      if (version != null && !version.endsWith("-SNAPSHOT")) {
+        loaderVersion = version;
+      } else {
+        ByteArrayOutputStream loaderBytes = new ByteArrayOutputStream();
+        for (Class<?> loaderClass : new Class[] {ResourceTableCache.class, PackageResourceLoader.class, DocumentLoader.class,
+            XmlLoader.class, XpathResourceXmlLoader.class, ValueResourceLoader.class, PluralResourceLoader.class,
+            AttrResourceLoader.class, StyleResourceLoader.class}) {
+          InputStream in = loaderClass.getResourceAsStream("/" + loaderClass.getName().replace('.', '/') + ".class");
+          if (in == null) continue;
+          try {
+            Util.copy(in, loaderBytes);
+          } catch (IOException e) {
+            throw new RuntimeException(e);
+          }
+        }
+        loaderVersion = version + "@" + toHex(sha1(loaderBytes.toByteArray()));
+      }
+    }
+    return loaderVersion;
+  }
+
+  private static FsFile[] sorted(FsFile[] files) {
+    if (files == null) return new FsFile[0];
+    FsFile[] sortedFiles = files.clone();
+    Arrays.sort(sortedFiles, new Comparator<FsFile>() {
+      @Override public int compare(FsFile a, FsFile b) {
+        return a.getName().compareTo(b.getName());
+      }
+    });
+    return sortedFiles;
+  }
+
+  private static byte[] readFully(File file) throws IOException {
+    long length = file.length();
+    if (length > Integer.MAX_VALUE) throw new IOException(file + " is too big");
+    byte[] bytes = new byte[(int) length];
+    InputStream in = new FileInputStream(file);
+    try {
+      new DataInputStream(in).readFully(bytes);
+    } finally {
+      in.close();
+    }
+    return bytes;
+  }
+
+  private static byte[] sha1(String s) {
+    try {
+      return sha1(s.getBytes("UTF-8"));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static byte[] sha1(byte[] bytes) {
+    try {
+      return MessageDigest.getInstance("SHA-1").digest(bytes);
+    } catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  private static String toHex(byte[] bytes) {
+    StringBuilder buf = new StringBuilder();
+    for (byte b : bytes) {
+      buf.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+    }
+    return buf.toString();
+  }
+
+  /**
+   * Everything but the string table refers to strings by index, and to files by their index in the file table.
+   */
+  private static class Writer {
+    private final Map<String, Integer> strings = new LinkedHashMap<String, Integer>();
+    private final Map<FsFile, Integer> files = new LinkedHashMap<FsFile, Integer>();
+    private final ByteArrayOutputStream fileTable = new ByteArrayOutputStream();
+    private final DataOutputStream fileOut = new DataOutputStream(fileTable);
+
+    byte[] write(ResBunch data, ResBundle<PluralResourceLoader.PluralRules> pluralsData) throws IOException {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(bytes);
+
+      // lazy loaders may already have loaded layouts and such, which aren't ours to cache
+      Map<ResName, ResBunch.Values> allValues = new LinkedHashMap<ResName, ResBunch.Values>();
+      for (Map.Entry<ResName, ResBunch.Values> entry : data.getAllValues().entrySet()) {
+        if (XResourceLoader.ResourceGroup.forType(entry.getKey().type) == XResourceLoader.ResourceGroup.VALUES) {
+          allValues.put(entry.getKey(), entry.getValue());
+        }
+      }
+      out.writeInt(allValues.size());
+      for (Map.Entry<ResName, ResBunch.Values> entry : allValues.entrySet()) {
+        writeResName(out, entry.getKey());
+        out.writeInt(entry.getValue().size());
+        for (ResBunch.Value value : entry.getValue()) {
+          writeFile(out, value.getXmlContext());
+          writeTypedResource(out, value.getTypedResource());
+        }
+      }
+
+      Map<ResName, ResBundle.Values<PluralResourceLoader.PluralRules>> allPlurals = pluralsData.getAllValues();
+      out.writeInt(allPlurals.size());
+      for (Map.Entry<ResName, ResBundle.Values<PluralResourceLoader.PluralRules>> entry : allPlurals.entrySet()) {
+        writeResName(out, entry.getKey());
+        out.writeInt(entry.getValue().size());
+        for (ResBundle.Value<PluralResourceLoader.PluralRules> value : entry.getValue()) {
+          writeFile(out, value.xmlContext);
+          out.writeInt(value.value.plurals.size());
+          for (Plural plural : value.value.plurals) {
+            writeString(out, plural.quantity);
+            writeString(out, plural.string);
+          }
+        }
+      }
+
+      out.close();
+      return bytes.toByteArray();
+    }
+
+    void writeStrings(DataOutputStream out) throws IOException {
+      out.writeInt(strings.size());
+      for (String string : strings.keySet()) {
+        byte[] utf8 = string.getBytes("UTF-8");
+        out.writeInt(utf8.length);
+        out.write(utf8);
+      }
+      out.writeInt(files.size());
+      fileOut.close();
+      fileTable.writeTo(out);
+    }
+
+    private void writeResName(DataOutputStream out, ResName resName) throws IOException {
+      writeString(out, resName.packageName);
+      writeString(out, resName.type);
+      writeString(out, resName.name);
+    }
+
+    private void writeFile(DataOutputStream out, XmlLoader.XmlContext xmlContext) throws IOException {
+      FsFile xmlFile = xmlContext.getXmlFile();
+      Integer index = files.get(xmlFile);
+      if (index == null) {
+        index = files.size();
+        files.put(xmlFile, index);
+        writeString(fileOut, xmlFile.getParent().getName());
+        writeString(fileOut, xmlFile.getName());
+      }
+      out.writeInt(index);
+    }
+
+    private void writeTypedResource(DataOutputStream out, TypedResource typedResource) throws IOException {
+      if (typedResource.isFile()) throw new IOException("unexpected file resource " + typedResource);
+
+      Object data = typedResource.getData();
+      if (data instanceof String) {
+        out.writeByte(KIND_STRING);
+        writeString(out, typedResource.getResType().name());
+        writeString(out, (String) data);
+      } else if (data instanceof TypedResource[]) {
+        out.writeByte(KIND_ARRAY);
+        writeString(out, typedResource.getResType().name());
+        TypedResource[] items = (TypedResource[]) data;
+        out.writeInt(items.length);
+        for (TypedResource item : items) {
+          writeTypedResource(out, item);
+        }
+      } else if (data instanceof AttrData) {
+        AttrData attrData = (AttrData) data;
+        out.writeByte(KIND_ATTR);
+        writeString(out, attrData.getName());
+        writeString(out, attrData.getFormat());
+        List<AttrData.Pair> pairs = attrData.getPairs();
+        out.writeInt(pairs == null ? -1 : pairs.size());
+        if (pairs != null) {
+          for (AttrData.Pair pair : pairs) {
+            writeString(out, pair.getName());
+            writeString(out, pair.getValue());
+          }
+        }
+      } else if (data instanceof StyleData) {
+        StyleData styleData = (StyleData) data;
+        out.writeByte(KIND_STYLE);
+        writeString(out, styleData.getPackageName());
+        writeString(out, styleData.getName());
+        writeString(out, styleData.getParent());
+        out.writeInt(styleData.getAttributes().size());
+        for (Attribute attribute : styleData.getAttributes()) {
+          writeResName(out, attribute.resName);
+          writeString(out, attribute.value);
+          writeString(out, attribute.contextPackageName);
+        }
+      } else {
+        throw new IOException("don't know how to cache " + typedResource);
+      }
+    }
+
+    private void writeString(DataOutputStream out, String string) throws IOException {
+      if (string == null) {
+        out.writeInt(-1);
+        return;
+      }
+      Integer index = strings.get(string);
+      if (index == null) {
+        index = strings.size();
+        strings.put(string, index);
+      }
+      out.writeInt(index);
+    }
+  }
+
+  private class Reader {
+    private final DataInputStream in;
+    private final String[] strings;
+    private final XmlLoader.XmlContext[] xmlContexts;
+
+    Reader(DataInputStream in) throws IOException {
+      this.in = in;
+
+      strings = new String[in.readInt()];
+      for (int i = 0; i < strings.length; i++) {
+        byte[] utf8 = new byte[in.readInt()];
+        in.readFully(utf8);
+        strings[i] = new String(utf8, "UTF-8");
+      }
+
+      xmlContexts = new XmlLoader.XmlContext[in.readInt()];
+      for (int i = 0; i < xmlContexts.length; i++) {
+        FsFile xmlFile = resourcePath.resourceBase.join(readString(), readString());
+        xmlContexts[i] = new XmlLoader.XmlContext(resourcePath.getPackageName(), xmlFile);
+      }
+    }
+
+    void read(ResBunch data, ResBundle<PluralResourceLoader.PluralRules> pluralsData) throws IOException {
+      // values were written already sorted, and put() sorts stably, so this rebuilds them in the same order
+      int dataCount = in.readInt();
+      for (int i = 0; i < dataCount; i++) {
+        ResName resName = readResName();
+        int valueCount = in.readInt();
+        for (int j = 0; j < valueCount; j++) {
+          XmlLoader.XmlContext xmlContext = readXmlContext();
+          data.put(resName.type, resName.name, readTypedResource(), xmlContext);
+        }
+      }
+
+      int pluralsCount = in.readInt();
+      for (int i = 0; i < pluralsCount; i++) {
+        ResName resName = readResName();
+        int valueCount = in.readInt();
+        for (int j = 0; j < valueCount; j++) {
+          XmlLoader.XmlContext xmlContext = readXmlContext();
+          PluralResourceLoader.PluralRules rules = new PluralResourceLoader.PluralRules();
+          int pluralCount = in.readInt();
+          for (int k = 0; k < pluralCount; k++) {
+            rules.add(new Plural(readString(), readString()));
+          }
+          pluralsData.put(resName.type, resName.name, rules, xmlContext);
+        }
+      }
+    }
+
+    private XmlLoader.XmlContext readXmlContext() throws IOException {
+      return xmlContexts[in.readInt()];
+    }
+
+    private ResName readResName() throws IOException {
+      return new ResName(readString(), readString(), readString());
+    }
+
+    private TypedResource readTypedResource() throws IOException {
+      int kind = in.readByte();
+      switch (kind) {
+        case KIND_STRING: {
+          ResType resType = ResType.valueOf(readString());
+          return new TypedResource<String>(readString(), resType);
+        }
+        case KIND_ARRAY: {
+          ResType resType = ResType.valueOf(readString());
+          TypedResource[] items = new TypedResource[in.readInt()];
+          for (int i = 0; i < items.length; i++) {
+            items[i] = readTypedResource();
+          }
+          return new TypedResource<TypedResource[]>(items, resType);
+        }
+        case KIND_ATTR: {
+          String name = readString();
+          String format = readString();
+          int pairCount = in.readInt();
+          List<AttrData.Pair> pairs = null;
+          if (pairCount >= 0) {
+            pairs = new ArrayList<AttrData.Pair>(pairCount);
+            for (int i = 0; i < pairCount; i++) {
+              pairs.add(new AttrData.Pair(readString(), readString()));
+            }
+          }
+          return new TypedResource<AttrData>(new AttrData(name, format, pairs), ResType.ATTR_DATA);
+        }
+        case KIND_STYLE: {
+          StyleData styleData = new StyleData(readString(), readString(), readString());
+          int attributeCount = in.readInt();
+          for (int i = 0; i < attributeCount; i++) {
+            ResName attrResName = readResName();
+            styleData.add(attrResName, new Attribute(attrResName, readString(), readString()));
+          }
+          return new TypedResource<StyleData>(styleData, ResType.STYLE);
+        }
+        default:
+          throw new IOException("unknown resource kind " + kind);
+      }
+    }
+
+    private String readString() throws IOException {
+      int index = in.readInt();
+      return index == -1 ? null : strings[index];
+    }
+  }
+}
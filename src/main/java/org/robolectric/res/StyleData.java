@@ -1,5 +1,6 @@
 package org.robolectric.res;
 
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -23,6 +24,10 @@ public class StyleData implements Style {
     return parent;
   }
 
+  Collection<Attribute> getAttributes() {
+    return items.values();
+  }
+
   public void add(ResName attrName, Attribute attribute) {
     attrName.mustBe("attr");
     items.put(attrName, attribute);
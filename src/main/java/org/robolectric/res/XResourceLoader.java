@@ -7,6 +7,24 @@ import java.io.IOException;
 import java.io.InputStream;
 
 abstract class XResourceLoader implements ResourceLoader {
+  /**
+   * Resources that can be loaded independently of each other, for loaders that load lazily.
+   */
+  enum ResourceGroup {
+    VALUES, LAYOUTS, MENUS, DRAWABLES, XML, RAW;
+
+    static ResourceGroup forType(String type) {
+      if ("layout".equals(type)) return LAYOUTS;
+      if ("menu".equals(type)) return MENUS;
+      if ("drawable".equals(type) || "anim".equals(type)) return DRAWABLES;
+      if ("xml".equals(type)) return XML;
+      if ("raw".equals(type)) return RAW;
+      return VALUES; // including colors, whether from values or color
+    }
+  }
+
+  private static final int ALL_GROUPS = (1 << ResourceGroup.values().length) - 1;
+
   final ResBunch data = new ResBunch();
   final ResBundle<PluralResourceLoader.PluralRules> pluralsData = new ResBundle<PluralResourceLoader.PluralRules>();
   final ResBundle<String> stringData = new ResBundle<String>();
@@ -16,7 +34,8 @@ abstract class XResourceLoader implements ResourceLoader {
   final ResBundle<Document> xmlDocuments = new ResBundle<Document>();
   final ResBundle<FsFile> rawResources = new ResBundle<FsFile>();
   private final ResourceIndex resourceIndex;
-  boolean isInitialized = false;
+  volatile boolean isInitialized = false;
+  private volatile int initializedGroups = 0;
 
   protected XResourceLoader(ResourceIndex resourceIndex) {
     this.resourceIndex = resourceIndex;
@@ -24,12 +43,54 @@ abstract class XResourceLoader implements ResourceLoader {
 
   abstract void doInitialize();
 
+  /**
+   * Loads just the resources in {@code group}; only called if {@link #isLazy()}. Loaders that can't load groups
+   * separately get everything loaded by {@link #doInitialize()} the first time any group is asked for.
+   */
+  void doInitialize(ResourceGroup group) {
+    doInitialize();
+    initializedGroups = ALL_GROUPS;
+  }
+
+  /**
+   * @return true to load each {@link ResourceGroup} the first time it's needed, rather than everything at once
+   */
+  boolean isLazy() {
+    return false;
+  }
+
   void initialize() {
     if (isInitialized) return;
-    doInitialize();
-    isInitialized = true;
 
-    makeImmutable();
+    // resource loaders are shared between test runners, which may be running on different threads
+    synchronized (this) {
+      if (isInitialized) return;
+      if (isLazy()) {
+        for (ResourceGroup group : ResourceGroup.values()) {
+          initialize(group);
+        }
+      } else {
+        doInitialize();
+      }
+      makeImmutable();
+      isInitialized = true;
+    }
+  }
+
+  void initialize(ResourceGroup group) {
+    if (!isLazy()) {
+      initialize();
+      return;
+    }
+
+    int groupBit = 1 << group.ordinal();
+    if ((initializedGroups & groupBit) != 0) return;
+
+    synchronized (this) {
+      if ((initializedGroups & groupBit) != 0) return;
+      doInitialize(group);
+      initializedGroups |= groupBit;
+    }
   }
 
   protected void makeImmutable() {
@@ -50,14 +111,14 @@ abstract class XResourceLoader implements ResourceLoader {
   }
 
   public TypedResource getValue(@NotNull ResName resName, String qualifiers) {
-    initialize();
+    initialize(ResourceGroup.forType(resName.type));
     ResBunch.Value value = data.getValue(resName, qualifiers);
     return value == null ? null : value.getTypedResource();
   }
 
   @Override
   public Plural getPlural(ResName resName, int quantity, String qualifiers) {
-    initialize();
+    initialize(ResourceGroup.VALUES);
     PluralResourceLoader.PluralRules pluralRules = pluralsData.get(resName, qualifiers);
     if (pluralRules == null) return null;
 
@@ -66,18 +127,19 @@ abstract class XResourceLoader implements ResourceLoader {
 
   @Override
   public Document getXml(ResName resName, String qualifiers) {
-    initialize();
+    initialize(ResourceGroup.XML);
     return xmlDocuments.get(resName, qualifiers);
   }
 
   @Override
   public DrawableNode getDrawableNode(ResName resName, String qualifiers) {
+    initialize(ResourceGroup.DRAWABLES);
     return drawableData.get(resName, qualifiers);
   }
 
   @Override
   public InputStream getRawValue(ResName resName) {
-    initialize();
+    initialize(ResourceGroup.RAW);
 
     FsFile file = rawResources.get(resName, "");
     try {
@@ -89,14 +151,14 @@ abstract class XResourceLoader implements ResourceLoader {
 
   @Override
   public PreferenceNode getPreferenceNode(ResName resName, String qualifiers) {
-    initialize();
+    initialize(ResourceGroup.XML);
 
     return preferenceData.get(resName, qualifiers);
   }
 
   @Override
   public MenuNode getMenuNode(ResName resName, String qualifiers) {
-    initialize();
+    initialize(ResourceGroup.MENUS);
     if (resName == null) return null;
     return menuData.get(resName, qualifiers);
   }
@@ -12,6 +12,7 @@ import org.robolectric.annotation.Implementation;
 import org.robolectric.annotation.Implements;
 import org.robolectric.annotation.RealObject;
 import org.robolectric.util.Join;
+import org.robolectric.util.Util;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -162,7 +163,7 @@ public class ShadowIntent {
   public Intent setClassName(String packageName, String className) {
     componentName = new ComponentName(packageName, className);
     try {
-      this.intentClass = Class.forName(className);
+      this.intentClass = Util.loadClass(className, ShadowIntent.class.getClassLoader());
     } catch (ClassNotFoundException e) {
       // ignore
     }
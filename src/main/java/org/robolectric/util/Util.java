@@ -29,6 +29,19 @@ public class Util {
     return byteArrayOutputStream.toByteArray();
   }
 
+  /**
+   * Loads a class by name the way code loaded by {@code classLoader} would, except that if the thread's context class
+   * loader is a child of {@code classLoader}, the child is asked instead, so classes it loads fresh copies of (see
+   * {@link org.robolectric.daemon.ReloadableClasses}) are found there.
+   */
+  public static Class<?> loadClass(String className, ClassLoader classLoader) throws ClassNotFoundException {
+    ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+    for (ClassLoader loader = contextClassLoader; loader != null; loader = loader.getParent()) {
+      if (loader == classLoader) return Class.forName(className, false, contextClassLoader);
+    }
+    return Class.forName(className, false, classLoader);
+  }
+
   public static <T> T[] reverse(T[] array) {
     for (int i = 0; i < array.length / 2; i++) {
       int destI = array.length - i - 1;
@@ -0,0 +1,83 @@
+package org.robolectric;
+
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.junit.runners.model.InitializationError;
+import org.robolectric.internal.ParallelUniverseInterface;
+import org.robolectric.res.ResourceLoader;
+
+import java.lang.reflect.Method;
+
+/**
+ * Measures how long {@link ParallelUniverseInterface#setUpApplicationState} takes per test, separating the first
+ * round (which pays for SDK start-up and one-time lookups) from later ones. Not a test; run its main().
+ */
+public class ApplicationSetUpBenchmark {
+  private static final int ROUNDS = 10;
+
+  private static long setUpNanos;
+  private static int setUpCount;
+
+  public static void main(String[] args) throws Exception {
+    for (int round = 0; round < ROUNDS; round++) {
+      setUpNanos = 0;
+      setUpCount = 0;
+      long startTime = System.nanoTime();
+      Result result = new JUnitCore().run(SampleTest.class);
+      long elapsedNanos = System.nanoTime() - startTime;
+      if (!result.wasSuccessful()) throw new RuntimeException(result.getFailures().toString());
+
+      System.out.println(String.format("round %2d: %7.3fms/test setting up application, %7.3fms/test overall",
+          round, setUpNanos / 1e6 / setUpCount, elapsedNanos / 1e6 / result.getRunCount()));
+    }
+  }
+
+  public static class TimingRunner extends TestRunners.WithDefaults {
+    public TimingRunner(Class<?> testClass) throws InitializationError {
+      super(testClass);
+    }
+
+    @Override
+    protected void setUpApplicationState(Method method, ParallelUniverseInterface parallelUniverseInterface, boolean strictI18n, ResourceLoader systemResourceLoader, AndroidManifest appManifest) {
+      long startTime = System.nanoTime();
+      super.setUpApplicationState(method, parallelUniverseInterface, strictI18n, systemResourceLoader, appManifest);
+      setUpNanos += System.nanoTime() - startTime;
+      setUpCount++;
+    }
+  }
+
+  @RunWith(TimingRunner.class)
+  public static class SampleTest {
+    @Test public void test1() throws Exception {
+    }
+
+    @Test public void test2() throws Exception {
+    }
+
+    @Test public void test3() throws Exception {
+    }
+
+    @Test public void test4() throws Exception {
+    }
+
+    @Test public void test5() throws Exception {
+    }
+
+    @Test public void test6() throws Exception {
+    }
+
+    @Test public void test7() throws Exception {
+    }
+
+    @Test public void test8() throws Exception {
+    }
+
+    @Test public void test9() throws Exception {
+    }
+
+    @Test public void test10() throws Exception {
+    }
+  }
+}
@@ -0,0 +1,136 @@
+package org.robolectric;
+
+import org.apache.maven.artifact.ant.DependenciesTask;
+import org.apache.maven.artifact.ant.RemoteRepository;
+import org.apache.maven.model.Dependency;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runners.model.InitializationError;
+import org.robolectric.test.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class MavenCentralTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private File dir;
+  private File jar;
+  private Dependency dependency;
+  private MavenCentral mavenCentral;
+
+  @Before public void setUp() throws Exception {
+    dir = temporaryFolder.newFolder("maven-central");
+    jar = new File(dir, "android-base-real.jar");
+    write(jar, "jar contents");
+    dependency = new SdkConfig(SdkConfig.DEFAULT_ARTIFACT_VERSION).realAndroidDependency("android-base");
+    mavenCentral = new MavenCentral(dir);
+  }
+
+  @Test
+  public void shouldUseManifestWithoutResolvingWhenArtifactsAreUnchanged() throws Exception {
+    File manifest = new File(dir, "manifest.properties");
+    String coordinates = MavenCentral.coordinatesOf(dependency);
+    mavenCentral.writeManifest(manifest, coordinates, artifactUrls());
+
+    Map<String, URL> urls = mavenCentral.readManifest(manifest, coordinates);
+    assertThat(urls).isEqualTo(artifactUrls());
+  }
+
+  @Test
+  public void shouldIgnoreManifestWhenAnArtifactChanges() throws Exception {
+    File manifest = new File(dir, "manifest.properties");
+    String coordinates = MavenCentral.coordinatesOf(dependency);
+    mavenCentral.writeManifest(manifest, coordinates, artifactUrls());
+
+    write(jar, "different jar contents");
+    assertThat(mavenCentral.readManifest(manifest, coordinates)).isNull();
+  }
+
+  @Test
+  public void shouldIgnoreManifestForOtherCoordinates() throws Exception {
+    File manifest = new File(dir, "manifest.properties");
+    mavenCentral.writeManifest(manifest, MavenCentral.coordinatesOf(dependency), artifactUrls());
+
+    Dependency other = new SdkConfig("other-version").realAndroidDependency("android-base");
+    assertThat(mavenCentral.readManifest(manifest, MavenCentral.coordinatesOf(other))).isNull();
+  }
+
+  @Test
+  public void shouldIgnoreCorruptManifest() throws Exception {
+    File manifest = new File(dir, "manifest.properties");
+    String coordinates = MavenCentral.coordinatesOf(dependency);
+    Properties properties = new Properties();
+    properties.setProperty(".coordinates", coordinates);
+    properties.setProperty("org.robolectric:android-base:jar:real", "yesterday,big," + jar.getPath());
+    FileOutputStream out = new FileOutputStream(manifest);
+    try {
+      properties.store(out, null);
+    } finally {
+      out.close();
+    }
+
+    assertThat(mavenCentral.readManifest(manifest, coordinates)).isNull();
+  }
+
+  @Test
+  public void shouldFindArtifactsWhosePathsNeedEscaping() throws Exception {
+    File jarWithSpaces = new File(temporaryFolder.newFolder("with spaces"), "android-base-real.jar");
+    write(jarWithSpaces, "jar contents");
+    Map<String, URL> urls = new HashMap<String, URL>();
+    urls.put("org.robolectric:android-base:jar:real", jarWithSpaces.toURI().toURL());
+    File manifest = new File(dir, "manifest.properties");
+    String coordinates = MavenCentral.coordinatesOf(dependency);
+    mavenCentral.writeManifest(manifest, coordinates, urls);
+
+    assertThat(mavenCentral.readManifest(manifest, coordinates)).isNotNull();
+  }
+
+  @Test
+  public void mavenConfiguration_shouldOnlyDistinguishRunnersThatConfigureMaven() throws Exception {
+    assertThat(MavenCentral.mavenConfigurationOf(new RobolectricTestRunner(SampleTest.class))).isEmpty();
+    assertThat(MavenCentral.mavenConfigurationOf(new RunnerWithOwnRepository(SampleTest.class)))
+        .contains("http://maven.example.com/repo");
+  }
+
+  private Map<String, URL> artifactUrls() throws Exception {
+    Map<String, URL> urls = new HashMap<String, URL>();
+    urls.put("org.robolectric:android-base:jar:real", jar.toURI().toURL());
+    return urls;
+  }
+
+  private static void write(File file, String contents) throws IOException {
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(contents.getBytes());
+    } finally {
+      out.close();
+    }
+  }
+
+  public static class SampleTest {
+    @Test public void test() throws Exception {
+    }
+  }
+
+  public static class RunnerWithOwnRepository extends RobolectricTestRunner {
+    public RunnerWithOwnRepository(Class<?> testClass) throws InitializationError {
+      super(testClass);
+    }
+
+    @Override protected void configureMaven(DependenciesTask dependenciesTask) {
+      RemoteRepository repository = new RemoteRepository();
+      repository.setId("example");
+      repository.setUrl("http://maven.example.com/repo");
+      dependenciesTask.addConfiguredRemoteRepository(repository);
+    }
+  }
+}
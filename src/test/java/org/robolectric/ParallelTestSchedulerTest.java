@@ -0,0 +1,91 @@
+package org.robolectric;
+
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+import org.junit.runners.BlockJUnit4ClassRunner;
+import org.junit.runners.model.FrameworkMethod;
+import org.junit.runners.model.InitializationError;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ParallelTestSchedulerTest {
+  @Test
+  public void shouldReportResultsInScheduledOrderEvenIfTestsFinishOutOfOrder() throws Exception {
+    Runner runner = new Runner(SleepyTest.class);
+    final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    RunNotifier notifier = new RunNotifier();
+    notifier.addListener(new RunListener() {
+      @Override public void testStarted(Description description) throws Exception {
+        events.add("started " + description.getMethodName());
+      }
+
+      @Override public void testFailure(Failure failure) throws Exception {
+        events.add("failed " + failure.getDescription().getMethodName());
+      }
+
+      @Override public void testFinished(Description description) throws Exception {
+        events.add("finished " + description.getMethodName());
+      }
+    });
+    runner.run(notifier);
+
+    List<String> expected = new ArrayList<String>();
+    for (Description child : runner.getDescription().getChildren()) {
+      expected.add("started " + child.getMethodName());
+      if (child.getMethodName().equals("failsOnAWorker")) expected.add("failed " + child.getMethodName());
+      expected.add("finished " + child.getMethodName());
+    }
+    assertThat(events).isEqualTo(expected);
+  }
+
+  @Test
+  public void shouldRunTestsOnWorkerThreads() throws Exception {
+    SleepyTest.threadNames.clear();
+    new Runner(SleepyTest.class).run(new RunNotifier());
+    for (String threadName : SleepyTest.threadNames) {
+      assertThat(threadName).startsWith("robolectric-worker-");
+    }
+    assertThat(ParallelTestScheduler.isWorkerThread()).isFalse();
+  }
+
+  public static class SleepyTest {
+    static final List<String> threadNames = Collections.synchronizedList(new ArrayList<String>());
+
+    @Test public void slow() throws Exception {
+      threadNames.add(Thread.currentThread().getName());
+      Thread.sleep(200);
+    }
+
+    @Test public void medium() throws Exception {
+      threadNames.add(Thread.currentThread().getName());
+      Thread.sleep(100);
+    }
+
+    @Test public void fast() throws Exception {
+      threadNames.add(Thread.currentThread().getName());
+    }
+
+    @Test public void failsOnAWorker() throws Exception {
+      threadNames.add(Thread.currentThread().getName());
+      throw new RuntimeException("fail!");
+    }
+  }
+
+  private static class Runner extends BlockJUnit4ClassRunner {
+    Runner(Class<?> testClass) throws InitializationError {
+      super(testClass);
+      setScheduler(new ParallelTestScheduler(4));
+    }
+
+    @Override protected void runChild(FrameworkMethod method, RunNotifier notifier) {
+      super.runChild(method, ParallelTestScheduler.notifierFor(notifier));
+    }
+  }
+}
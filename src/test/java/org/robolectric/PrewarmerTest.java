@@ -0,0 +1,79 @@
+package org.robolectric;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class PrewarmerTest {
+  @Test
+  public void shouldReadBackTheProfileItWrote() throws Exception {
+    File profileFile = File.createTempFile("prewarm", ".txt");
+    profileFile.deleteOnExit();
+
+    Prewarmer.writeProfile(profileFile, new TreeSet<String>(Arrays.asList("android.view.View", "android.app.Activity")));
+
+    assertThat(Prewarmer.readProfile(profileFile)).containsExactly("android.app.Activity", "android.view.View");
+  }
+
+  @Test
+  public void shouldReplaceTheProfileWithoutLeavingTemporaryFiles() throws Exception {
+    File dir = File.createTempFile("prewarm", "");
+    dir.delete();
+    dir.mkdirs();
+    File profileFile = new File(dir, "profile.txt");
+    try {
+      Prewarmer.writeProfile(profileFile, new TreeSet<String>(Arrays.asList("android.view.View", "android.app.Activity")));
+      Prewarmer.writeProfile(profileFile, new TreeSet<String>(Arrays.asList("android.widget.TextView")));
+
+      assertThat(Prewarmer.readProfile(profileFile)).containsExactly("android.widget.TextView");
+      assertThat(dir.list()).containsOnly("profile.txt");
+    } finally {
+      profileFile.delete();
+      dir.delete();
+    }
+  }
+
+  @Test
+  public void shouldTreatAMissingProfileAsEmpty() throws Exception {
+    assertThat(Prewarmer.readProfile(new File("no-such-profile.txt"))).isEmpty();
+  }
+
+  @Test
+  public void shouldOnlyWarmEachThingOnce() throws Exception {
+    Object thing = new Object();
+    assertThat(Prewarmer.firstTimeFor(thing)).isTrue();
+    assertThat(Prewarmer.firstTimeFor(thing)).isFalse();
+  }
+
+  @Test
+  public void shouldLetGoOfPrewarmedEnvironmentsOnceUnloaded() throws Exception {
+    SdkEnvironmentCache cache = new SdkEnvironmentCache(1, 0);
+    EnvHolder envHolder = new EnvHolder(cache);
+    SdkEnvironment sdkEnvironment = get(envHolder, "16");
+    assertThat(Prewarmer.firstTimeFor(sdkEnvironment)).isTrue();
+    WeakReference<SdkEnvironment> reference = new WeakReference<SdkEnvironment>(sdkEnvironment);
+
+    get(envHolder, "17");
+    assertThat(cache.getEvictionCount()).isEqualTo(1);
+
+    sdkEnvironment = null;
+    for (int i = 0; i < 50 && reference.get() != null; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    assertThat(reference.get()).isNull();
+  }
+
+  private SdkEnvironment get(EnvHolder envHolder, final String version) {
+    return envHolder.getSdkEnvironment(new SdkConfig(version), new SdkEnvironment.Factory() {
+      @Override public SdkEnvironment create() {
+        return new SdkEnvironment(new SdkConfig(version), getClass().getClassLoader());
+      }
+    });
+  }
+}
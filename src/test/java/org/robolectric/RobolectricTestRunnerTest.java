@@ -4,6 +4,9 @@ import org.junit.Ignore;
 import org.junit.Test;
 import org.junit.runners.model.InitializationError;
 import org.robolectric.annotation.Config;
+import org.robolectric.bytecode.ClassHandler;
+import org.robolectric.bytecode.ShadowMap;
+import org.robolectric.bytecode.ShadowWrangler;
 import org.robolectric.shadows.ShadowView;
 import org.robolectric.shadows.ShadowViewGroup;
 
@@ -55,6 +58,19 @@ public class RobolectricTestRunnerTest {
         -1, "--default", "", -1, new Class[] {});
   }
 
+  @Test public void runnersThatOnlyDifferByClass_shouldShareEnvironments() throws Exception {
+    SdkConfig sdkConfig = new SdkConfig(SdkConfig.DEFAULT_ARTIFACT_VERSION);
+    assertThat(new PlainRunner(Test1.class).environmentFingerprint(sdkConfig))
+        .isEqualTo(new RobolectricTestRunner(Test2.class).environmentFingerprint(sdkConfig));
+  }
+
+  @Test public void runnersWithOtherSetupsOrClassHandlers_shouldNotShareEnvironments() throws Exception {
+    SdkConfig sdkConfig = new SdkConfig(SdkConfig.DEFAULT_ARTIFACT_VERSION);
+    String fingerprint = new RobolectricTestRunner(Test1.class).environmentFingerprint(sdkConfig);
+    assertThat(new TestRunners.WithDefaults(Test1.class).environmentFingerprint(sdkConfig)).isNotEqualTo(fingerprint);
+    assertThat(new RunnerWithOwnClassHandler(Test1.class).environmentFingerprint(sdkConfig)).isNotEqualTo(fingerprint);
+  }
+
   private Config configFor(Class<?> testClass, String methodName, final Properties configProperties) throws InitializationError {
     return new RobolectricTestRunner(testClass) {
       @Override protected Properties getConfigProperties() {
@@ -100,6 +116,22 @@ public class RobolectricTestRunnerTest {
     }
   }
 
+  public static class PlainRunner extends RobolectricTestRunner {
+    public PlainRunner(Class<?> testClass) throws InitializationError {
+      super(testClass);
+    }
+  }
+
+  public static class RunnerWithOwnClassHandler extends RobolectricTestRunner {
+    public RunnerWithOwnClassHandler(Class<?> testClass) throws InitializationError {
+      super(testClass);
+    }
+
+    @Override protected ClassHandler createClassHandler(ShadowMap shadowMap) {
+      return new ShadowWrangler(shadowMap);
+    }
+  }
+
   private String stringify(Config config) {
     int emulateSdk = config.emulateSdk();
     String manifest = config.manifest();
@@ -0,0 +1,104 @@
+package org.robolectric;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class SdkEnvironmentCacheTest {
+  private final List<String> created = new ArrayList<String>();
+
+  @Test
+  public void shouldUnloadLeastRecentlyUsedEnvironments() throws Exception {
+    SdkEnvironmentCache cache = new SdkEnvironmentCache(2, 0);
+    EnvHolder envHolder = new EnvHolder(cache);
+
+    SdkEnvironment sdk16 = get(envHolder, "16");
+    SdkEnvironment sdk17 = get(envHolder, "17");
+    assertThat(get(envHolder, "16")).isSameAs(sdk16);
+    get(envHolder, "18");
+
+    assertThat(cache.getLiveCount()).isEqualTo(2);
+    assertThat(cache.getEvictionCount()).isEqualTo(1);
+    assertThat(get(envHolder, "16")).isSameAs(sdk16);
+    assertThat(get(envHolder, "17")).isNotSameAs(sdk17);
+    assertThat(created).containsExactly("16", "17", "18", "17");
+    assertThat(cache.getRebuildCount()).isEqualTo(1);
+    assertThat(cache.getHitCount()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldShareBudgetBetweenEnvHolders() throws Exception {
+    SdkEnvironmentCache cache = new SdkEnvironmentCache(1, 0);
+    EnvHolder envHolder1 = new EnvHolder(cache);
+    EnvHolder envHolder2 = new EnvHolder(cache);
+
+    SdkEnvironment first = get(envHolder1, "16");
+    get(envHolder2, "16");
+
+    assertThat(cache.getLiveCount()).isEqualTo(1);
+    assertThat(get(envHolder1, "16")).isNotSameAs(first);
+  }
+
+  @Test
+  public void shouldUnloadEnvironmentsOverByteBudgetButKeepTheOneInUse() throws Exception {
+    SdkEnvironmentCache cache = new SdkEnvironmentCache(10, 100);
+    EnvHolder envHolder = new EnvHolder(cache);
+
+    get(envHolder, "16", 60);
+    get(envHolder, "17", 60);
+    assertThat(cache.getLiveCount()).isEqualTo(1);
+    assertThat(cache.getEstimatedRetainedBytes()).isEqualTo(60);
+
+    get(envHolder, "18", 150);
+    assertThat(cache.getLiveCount()).isEqualTo(1);
+    assertThat(cache.getEstimatedRetainedBytes()).isEqualTo(150);
+  }
+
+  @Test
+  public void shouldNotUnloadEnvironmentsInUseUntilReleased() throws Exception {
+    SdkEnvironmentCache cache = new SdkEnvironmentCache(1, 0);
+    EnvHolder worker1 = new EnvHolder(cache);
+    EnvHolder worker2 = new EnvHolder(cache);
+
+    SdkEnvironment inUse = acquire(worker1, "16");
+    acquire(worker2, "17");
+    assertThat(cache.getLiveCount()).isEqualTo(2);
+    assertThat(cache.getEvictionCount()).isEqualTo(0);
+    assertThat(cache.isInUse(inUse)).isTrue();
+
+    cache.release(inUse);
+    assertThat(cache.isInUse(inUse)).isFalse();
+    assertThat(cache.getLiveCount()).isEqualTo(1);
+    assertThat(cache.getEvictionCount()).isEqualTo(1);
+    assertThat(get(worker1, "16")).isNotSameAs(inUse);
+  }
+
+  private SdkEnvironment acquire(EnvHolder envHolder, final String version) {
+    return envHolder.acquireSdkEnvironment(version, new SdkConfig(version), new SdkEnvironment.Factory() {
+      @Override public SdkEnvironment create() {
+        created.add(version);
+        return new SdkEnvironment(new SdkConfig(version), getClass().getClassLoader());
+      }
+    });
+  }
+
+  private SdkEnvironment get(EnvHolder envHolder, String version) {
+    return get(envHolder, version, 0);
+  }
+
+  private SdkEnvironment get(EnvHolder envHolder, final String version, final long size) {
+    return envHolder.getSdkEnvironment(new SdkConfig(version), new SdkEnvironment.Factory() {
+      @Override public SdkEnvironment create() {
+        created.add(version);
+        return new SdkEnvironment(new SdkConfig(version), getClass().getClassLoader()) {
+          @Override public long getEstimatedSize() {
+            return size;
+          }
+        };
+      }
+    });
+  }
+}
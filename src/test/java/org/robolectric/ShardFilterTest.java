@@ -0,0 +1,82 @@
+package org.robolectric;
+
+import org.junit.Test;
+import org.junit.runner.Description;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ShardFilterTest {
+  @Test
+  public void shouldPutEachTestInExactlyOneShard() throws Exception {
+    int[] testsPerShard = new int[3];
+    for (int i = 0; i < 300; i++) {
+      int shardsRunningTest = 0;
+      for (int index = 0; index < 3; index++) {
+        TestShard shard = new TestShard(index, 3, Collections.<String, Integer>emptyMap());
+        if (shard.shouldRun(Description.createTestDescription(ShardFilterTest.class, "test" + i))) {
+          shardsRunningTest++;
+          testsPerShard[index]++;
+        }
+      }
+      assertThat(shardsRunningTest).isEqualTo(1);
+    }
+    for (int count : testsPerShard) {
+      assertThat(count).isGreaterThan(50);
+    }
+  }
+
+  @Test
+  public void shouldRunSuitesWithAnyTestsInShard() throws Exception {
+    Description suite = Description.createSuiteDescription(ShardFilterTest.class);
+    Description test = Description.createTestDescription(ShardFilterTest.class, "test");
+    suite.addChild(test);
+    TestShard shard = new TestShard(1, 2, Collections.singletonMap(ShardFilterTest.class.getName() + "#test", 1));
+
+    assertThat(shard.shouldRun(suite)).isTrue();
+    assertThat(new TestShard(0, 2, Collections.singletonMap(ShardFilterTest.class.getName() + "#test", 1)).shouldRun(suite)).isFalse();
+  }
+
+  @Test
+  public void shouldSpreadTimedTestsEvenly() throws Exception {
+    Map<String, Long> timings = new HashMap<String, Long>();
+    timings.put("A#slow", 100L);
+    timings.put("A#medium", 60L);
+    timings.put("B#medium", 50L);
+    timings.put("B#fast", 10L);
+
+    Map<String, Integer> assignments = TestShard.assign(timings, 2);
+
+    assertThat(assignments.get("A#slow")).isEqualTo(0);
+    assertThat(assignments.get("A#medium")).isEqualTo(1);
+    assertThat(assignments.get("B#medium")).isEqualTo(1);
+    assertThat(assignments.get("B#fast")).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldReadTimingsFromCsv() throws Exception {
+    File timingsFile = File.createTempFile("timings", ".csv");
+    timingsFile.deleteOnExit();
+    FileOutputStream out = new FileOutputStream(timingsFile);
+    out.write(("test,setUpMillis,totalMillis\n" +
+        "com.example.FooTest#testA,1.5,12.4\n" +
+        "com.example.FooTest#testB,0.5,3\n").getBytes("UTF-8"));
+    out.close();
+
+    Map<String, Long> timings = TestShard.readTimings(timingsFile);
+
+    assertThat(timings).hasSize(2);
+    assertThat(timings.get("com.example.FooTest#testA")).isEqualTo(12L);
+    assertThat(timings.get("com.example.FooTest#testB")).isEqualTo(3L);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void shouldRejectShardIndexOutOfRange() throws Exception {
+    new TestShard(2, 2, Collections.<String, Integer>emptyMap());
+  }
+}
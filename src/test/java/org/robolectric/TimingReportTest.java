@@ -0,0 +1,64 @@
+package org.robolectric;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.util.Map;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class TimingReportTest {
+  @Test
+  public void shouldWriteCsvThatTestShardCanRead() throws Exception {
+    File reportFile = File.createTempFile("timings", ".csv");
+    reportFile.deleteOnExit();
+    TestTimingReport report = new TestTimingReport(reportFile);
+    timeTest(report, "com.example.FooTest", "testA");
+    timeTest(report, "com.example.FooTest", "testB");
+
+    report.write();
+
+    Map<String, Long> timings = TestShard.readTimings(reportFile);
+    assertThat(timings.keySet()).containsOnly("com.example.FooTest#testA", "com.example.FooTest#testB");
+  }
+
+  @Test
+  public void shouldWriteAPhaseForEachColumn() throws Exception {
+    TestTimingReport report = new TestTimingReport(new File("unused.csv"));
+    timeTest(report, "com.example.FooTest", "testA");
+
+    StringWriter out = new StringWriter();
+    report.writeCsv(out);
+
+    String[] lines = out.toString().split("\n");
+    assertThat(lines).hasSize(2);
+    assertThat(lines[0]).isEqualTo("test,configMillis,environmentMillis,bootstrapMillis,setUpMillis,testMillis," +
+        "tearDownMillis,staticResetMillis,classesLoaded,classesInstrumented,shadowsCreated,totalMillis");
+    assertThat(lines[1].split(",")).hasSize(12);
+    assertThat(lines[1]).startsWith("com.example.FooTest#testA,");
+  }
+
+  @Test
+  public void shouldWriteJson() throws Exception {
+    TestTimingReport report = new TestTimingReport(new File("unused.json"));
+    timeTest(report, "com.example.FooTest", "test\"quoted\"");
+
+    StringWriter out = new StringWriter();
+    report.writeJson(out);
+
+    assertThat(out.toString())
+        .startsWith("{\"tests\":[\n  {\"test\":\"com.example.FooTest#test\\\"quoted\\\"\",\"phaseMillis\":{\"config\":")
+        .contains("\"staticReset\":")
+        .contains("\"shadowsCreated\":0")
+        .endsWith("}\n]}\n");
+  }
+
+  private static void timeTest(TestTimingReport report, String className, String methodName) {
+    TestTimingReport.Timing timing = new TestTimingReport.Timing(report).start(className + "#" + methodName);
+    for (TestTimingReport.Phase phase : TestTimingReport.Phase.values()) {
+      timing.lap(phase);
+    }
+    timing.finish();
+  }
+}
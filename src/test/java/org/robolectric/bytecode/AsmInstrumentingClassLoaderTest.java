@@ -1,8 +1,20 @@
 package org.robolectric.bytecode;
 
 import org.junit.Test;
+import org.robolectric.bytecode.testing.AClassToRemember;
+import org.robolectric.bytecode.testing.AnExampleClass;
 import org.robolectric.util.Transcript;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
 public class AsmInstrumentingClassLoaderTest extends InstrumentingClassLoaderTestBase {
   protected ClassLoader createClassLoader(Setup setup) throws ClassNotFoundException {
     return new AsmInstrumentingClassLoader(setup);
@@ -32,4 +44,30 @@ public class AsmInstrumentingClassLoaderTest extends InstrumentingClassLoaderTes
 
     transcript.assertEventsSoFar("find foo.AClass");
   }
+
+  @Test public void shouldDefineEachClassOnceWhenLoadedFromManyThreads() throws Exception {
+    final AsmInstrumentingClassLoader classLoader = new AsmInstrumentingClassLoader(new Setup());
+    final CountDownLatch startingGun = new CountDownLatch(1);
+    final String[] classNames = {AnExampleClass.class.getName(), AClassToRemember.class.getName()};
+
+    ExecutorService executorService = Executors.newFixedThreadPool(8);
+    List<Future<Class<?>>> futures = new ArrayList<Future<Class<?>>>();
+    for (int i = 0; i < 16; i++) {
+      final String className = classNames[i % classNames.length];
+      futures.add(executorService.submit(new Callable<Class<?>>() {
+        @Override public Class<?> call() throws Exception {
+          startingGun.await();
+          return classLoader.loadClass(className);
+        }
+      }));
+    }
+    startingGun.countDown();
+
+    for (int i = 0; i < futures.size(); i++) {
+      Class<?> loadedClass = futures.get(i).get();
+      assertThat(loadedClass.getClassLoader()).isSameAs(classLoader);
+      assertThat(loadedClass).isSameAs(classLoader.loadClass(classNames[i % classNames.length]));
+    }
+    executorService.shutdown();
+  }
 }
@@ -0,0 +1,90 @@
+package org.robolectric.bytecode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class InstrumentedClassCacheTest {
+  private File cacheDir;
+
+  @Before
+  public void setUp() throws Exception {
+    cacheDir = File.createTempFile("robolectric-class-cache", "");
+    cacheDir.delete();
+    cacheDir.mkdirs();
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    delete(cacheDir);
+  }
+
+  @Test
+  public void shouldReturnStoredBytes() throws Exception {
+    InstrumentedClassCache cache = new InstrumentedClassCache(cacheDir, 1024 * 1024, "setup");
+    byte[] orig = classBytes(1, 2, 3);
+    byte[] instrumented = classBytes(4, 5, 6);
+
+    assertThat(cache.get(orig)).isNull();
+    cache.put(orig, instrumented);
+    assertThat(cache.get(orig)).isEqualTo(instrumented);
+    assertThat(new InstrumentedClassCache(cacheDir, 1024 * 1024, "setup").get(orig)).isEqualTo(instrumented);
+  }
+
+  @Test
+  public void shouldNotShareEntriesAcrossSetupFingerprints() throws Exception {
+    byte[] orig = classBytes(1, 2, 3);
+    new InstrumentedClassCache(cacheDir, 1024 * 1024, "setup").put(orig, classBytes(4, 5, 6));
+
+    assertThat(new InstrumentedClassCache(cacheDir, 1024 * 1024, "other setup").get(orig)).isNull();
+  }
+
+  @Test
+  public void shouldEvictOldestEntriesWhenOverBudget() throws Exception {
+    InstrumentedClassCache cache = new InstrumentedClassCache(cacheDir, 1000, "setup");
+    for (int i = 0; i < 20; i++) {
+      cache.put(classBytes(i), new byte[100]);
+    }
+
+    long size = 0;
+    for (File shard : cacheDir.listFiles()) {
+      for (File file : shard.listFiles()) {
+        size += file.length();
+      }
+    }
+    assertThat(size).isLessThanOrEqualTo(1000);
+  }
+
+  @Test
+  public void shouldFallBackToDefaultSizeForMalformedMaxBytes() throws Exception {
+    assertThat(InstrumentedClassCache.maxBytesFrom(null)).isEqualTo(InstrumentedClassCache.DEFAULT_MAX_BYTES);
+    assertThat(InstrumentedClassCache.maxBytesFrom("1000")).isEqualTo(1000);
+    assertThat(InstrumentedClassCache.maxBytesFrom("256MB")).isEqualTo(InstrumentedClassCache.DEFAULT_MAX_BYTES);
+  }
+
+  private static byte[] classBytes(int... contents) {
+    byte[] bytes = new byte[4 + contents.length];
+    bytes[0] = (byte) 0xca;
+    bytes[1] = (byte) 0xfe;
+    bytes[2] = (byte) 0xba;
+    bytes[3] = (byte) 0xbe;
+    for (int i = 0; i < contents.length; i++) {
+      bytes[4 + i] = (byte) contents[i];
+    }
+    return bytes;
+  }
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  }
+}
@@ -4,6 +4,7 @@ import android.os.Build;
 import org.junit.Test;
 import org.robolectric.RobolectricTestRunner;
 import org.robolectric.bytecode.testing.AChild;
+import org.robolectric.bytecode.testing.AClassSettingOtherStaticState;
 import org.robolectric.bytecode.testing.AClassThatCallsAMethodReturningAForgettableClass;
 import org.robolectric.bytecode.testing.AClassThatRefersToAForgettableClass;
 import org.robolectric.bytecode.testing.AClassThatRefersToAForgettableClassInItsConstructor;
@@ -17,12 +18,17 @@ import org.robolectric.bytecode.testing.AClassWithMethodReturningArray;
 import org.robolectric.bytecode.testing.AClassWithMethodReturningBoolean;
 import org.robolectric.bytecode.testing.AClassWithMethodReturningDouble;
 import org.robolectric.bytecode.testing.AClassWithMethodReturningInteger;
+import org.robolectric.bytecode.testing.AClassWithMethodTakingInts;
 import org.robolectric.bytecode.testing.AClassWithNativeMethod;
 import org.robolectric.bytecode.testing.AClassWithNativeMethodReturningPrimitive;
 import org.robolectric.bytecode.testing.AClassWithNoDefaultConstructor;
 import org.robolectric.bytecode.testing.AClassWithStaticMethod;
+import org.robolectric.bytecode.testing.AClassWithStaticState;
+import org.robolectric.bytecode.testing.AClassWithStaticStateSetElsewhere;
+import org.robolectric.bytecode.testing.AClassWithUninitializedStaticState;
 import org.robolectric.bytecode.testing.AClassWithoutEqualsHashCodeToString;
 import org.robolectric.bytecode.testing.AFinalClass;
+import org.robolectric.bytecode.testing.AShadowWithStaticState;
 import org.robolectric.bytecode.testing.AnEnum;
 import org.robolectric.bytecode.testing.AnExampleClass;
 import org.robolectric.bytecode.testing.AnInstrumentedChild;
@@ -32,6 +38,8 @@ import org.robolectric.bytecode.testing.AnUninstrumentedParent;
 import org.robolectric.util.Transcript;
 import org.robolectric.util.Util;
 
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.lang.reflect.Array;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
@@ -46,6 +54,7 @@ import java.util.Set;
 import static org.fest.assertions.api.Assertions.assertThat;
 import static org.fest.reflect.core.Reflection.staticField;
 import static org.junit.Assert.*;
+import static org.junit.Assume.assumeTrue;
 import static org.robolectric.Robolectric.directlyOn;
 import static org.robolectric.Robolectric.shadowOf_;
 
@@ -115,6 +124,86 @@ abstract public class InstrumentingClassLoaderTestBase { // don't end in "Test"
     assertNotNull(exampleClass.getField(AsmInstrumentingClassLoader.CLASS_HANDLER_DATA_FIELD_NAME));
   }
 
+  @Test
+  public void shouldOnlyAskClassHandlerForPlanOncePerCallSite() throws Exception {
+    Class<?> exampleClass = loadClass(AnExampleClass.class);
+    Method normalMethod = exampleClass.getMethod("normalMethod", String.class, int.class);
+    Object exampleInstance = exampleClass.newInstance();
+
+    int planCountBefore = classHandler.planCount;
+    normalMethod.invoke(exampleInstance, "value1", 123);
+    normalMethod.invoke(exampleInstance, "value2", 456);
+    assertEquals(planCountBefore + 1, classHandler.planCount);
+
+    RobolectricTestRunner.injectClassHandler(exampleClass.getClassLoader(), new MyClassHandler(transcript));
+    RobolectricTestRunner.injectClassHandler(exampleClass.getClassLoader(), classHandler);
+    normalMethod.invoke(exampleInstance, "value3", 789);
+    assertEquals(planCountBefore + 2, classHandler.planCount);
+
+    exampleClass.getClassLoader().loadClass(RobolectricInternals.class.getName()).getMethod("invalidatePlans").invoke(null);
+    normalMethod.invoke(exampleInstance, "value4", 0);
+    assertEquals(planCountBefore + 3, classHandler.planCount);
+  }
+
+  @Test
+  public void shouldRestoreOnlyStaticFieldsWrittenSinceStaticInitialization() throws Exception {
+    Class<?> theClass = loadClassRunningRealCode(AClassWithStaticState.class);
+    Class<?> otherClass = loadClassRunningRealCode(AClassWithUninitializedStaticState.class);
+    Class<?> staticStateClass = theClass.getClassLoader().loadClass(StaticState.class.getName());
+    assertEquals("initial", theClass.getMethod("getName").invoke(null));
+    assertEquals(0, otherClass.getMethod("getCount").invoke(null));
+
+    theClass.getMethod("setName", String.class).invoke(null, "changed");
+    assertEquals("changed", theClass.getMethod("getName").invoke(null));
+    assertEquals(Collections.singleton(AClassWithStaticState.class.getName()),
+        staticStateClass.getMethod("getDirtyClassNames").invoke(null));
+
+    assertEquals(1, staticStateClass.getMethod("reset").invoke(null));
+    assertEquals("initial", theClass.getMethod("getName").invoke(null));
+    assertThat((Set<?>) staticStateClass.getMethod("getDirtyClassNames").invoke(null)).isEmpty();
+
+    otherClass.getMethod("increment").invoke(null);
+    assertEquals(1, otherClass.getMethod("getCount").invoke(null));
+    staticStateClass.getMethod("reset").invoke(null);
+    assertEquals(0, otherClass.getMethod("getCount").invoke(null));
+  }
+
+  @Test
+  public void shouldOnlyReportWritesToClassesWhoseStaticStateIsTracked() throws Exception {
+    Class<?> theClass = loadClassRunningRealCode(AClassWithStaticState.class);
+    Class<?> staticStateClass = theClass.getClassLoader().loadClass(StaticState.class.getName());
+    staticStateClass.getMethod("reset").invoke(null);
+
+    theClass.getMethod("setUntrackedName", String.class).invoke(null, "changed");
+    assertThat((Set<?>) staticStateClass.getMethod("getDirtyClassNames").invoke(null)).isEmpty();
+  }
+
+  @Test
+  public void shouldKeepStaticFieldsWrittenByAnotherClassesStaticInitialization() throws Exception {
+    Class<?> theClass = loadClassRunningRealCode(AClassWithStaticStateSetElsewhere.class);
+    Class<?> otherClass = loadClassRunningRealCode(AClassSettingOtherStaticState.class);
+    Class<?> staticStateClass = theClass.getClassLoader().loadClass(StaticState.class.getName());
+    assertEquals("initial", theClass.getMethod("getName").invoke(null));
+
+    otherClass.getMethod("initialize").invoke(null);
+    assertEquals("set by another class", theClass.getMethod("getName").invoke(null));
+    assertThat((Set<?>) staticStateClass.getMethod("getDirtyClassNames").invoke(null)).isEmpty();
+
+    theClass.getMethod("setName", String.class).invoke(null, "changed");
+    staticStateClass.getMethod("reset").invoke(null);
+    assertEquals("set by another class", theClass.getMethod("getName").invoke(null));
+  }
+
+  @Test
+  public void shouldRestoreStaticFieldsOfShadows() throws Exception {
+    Class<?> shadowClass = loadClassRunningRealCode(AShadowWithStaticState.class);
+    assertEquals("shadow initial", shadowClass.getMethod("getName").invoke(null));
+
+    shadowClass.getMethod("setName", String.class).invoke(null, "changed");
+    shadowClass.getClassLoader().loadClass(StaticState.class.getName()).getMethod("reset").invoke(null);
+    assertEquals("shadow initial", shadowClass.getMethod("getName").invoke(null));
+  }
+
   @Test
   public void callingNormalMethodShouldInvokeClassHandler() throws Exception {
     Class<?> exampleClass = loadClass(AnExampleClass.class);
@@ -188,6 +277,77 @@ abstract public class InstrumentingClassLoaderTestBase { // don't end in "Test"
         "methodInvoked: AClassWithMethodReturningInteger.normalMethodReturningInteger(int 123)");
   }
 
+  @Test
+  public void callingNormalMethodReturningInteger_shouldUseSpecializedEntryPointIfPlanHasOne() throws Exception {
+    Class<?> exampleClass = loadClass(AClassWithMethodReturningInteger.class);
+    Object exampleInstance = exampleClass.newInstance();
+    RobolectricTestRunner.injectClassHandler(exampleClass.getClassLoader(), new MyClassHandler(transcript) {
+      @Override public Plan methodInvoked(String signature, boolean isStatic, Class<?> theClass) {
+        return new SpecializedPlan() {
+          @Override public Object run(Object instance, Object roboData, Object[] params) throws Throwable {
+            throw new AssertionError("should have called runI_I()");
+          }
+
+          @Override public int runI_I(Object instance, Object roboData, int p0) throws Throwable {
+            transcript.add("runI_I(" + p0 + ")");
+            return p0 * 2;
+          }
+        };
+      }
+    });
+
+    Method normalMethod = exampleClass.getMethod("normalMethodReturningInteger", int.class);
+    assertEquals(246, normalMethod.invoke(exampleInstance, 123));
+    transcript.assertEventsSoFar("methodInvoked: AClassWithMethodReturningInteger.__constructor__()",
+        "runI_I(123)");
+  }
+
+  @Test
+  public void callingInstrumentedMethodsWithSpecializedPlans_shouldNotAllocate() throws Exception {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean allocationCounter = (com.sun.management.ThreadMXBean) threadMXBean;
+    assumeTrue(allocationCounter.isThreadAllocatedMemorySupported());
+    allocationCounter.setThreadAllocatedMemoryEnabled(true);
+
+    Class<?> exampleClass = loadClass(AClassWithMethodTakingInts.class);
+    final MeasuringShadow shadow = new MeasuringShadow();
+    final SpecializedPlan measurePlan = new ShadowMethodInvokers().invokerFor(MeasuringShadow.class.getMethod("measure", int.class, int.class));
+    RobolectricTestRunner.injectClassHandler(exampleClass.getClassLoader(), new MyClassHandler(transcript) {
+      @Override public Object initializing(Object instance) {
+        return shadow;
+      }
+
+      @Override public Plan methodInvoked(String signature, boolean isStatic, Class<?> theClass) {
+        return signature.endsWith("/measure(II)V") ? measurePlan : null;
+      }
+    });
+    Object exampleInstance = exampleClass.newInstance();
+    Method measureRepeatedly = exampleClass.getMethod("measureRepeatedly", int.class);
+
+    // warm up, so the call sites' plans are cached and the JIT has settled
+    measureRepeatedly.invoke(exampleInstance, 10000);
+    shadow.total = 0;
+
+    int calls = 100000;
+    long threadId = Thread.currentThread().getId();
+    long allocatedBefore = allocationCounter.getThreadAllocatedBytes(threadId);
+    measureRepeatedly.invoke(exampleInstance, calls);
+    long allocated = allocationCounter.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+    assertEquals((long) calls * (calls - 1), shadow.total);
+    // boxing would cost an Object[] and two Integers per call; the reflective invoke above only allocates a little once
+    assertThat(allocated / calls).isEqualTo(0);
+  }
+
+  public static class MeasuringShadow {
+    long total;
+
+    public void measure(int widthSpec, int heightSpec) {
+      total += widthSpec + heightSpec;
+    }
+  }
+
   @Test
   public void whenClassHandlerReturnsNull_callingNormalMethodReturningIntegerShouldWork() throws Exception {
     Class<?> exampleClass = loadClass(AClassWithMethodReturningInteger.class);
@@ -511,6 +671,7 @@ abstract public class InstrumentingClassLoaderTestBase { // don't end in "Test"
     private Transcript transcript;
     private Object valueToReturn = GENERATE_YOUR_OWN_VALUE;
     private Object valueToReturnFromIntercept = null;
+    private int planCount;
 
     public MyClassHandler(Transcript transcript) {
       this.transcript = transcript;
@@ -542,6 +703,7 @@ abstract public class InstrumentingClassLoaderTestBase { // don't end in "Test"
 
     @Override
     public Plan methodInvoked(String signature, boolean isStatic, Class<?> theClass) {
+      planCount++;
       final InvocationProfile invocationProfile = new InvocationProfile(signature, isStatic, getClass().getClassLoader());
       return new Plan() {
         @Override public Object run(Object instance, Object roboData, Object[] params) throws Exception {
@@ -607,6 +769,20 @@ abstract public class InstrumentingClassLoaderTestBase { // don't end in "Test"
     return classLoader.loadClass(clazz.getName());
   }
 
+  private Class<?> loadClassRunningRealCode(Class<?> clazz) throws ClassNotFoundException {
+    Class<?> theClass = loadClass(clazz);
+    RobolectricTestRunner.injectClassHandler(classLoader, new MyClassHandler(transcript) {
+      @Override public void classInitializing(Class clazz) {
+        RobolectricInternals.performStaticInitialization(clazz);
+      }
+
+      @Override public Plan methodInvoked(String signature, boolean isStatic, Class<?> theClass) {
+        return null;
+      }
+    });
+    return theClass;
+  }
+
   private static class MethodInterceptingSetup extends Setup {
     private final HashSet<MethodRef> methodRefs = new HashSet<MethodRef>();
 
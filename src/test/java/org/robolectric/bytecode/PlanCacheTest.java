@@ -0,0 +1,65 @@
+package org.robolectric.bytecode;
+
+import org.junit.Test;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class PlanCacheTest {
+  private static final ClassHandler.Plan PLAN = ShadowWrangler.DO_NOTHING_PLAN;
+
+  @Test
+  public void shouldDistinguishCachedNullPlansFromMisses() throws Exception {
+    PlanCache planCache = new PlanCache();
+    assertThat(planCache.get("a")).isSameAs(PlanCache.NOT_CACHED);
+
+    planCache.put("a", null);
+    assertThat(planCache.get("a")).isNull();
+    assertThat(planCache.getMissCount()).isEqualTo(1);
+    assertThat(planCache.getHitCount()).isEqualTo(1);
+  }
+
+  @Test
+  public void shouldNotEvictWhenUnbounded() throws Exception {
+    PlanCache planCache = new PlanCache();
+    for (int i = 0; i < 10000; i++) {
+      planCache.put("sig" + i, PLAN);
+    }
+    assertThat(planCache.size()).isEqualTo(10000);
+    assertThat(planCache.getEvictionCount()).isEqualTo(0);
+  }
+
+  @Test
+  public void lru_shouldEvictLeastRecentlyUsedEntries() throws Exception {
+    PlanCache planCache = new PlanCache(10, PlanCache.Eviction.LRU);
+    for (int i = 0; i < 10; i++) {
+      planCache.put("sig" + i, PLAN);
+    }
+    planCache.get("sig0");
+    planCache.put("sig10", PLAN);
+
+    assertThat(planCache.size()).isEqualTo(9);
+    assertThat(planCache.getEvictionCount()).isEqualTo(2);
+    assertThat(planCache.get("sig0")).isSameAs(PLAN);
+    assertThat(planCache.get("sig1")).isSameAs(PlanCache.NOT_CACHED);
+    assertThat(planCache.get("sig2")).isSameAs(PlanCache.NOT_CACHED);
+    assertThat(planCache.get("sig10")).isSameAs(PLAN);
+  }
+
+  @Test
+  public void lfu_shouldEvictLeastFrequentlyUsedEntries() throws Exception {
+    PlanCache planCache = new PlanCache(10, PlanCache.Eviction.LFU);
+    for (int i = 0; i < 10; i++) {
+      planCache.put("sig" + i, PLAN);
+      for (int j = 0; j < i; j++) {
+        planCache.get("sig" + i);
+      }
+    }
+    planCache.put("sig10", PLAN);
+
+    assertThat(planCache.size()).isEqualTo(9);
+    assertThat(planCache.get("sig0")).isSameAs(PlanCache.NOT_CACHED);
+    assertThat(planCache.get("sig1")).isSameAs(PlanCache.NOT_CACHED);
+    assertThat(planCache.get("sig2")).isSameAs(PLAN);
+    assertThat(planCache.get("sig10")).isSameAs(PLAN);
+  }
+}
@@ -0,0 +1,97 @@
+package org.robolectric.bytecode;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.robolectric.SdkConfig;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class PreinstrumentedJarTest {
+  private File jar;
+
+  @Before
+  public void setUp() throws Exception {
+    jar = File.createTempFile("preinstrumented", ".jar");
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    jar.delete();
+  }
+
+  @Test
+  public void shouldProvideClassBytesWhenFingerprintMatches() throws Exception {
+    writeJar("fingerprint", "android/Foo.class", new byte[] {1, 2, 3});
+
+    PreinstrumentedJar preinstrumentedJar = PreinstrumentedJar.open(jar, "fingerprint", sdkArtifacts("4.1.2_r1_rc"));
+    assertThat(preinstrumentedJar.getClassBytes("android.Foo")).isEqualTo(new byte[] {1, 2, 3});
+    assertThat(preinstrumentedJar.getClassBytes("android.Bar")).isNull();
+  }
+
+  @Test
+  public void shouldShareOneOpenJarBetweenEnvironments() throws Exception {
+    writeJar("fingerprint", "android/Foo.class", new byte[] {1, 2, 3});
+
+    PreinstrumentedJar preinstrumentedJar = PreinstrumentedJar.open(jar, "fingerprint", sdkArtifacts("4.1.2_r1_rc"));
+    assertThat(PreinstrumentedJar.open(jar, "fingerprint", sdkArtifacts("4.1.2_r1_rc"))).isSameAs(preinstrumentedJar);
+  }
+
+  @Test
+  public void shouldBeIgnoredWhenFingerprintDoesNotMatch() throws Exception {
+    writeJar("fingerprint", "android/Foo.class", new byte[] {1, 2, 3});
+
+    assertThat(PreinstrumentedJar.open(jar, "some other fingerprint", sdkArtifacts("4.1.2_r1_rc"))).isNull();
+  }
+
+  @Test
+  public void shouldBeIgnoredForOtherSdks() throws Exception {
+    writeJar("fingerprint", "android/Foo.class", new byte[] {1, 2, 3});
+
+    assertThat(PreinstrumentedJar.open(jar, "fingerprint", sdkArtifacts("4.2.2_r1"))).isNull();
+  }
+
+  @Test
+  public void shouldBeIgnoredWhenCorrupt() throws Exception {
+    FileOutputStream out = new FileOutputStream(jar);
+    out.write(new byte[] {'P', 'K', 3, 4, 1, 2, 3});
+    out.close();
+
+    assertThat(PreinstrumentedJar.open(jar, "fingerprint", sdkArtifacts("4.1.2_r1_rc"))).isNull();
+  }
+
+  @Test
+  public void shouldNotBeUsedByLoadersThatDontKnowTheirSdk() throws Exception {
+    writeJar("fingerprint", "android/Foo.class", new byte[] {1, 2, 3});
+    System.setProperty(PreinstrumentedJar.JAR_PROPERTY, jar.getPath());
+    try {
+      assertThat(PreinstrumentedJar.fromSystemProperties("fingerprint", null)).isNull();
+      assertThat(PreinstrumentedJar.fromSystemProperties("fingerprint", new SdkConfig("4.1.2_r1_rc"))).isNotNull();
+    } finally {
+      System.clearProperty(PreinstrumentedJar.JAR_PROPERTY);
+    }
+  }
+
+  private static String sdkArtifacts(String artifactVersion) {
+    return PreinstrumentedJar.sdkArtifacts(new SdkConfig(artifactVersion));
+  }
+
+  private void writeJar(String fingerprint, String entryName, byte[] bytes) throws Exception {
+    Manifest manifest = new Manifest();
+    manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+    manifest.getMainAttributes().put(PreinstrumentedJar.FINGERPRINT_ATTRIBUTE, fingerprint);
+    manifest.getMainAttributes().put(PreinstrumentedJar.SDK_ATTRIBUTE, sdkArtifacts("4.1.2_r1_rc"));
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(jar), manifest);
+    out.putNextEntry(new JarEntry(entryName));
+    out.write(bytes);
+    out.closeEntry();
+    out.close();
+  }
+}
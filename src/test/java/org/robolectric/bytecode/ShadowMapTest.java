@@ -2,6 +2,8 @@ package org.robolectric.bytecode;
 
 import android.widget.CursorAdapter;
 import org.junit.Test;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Opcodes;
 import org.robolectric.shadows.ShadowCursorAdapter;
 
 import static org.fest.assertions.api.Assertions.assertThat;
@@ -17,6 +19,16 @@ public class ShadowMapTest {
     assertThat(map.get(CursorAdapter.class).shadowClassName).isEqualTo(ShadowCursorAdapter.class.getName());
   }
 
+  @Test public void shouldRememberClassesWithoutConventionalShadows() throws Exception {
+    CountingClassLoader classLoader = new CountingClassLoader();
+    Class<?> unshadowedClass = classLoader.define("com.example.Unshadowed");
+    ShadowMap map = new ShadowMap.Builder().build();
+
+    assertThat(map.get(unshadowedClass)).isNull();
+    assertThat(map.get(unshadowedClass)).isNull();
+    assertThat(classLoader.shadowLookups).isEqualTo(1);
+  }
+
   @Test public void equalsHashCode() throws Exception {
     ShadowMap a = new ShadowMap.Builder().addShadowClass("a", "b", true, false, false).build();
     ShadowMap b = new ShadowMap.Builder().addShadowClass("a", "b", true, false, false).build();
@@ -31,4 +43,25 @@ public class ShadowMapTest {
     assertThat(d).isNotEqualTo(a);
     assertThat(d.hashCode()).isNotEqualTo(b.hashCode());
   }
+
+  private static class CountingClassLoader extends ClassLoader {
+    int shadowLookups;
+
+    CountingClassLoader() {
+      super(CountingClassLoader.class.getClassLoader());
+    }
+
+    @Override public Class<?> loadClass(String name) throws ClassNotFoundException {
+      if (name.startsWith("org.robolectric.shadows.")) shadowLookups++;
+      return super.loadClass(name);
+    }
+
+    Class<?> define(String className) {
+      ClassWriter classWriter = new ClassWriter(0);
+      classWriter.visit(Opcodes.V1_6, Opcodes.ACC_PUBLIC, className.replace('.', '/'), null, "java/lang/Object", null);
+      classWriter.visitEnd();
+      byte[] bytes = classWriter.toByteArray();
+      return defineClass(className, bytes, 0, bytes.length);
+    }
+  }
 }
@@ -0,0 +1,197 @@
+package org.robolectric.bytecode;
+
+import org.junit.Test;
+import org.robolectric.annotation.RealObject;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Field;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
+
+public class ShadowMethodInvokersTest {
+  private final ShadowMethodInvokers shadowMethodInvokers = new ShadowMethodInvokers();
+
+  @Test
+  public void shouldCallInstanceMethodsWithUnboxedArguments() throws Throwable {
+    ClassHandler.Plan invoker = shadowMethodInvokers.invokerFor(
+        AShadow.class.getMethod("describe", String.class, int.class, long.class, boolean.class));
+
+    Object result = invoker.run(null, new AShadow("shadow"), new Object[]{"str", 1, 2L, true});
+    assertThat(result).isEqualTo("shadow: str 1 2 true");
+  }
+
+  @Test
+  public void shouldBoxPrimitiveReturnValues() throws Throwable {
+    ClassHandler.Plan invoker = shadowMethodInvokers.invokerFor(AShadow.class.getMethod("add", int.class, int.class));
+
+    assertThat(invoker.run(null, new AShadow("shadow"), new Object[]{3, 4})).isEqualTo(7);
+  }
+
+  @Test
+  public void shouldReturnNullForVoidMethods() throws Throwable {
+    AShadow shadow = new AShadow("shadow");
+    ClassHandler.Plan invoker = shadowMethodInvokers.invokerFor(AShadow.class.getMethod("setName", String.class));
+
+    assertThat(invoker.run(null, shadow, new Object[]{"new name"})).isNull();
+    assertThat(shadow.name).isEqualTo("new name");
+  }
+
+  @Test
+  public void shouldCallStaticMethods() throws Throwable {
+    ClassHandler.Plan invoker = shadowMethodInvokers.invokerFor(AShadow.class.getMethod("twice", double.class));
+
+    assertThat(invoker.run(null, null, new Object[]{1.5})).isEqualTo(3.0);
+  }
+
+  @Test
+  public void shouldPropagateExceptionsUnwrapped() throws Throwable {
+    ClassHandler.Plan invoker = shadowMethodInvokers.invokerFor(AShadow.class.getMethod("explode"));
+
+    try {
+      invoker.run(null, new AShadow("shadow"), new Object[0]);
+      fail();
+    } catch (IOException e) {
+      assertThat(e.getMessage()).isEqualTo("boom");
+    }
+  }
+
+  @Test
+  public void shouldImplementSpecializedEntryPointForShadowMethodShape() throws Throwable {
+    AShadow shadow = new AShadow("shadow");
+    SpecializedPlan add = shadowMethodInvokers.invokerFor(AShadow.class.getMethod("add", int.class, int.class));
+    SpecializedPlan setName = shadowMethodInvokers.invokerFor(AShadow.class.getMethod("setName", String.class));
+
+    assertThat(add.runII_I(null, shadow, 3, 4)).isEqualTo(7);
+    setName.runL_V(null, shadow, "new name");
+    assertThat(shadow.name).isEqualTo("new name");
+  }
+
+  @Test
+  public void specializedEntryPointsShouldNotAllocate() throws Throwable {
+    ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+    assumeTrue(threadMXBean instanceof com.sun.management.ThreadMXBean);
+    com.sun.management.ThreadMXBean allocationCounter = (com.sun.management.ThreadMXBean) threadMXBean;
+    assumeTrue(allocationCounter.isThreadAllocatedMemorySupported());
+    allocationCounter.setThreadAllocatedMemoryEnabled(true);
+
+    AShadow shadow = new AShadow("shadow");
+    SpecializedPlan measure = shadowMethodInvokers.invokerFor(AShadow.class.getMethod("measure", int.class, int.class));
+    long threadId = Thread.currentThread().getId();
+    int calls = 100000;
+
+    measure.runII_V(null, shadow, 1, 2);
+    long allocatedBefore = allocationCounter.getThreadAllocatedBytes(threadId);
+    for (int i = 0; i < calls; i++) {
+      measure.runII_V(null, shadow, i, i);
+    }
+    long allocated = allocationCounter.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+    // a boxed call would allocate an Object[] and two Integers each time; allow a little slop for the counter itself
+    assertThat(allocated / calls).isEqualTo(0);
+  }
+
+  @Test
+  public void specializedEntryPointsShouldFallBackToRunForOtherShapes() throws Throwable {
+    SpecializedPlan echo = shadowMethodInvokers.invokerFor(AShadow.class.getMethod("echo", Object.class));
+
+    assertThat(echo.runI_L(null, new AShadow("shadow"), 5)).isEqualTo(5);
+  }
+
+  @Test
+  public void shouldRejectShadowsOfTheWrongType() throws Throwable {
+    ClassHandler.Plan invoker = shadowMethodInvokers.invokerFor(AShadow.class.getMethod("setName", String.class));
+
+    try {
+      invoker.run(null, "not a shadow", new Object[]{"new name"});
+      fail();
+    } catch (IllegalArgumentException e) {
+      assertThat(e.getMessage()).contains("String doesn't extend AShadow");
+    }
+  }
+
+  @Test
+  public void shouldGenerateFactoriesWhichConstructShadowsAndInjectRealObjects() throws Exception {
+    Field realObjectField = AShadowWithRealObject.class.getDeclaredField("realObject");
+    realObjectField.setAccessible(true);
+    ShadowFactory factory = shadowMethodInvokers.factoryFor(AShadowWithRealObject.class,
+        AShadowWithRealObject.class.getConstructor(CharSequence.class), new Field[]{realObjectField});
+
+    StringBuilder realObject = new StringBuilder("real");
+    AShadowWithRealObject shadow = (AShadowWithRealObject) factory.createShadowFor(realObject);
+    assertThat(shadow.constructedWith).isSameAs(realObject);
+    assertThat(shadow.realObject).isSameAs(realObject);
+    assertThat(factory.getClass().getName()).contains(ShadowMethodInvokers.FACTORY_CLASS_MARKER);
+  }
+
+  @Test
+  public void shouldGenerateFactoriesForNoArgConstructors() throws Exception {
+    ShadowFactory factory = shadowMethodInvokers.factoryFor(AShadowWithRealObject.class, null, new Field[0]);
+
+    assertThat(((AShadowWithRealObject) factory.createShadowFor("real")).constructedWith).isNull();
+  }
+
+  @Test
+  public void shouldDeclineMethodsItCantCallDirectly() throws Exception {
+    assertThat(shadowMethodInvokers.invokerFor(APrivateShadow.class.getMethod("toString"))).isNull();
+  }
+
+  public static class AShadow {
+    String name;
+    int total;
+
+    public AShadow(String name) {
+      this.name = name;
+    }
+
+    public String describe(String s, int i, long l, boolean b) {
+      return name + ": " + s + " " + i + " " + l + " " + b;
+    }
+
+    public int add(int a, int b) {
+      return a + b;
+    }
+
+    public Object echo(Object o) {
+      return o;
+    }
+
+    public void measure(int widthSpec, int heightSpec) {
+      total += widthSpec + heightSpec;
+    }
+
+    public void setName(String name) {
+      this.name = name;
+    }
+
+    public static double twice(double d) {
+      return d * 2;
+    }
+
+    public void explode() throws IOException {
+      throw new IOException("boom");
+    }
+  }
+
+  public static class AShadowWithRealObject {
+    @RealObject private Object realObject;
+    final Object constructedWith;
+
+    public AShadowWithRealObject() {
+      this.constructedWith = null;
+    }
+
+    public AShadowWithRealObject(CharSequence realObject) {
+      this.constructedWith = realObject;
+    }
+  }
+
+  private static class APrivateShadow {
+    @Override public String toString() {
+      return "private";
+    }
+  }
+}
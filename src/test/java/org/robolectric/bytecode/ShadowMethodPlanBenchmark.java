@@ -0,0 +1,53 @@
+package org.robolectric.bytecode;
+
+import java.lang.reflect.Method;
+
+/**
+ * Compares the per-call cost of reflective, generated and specialized (unboxed) shadow method dispatch. Not a test; run its main().
+ */
+public class ShadowMethodPlanBenchmark {
+  private static final int WARMUP_CALLS = 2000000;
+  private static final int MEASURED_CALLS = 20000000;
+
+  public static void main(String[] args) throws Throwable {
+    Method shadowMethod = AShadow.class.getMethod("measure", int.class, int.class);
+    ClassHandler.Plan reflective = new ShadowWrangler.ShadowMethodPlan(shadowMethod);
+    SpecializedPlan generated = new ShadowMethodInvokers().invokerFor(shadowMethod);
+
+    AShadow shadow = new AShadow();
+    for (int round = 0; round < 3; round++) {
+      report("reflective ", time(reflective, shadow, WARMUP_CALLS), time(reflective, shadow, MEASURED_CALLS));
+      report("generated  ", time(generated, shadow, WARMUP_CALLS), time(generated, shadow, MEASURED_CALLS));
+      report("specialized", timeSpecialized(generated, shadow, WARMUP_CALLS), timeSpecialized(generated, shadow, MEASURED_CALLS));
+    }
+  }
+
+  private static double time(ClassHandler.Plan plan, Object shadow, int calls) throws Throwable {
+    Object[] params = {1, 2};
+    long startTime = System.nanoTime();
+    for (int i = 0; i < calls; i++) {
+      plan.run(null, shadow, params);
+    }
+    return (System.nanoTime() - startTime) / (double) calls;
+  }
+
+  private static double timeSpecialized(SpecializedPlan plan, Object shadow, int calls) throws Throwable {
+    long startTime = System.nanoTime();
+    for (int i = 0; i < calls; i++) {
+      plan.runII_V(null, shadow, 1, 2);
+    }
+    return (System.nanoTime() - startTime) / (double) calls;
+  }
+
+  private static void report(String name, double warmupNsPerCall, double nsPerCall) {
+    System.out.println(String.format("%s: %6.2fns/call (warmup %6.2fns/call)", name, nsPerCall, warmupNsPerCall));
+  }
+
+  public static class AShadow {
+    public int total;
+
+    public void measure(int widthSpec, int heightSpec) {
+      total += widthSpec + heightSpec;
+    }
+  }
+}
@@ -0,0 +1,14 @@
+package org.robolectric.bytecode.testing;
+
+import org.robolectric.internal.Instrument;
+
+@SuppressWarnings("UnusedDeclaration")
+@Instrument
+public class AClassSettingOtherStaticState {
+  static {
+    AClassWithStaticStateSetElsewhere.name = "set by another class";
+  }
+
+  public static void initialize() {
+  }
+}
@@ -0,0 +1,16 @@
+package org.robolectric.bytecode.testing;
+
+import org.robolectric.internal.Instrument;
+
+@SuppressWarnings("UnusedDeclaration")
+@Instrument
+public class AClassWithMethodTakingInts {
+  public void measure(int widthSpec, int heightSpec) {
+  }
+
+  public void measureRepeatedly(int times) {
+    for (int i = 0; i < times; i++) {
+      measure(i, i);
+    }
+  }
+}
@@ -0,0 +1,25 @@
+package org.robolectric.bytecode.testing;
+
+import org.robolectric.internal.Instrument;
+
+@SuppressWarnings("UnusedDeclaration")
+@Instrument
+public class AClassWithStaticState {
+  private static String name = "initial";
+
+  public static String getName() {
+    return name;
+  }
+
+  public static void setName(String newName) {
+    name = newName;
+  }
+
+  public static void setUntrackedName(String newName) {
+    Untracked.name = newName;
+  }
+
+  public static class Untracked {
+    public static String name = "initial";
+  }
+}
@@ -0,0 +1,17 @@
+package org.robolectric.bytecode.testing;
+
+import org.robolectric.internal.Instrument;
+
+@SuppressWarnings("UnusedDeclaration")
+@Instrument
+public class AClassWithStaticStateSetElsewhere {
+  public static String name = "initial";
+
+  public static String getName() {
+    return name;
+  }
+
+  public static void setName(String newName) {
+    name = newName;
+  }
+}
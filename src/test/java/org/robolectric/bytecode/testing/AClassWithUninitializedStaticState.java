@@ -0,0 +1,17 @@
+package org.robolectric.bytecode.testing;
+
+import org.robolectric.internal.Instrument;
+
+@SuppressWarnings("UnusedDeclaration")
+@Instrument
+public class AClassWithUninitializedStaticState {
+  private static int count;
+
+  public static int getCount() {
+    return count;
+  }
+
+  public static void increment() {
+    count++;
+  }
+}
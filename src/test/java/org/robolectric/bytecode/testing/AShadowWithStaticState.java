@@ -0,0 +1,17 @@
+package org.robolectric.bytecode.testing;
+
+import org.robolectric.annotation.Implements;
+
+@SuppressWarnings("UnusedDeclaration")
+@Implements(AClassWithStaticState.class)
+public class AShadowWithStaticState {
+  private static String name = "shadow initial";
+
+  public static String getName() {
+    return name;
+  }
+
+  public static void setName(String newName) {
+    name = newName;
+  }
+}
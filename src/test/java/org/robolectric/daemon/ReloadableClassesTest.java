@@ -0,0 +1,121 @@
+package org.robolectric.daemon;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.JUnitCore;
+import org.junit.runner.Result;
+import org.junit.runner.RunWith;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Opcodes;
+import org.robolectric.Robolectric;
+import org.robolectric.SdkEnvironment;
+import org.robolectric.TestRunners;
+import org.robolectric.test.TemporaryFolder;
+import org.robolectric.util.Util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.Collection;
+
+import static java.util.Arrays.asList;
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class ReloadableClassesTest {
+  private static final String VERSION_PROPERTY = "robolectric.test.reloadedVersion";
+
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @After public void tearDown() throws Exception {
+    ReloadableClasses.setCurrent(null);
+    System.clearProperty(VERSION_PROPERTY);
+  }
+
+  @Test
+  public void shouldRunChangedClassesAndLetGoOfTheOldOnes() throws Exception {
+    File classesDir = temporaryFolder.newFolder("classes");
+    writeFixture(classesDir, "first");
+    ReloadableClasses firstClasses = new ReloadableClasses(asList(classesDir), getClass().getClassLoader());
+    assertThat(run(firstClasses)).isEqualTo("first");
+    WeakReference<ClassLoader> firstClassLoader = new WeakReference<ClassLoader>(onlyClassLoader(firstClasses));
+
+    writeFixture(classesDir, "second");
+    ReloadableClasses secondClasses = new ReloadableClasses(asList(classesDir), getClass().getClassLoader());
+    firstClasses.unload();
+    firstClasses = null;
+    assertThat(run(secondClasses)).isEqualTo("second");
+
+    try {
+      onlyClassLoader(secondClasses).getParent().loadClass(Reloaded.class.getName());
+      fail("the long-lived class loader shouldn't load its own copy of a reloadable class");
+    } catch (ClassNotFoundException expected) {
+    }
+
+    for (int i = 0; i < 50 && firstClassLoader.get() != null; i++) {
+      System.gc();
+      Thread.sleep(20);
+    }
+    assertThat(firstClassLoader.get()).isNull();
+  }
+
+  private static String run(ReloadableClasses reloadableClasses) throws Exception {
+    ReloadableClasses.setCurrent(reloadableClasses);
+    try {
+      Result result = new JUnitCore().run(reloadableClasses.getClassLoader().loadClass(Reloaded.class.getName()));
+      assertThat(result.getFailures()).isEmpty();
+      assertThat(result.getRunCount()).isEqualTo(1);
+    } finally {
+      ReloadableClasses.setCurrent(null);
+    }
+    return System.getProperty(VERSION_PROPERTY);
+  }
+
+  private static ClassLoader onlyClassLoader(ReloadableClasses reloadableClasses) {
+    Collection<SdkEnvironment> environments = reloadableClasses.getReloadedEnvironments();
+    assertThat(environments).hasSize(1);
+    return environments.iterator().next().getRobolectricClassLoader();
+  }
+
+  private void writeFixture(File classesDir, String version) throws IOException {
+    String classFileName = Reloaded.class.getName().replace('.', '/') + ".class";
+    byte[] bytes = Util.readBytes(getClass().getClassLoader().getResourceAsStream(classFileName));
+    File classFile = new File(classesDir, classFileName);
+    classFile.getParentFile().mkdirs();
+    FileOutputStream out = new FileOutputStream(classFile);
+    try {
+      out.write(replaceConstant(bytes, "first", version));
+    } finally {
+      out.close();
+    }
+  }
+
+  private static byte[] replaceConstant(byte[] classBytes, final String from, final String to) {
+    ClassWriter classWriter = new ClassWriter(0);
+    new ClassReader(classBytes).accept(new ClassVisitor(Opcodes.ASM4, classWriter) {
+      @Override
+      public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+        return new MethodVisitor(Opcodes.ASM4, super.visitMethod(access, name, desc, signature, exceptions)) {
+          @Override public void visitLdcInsn(Object constant) {
+            super.visitLdcInsn(from.equals(constant) ? to : constant);
+          }
+        };
+      }
+    }, 0);
+    return classWriter.toByteArray();
+  }
+
+  @RunWith(TestRunners.WithDefaults.class)
+  public static class Reloaded {
+    @Test public void recordVersion() throws Exception {
+      // looking ourselves up by name from the long-lived environment should find this copy, not a stale one
+      assertThat(Robolectric.newInstanceOf(Reloaded.class.getName())).isInstanceOf(Reloaded.class);
+      System.setProperty(VERSION_PROPERTY, "first");
+    }
+  }
+}
@@ -0,0 +1,161 @@
+package org.robolectric.daemon;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.Description;
+import org.junit.runner.Request;
+import org.junit.runner.notification.Failure;
+import org.junit.runner.notification.RunListener;
+import org.junit.runner.notification.RunNotifier;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class RobolectricDaemonTest {
+  private RobolectricDaemon daemon;
+  private File tokenFile;
+
+  @Before public void setUp() throws Exception {
+    tokenFile = File.createTempFile("daemon", ".token");
+    daemon = new RobolectricDaemon(0, tokenFile);
+    Thread thread = new Thread(new Runnable() {
+      @Override public void run() {
+        try {
+          daemon.serve();
+        } catch (IOException ignored) {
+          // closed
+        }
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @After public void tearDown() throws Exception {
+    daemon.close();
+    tokenFile.delete();
+  }
+
+  @Test
+  public void shouldRunTestsInDaemonAndReportResultsToClient() throws Exception {
+    Description description = Request.aClass(SampleTest.class).getRunner().getDescription();
+    final List<String> events = new ArrayList<String>();
+    RunNotifier notifier = new RunNotifier();
+    notifier.addListener(new RunListener() {
+      @Override public void testStarted(Description description) throws Exception {
+        events.add("started " + description.getMethodName());
+      }
+
+      @Override public void testFailure(Failure failure) throws Exception {
+        events.add("failed " + failure.getDescription().getMethodName() + ": " + failure.getMessage());
+        assertThat(failure.getTrace()).contains("SampleTest.fails");
+      }
+
+      @Override public void testFinished(Description description) throws Exception {
+        events.add("finished " + description.getMethodName());
+      }
+    });
+
+    new DaemonClient(daemon.getPort(), Collections.<File>emptyList(), tokenFile).run(SampleTest.class, description, notifier);
+
+    assertThat(events).contains("started passes", "finished passes",
+        "started fails", "failed fails: boom\ttab", "finished fails");
+    assertThat(events).hasSize(5);
+  }
+
+  @Test
+  public void shouldReportClassLevelFailuresAgainstTheTestClass() throws Exception {
+    Description description = Request.aClass(NoTests.class).getRunner().getDescription();
+    final List<String> failures = new ArrayList<String>();
+    RunNotifier notifier = new RunNotifier();
+    notifier.addListener(new RunListener() {
+      @Override public void testFailure(Failure failure) throws Exception {
+        failures.add(failure.getMessage());
+      }
+    });
+
+    new DaemonClient(daemon.getPort(), Collections.<File>emptyList(), tokenFile).run(NoTests.class, description, notifier);
+
+    assertThat(failures.toString()).contains("No runnable methods");
+  }
+
+  @Test
+  public void shouldRefuseClientsWithoutTheToken() throws Exception {
+    Description description = Request.aClass(SampleTest.class).getRunner().getDescription();
+    final List<String> events = new ArrayList<String>();
+    RunNotifier notifier = new RunNotifier();
+    notifier.addListener(new RunListener() {
+      @Override public void testStarted(Description description) throws Exception {
+        events.add("started " + description.getMethodName());
+      }
+
+      @Override public void testFailure(Failure failure) throws Exception {
+        events.add("failed: " + failure.getMessage());
+      }
+    });
+
+    File wrongTokenFile = File.createTempFile("daemon", ".token");
+    try {
+      write(wrongTokenFile, "not the token");
+      new DaemonClient(daemon.getPort(), Collections.<File>emptyList(), wrongTokenFile).run(SampleTest.class, description, notifier);
+    } finally {
+      wrongTokenFile.delete();
+    }
+
+    assertThat(events).hasSize(1);
+    assertThat(events.get(0)).contains("token didn't match");
+  }
+
+  @Test
+  public void tokenFile_shouldHoldTheTokenClientsMustPresent() throws Exception {
+    assertThat(DaemonToken.read(tokenFile)).hasSize(64);
+    assertThat(DaemonToken.matches(DaemonToken.read(tokenFile), DaemonToken.read(tokenFile))).isTrue();
+    assertThat(DaemonToken.matches(DaemonToken.read(tokenFile), "nope")).isFalse();
+  }
+
+  @Test
+  public void reloadableClasses_shouldNoticeChangedClassFiles() throws Exception {
+    File dir = File.createTempFile("classes", "");
+    dir.delete();
+    File classFile = new File(dir, "com/example/Foo.class");
+    classFile.getParentFile().mkdirs();
+    write(classFile, "first");
+
+    ReloadableClasses reloadableClasses = new ReloadableClasses(asList(dir), getClass().getClassLoader());
+    assertThat(reloadableClasses.isReloadable("com.example.Foo")).isTrue();
+    assertThat(reloadableClasses.isReloadable("com.example.Bar")).isFalse();
+    assertThat(reloadableClasses.isUpToDate(asList(dir))).isTrue();
+
+    write(classFile, "second version");
+    assertThat(reloadableClasses.isUpToDate(asList(dir))).isFalse();
+  }
+
+  private static void write(File file, String contents) throws IOException {
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      out.write(contents.getBytes());
+    } finally {
+      out.close();
+    }
+  }
+
+  public static class SampleTest {
+    @Test public void passes() throws Exception {
+    }
+
+    @Test public void fails() throws Exception {
+      throw new RuntimeException("boom\ttab");
+    }
+  }
+
+  public static class NoTests {
+  }
+}
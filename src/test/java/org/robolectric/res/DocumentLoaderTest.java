@@ -0,0 +1,41 @@
+package org.robolectric.res;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+import static org.robolectric.util.TestUtil.testResources;
+
+public class DocumentLoaderTest {
+  @Test
+  public void shouldLoadFilesInTheSameOrderWhenParsingInParallel() throws Exception {
+    List<String> sequential = loadValues(1);
+    List<String> parallel = loadValues(4);
+
+    assertThat(sequential.size()).isGreaterThan(1);
+    assertThat(parallel).isEqualTo(sequential);
+  }
+
+  @Test
+  public void shouldLoadTheSameResourcesWhenParsingInParallel() throws Exception {
+    ResBunch resBunch = new ResBunch();
+    new DocumentLoader(testResources(), 4).load("values",
+        new ValueResourceLoader(resBunch, "/resources/string", "string", ResType.CHAR_SEQUENCE));
+
+    ResName resName = new ResName(testResources().getPackageName(), "string", "hello");
+    assertThat(resBunch.get(resName, "").getData()).isEqualTo("Hello");
+    assertThat(resBunch.get(resName, "fr").getData()).isEqualTo("Bonjour");
+  }
+
+  private static List<String> loadValues(int parseThreads) throws Exception {
+    final List<String> loaded = new ArrayList<String>();
+    new DocumentLoader(testResources(), parseThreads).load("values", new XmlLoader() {
+      @Override protected void processResourceXml(FsFile xmlFile, XpathResourceXmlLoader.XmlNode xmlNode, XmlContext xmlContext) throws Exception {
+        loaded.add(xmlFile.getPath() + ":" + xmlNode.getElementName());
+      }
+    });
+    return loaded;
+  }
+}
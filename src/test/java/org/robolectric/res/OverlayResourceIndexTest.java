@@ -2,6 +2,7 @@ package org.robolectric.res;
 
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Map;
 import org.junit.Test;
 
 import static org.fest.assertions.api.Assertions.assertThat;
@@ -26,18 +27,26 @@ public class OverlayResourceIndexTest {
 
   private static class DummyResourceIndex extends ResourceIndex {
     private final String packageName;
+    private final ResName resName;
+    private final int value;
 
-    private DummyResourceIndex(String packageName, ResName resName, Integer value) {
+    private DummyResourceIndex(String packageName, ResName resName, int value) {
       this.packageName = packageName;
-      resourceNameToId.put(resName, value);
+      this.resName = resName;
+      this.value = value;
     }
 
     @Override public Integer getResourceId(ResName resName) {
-      return resourceNameToId.get(resName);
+      return this.resName.equals(resName) ? value : null;
     }
 
     @Override public ResName getResName(int resourceId) {
-      return null;
+      return resourceId == value ? resName : null;
+    }
+
+    @Override protected void copyTo(Map<ResName, Integer> resourceNameToId, Map<Integer, ResName> resourceIdToResName) {
+      resourceNameToId.put(resName, value);
+      resourceIdToResName.put(value, resName);
     }
 
     @Override public Collection<String> getPackages() {
@@ -0,0 +1,79 @@
+package org.robolectric.res;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.robolectric.test.TemporaryFolder;
+
+import java.io.File;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class PackageResourceLoaderTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ResourcePath resourcePath;
+
+  @Before
+  public void setUp() throws Exception {
+    temporaryFolder.newFile("res/values/strings.xml", "<resources>\n" +
+        "  <string name=\"hello\">Hello</string>\n" +
+        "</resources>\n");
+    temporaryFolder.newFile("res/layout/main.xml", "<LinearLayout/>\n");
+    temporaryFolder.newFile("res/menu/options.xml", "<menu><item/></menu>\n");
+    resourcePath = new ResourcePath(null, "org.example", Fs.newFile(new File(temporaryFolder.getRoot(), "res")), null);
+  }
+
+  @Test
+  public void whenLazy_shouldOnlyLoadWhatsAskedFor() throws Exception {
+    PackageResourceLoader resourceLoader = new PackageResourceLoader(resourcePath, new ResourceExtractor(), true);
+
+    assertThat(resourceLoader.getValue(new ResName("org.example", "string", "hello"), "").getData()).isEqualTo("Hello");
+    assertThat(resourceLoader.data.getTypes()).contains("string").doesNotContain("layout");
+    assertThat(resourceLoader.menuData.size()).isEqualTo(0);
+
+    assertThat(resourceLoader.getValue(new ResName("org.example", "layout", "main"), "")).isNotNull();
+    assertThat(resourceLoader.data.getTypes()).contains("string", "layout");
+    assertThat(resourceLoader.menuData.size()).isEqualTo(0);
+    assertThat(resourceLoader.isInitialized).isFalse();
+  }
+
+  @Test
+  public void whenLazy_shouldLoadEverythingWhenInitialized() throws Exception {
+    PackageResourceLoader resourceLoader = new PackageResourceLoader(resourcePath, new ResourceExtractor(), true);
+    resourceLoader.initialize();
+
+    assertThat(resourceLoader.isInitialized).isTrue();
+    assertThat(resourceLoader.data.getTypes()).contains("string", "layout");
+    assertThat(resourceLoader.menuData.size()).isEqualTo(1);
+  }
+
+  @Test
+  public void whenLazyWithoutPerGroupLoading_shouldLoadEverythingOnce() throws Exception {
+    final int[] initializeCount = {0};
+    XResourceLoader resourceLoader = new EmptyResourceLoader() {
+      @Override boolean isLazy() {
+        return true;
+      }
+
+      @Override void doInitialize() {
+        initializeCount[0]++;
+      }
+    };
+
+    resourceLoader.getValue(new ResName("org.example", "string", "hello"), "");
+    resourceLoader.getValue(new ResName("org.example", "layout", "main"), "");
+    resourceLoader.initialize();
+    assertThat(initializeCount[0]).isEqualTo(1);
+  }
+
+  @Test
+  public void whenEager_shouldLoadEverythingOnFirstUse() throws Exception {
+    PackageResourceLoader resourceLoader = new PackageResourceLoader(resourcePath, new ResourceExtractor(), false);
+
+    assertThat(resourceLoader.getValue(new ResName("org.example", "string", "hello"), "").getData()).isEqualTo("Hello");
+    assertThat(resourceLoader.isInitialized).isTrue();
+    assertThat(resourceLoader.data.getTypes()).contains("string", "layout");
+    assertThat(resourceLoader.menuData.size()).isEqualTo(1);
+  }
+}
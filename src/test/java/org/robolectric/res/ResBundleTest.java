@@ -17,6 +17,26 @@ public class ResBundleTest {
         "port-notouch-12key"), "en-GB-port-hdpi-notouch-12key").value);
   }
 
+  @Test
+  public void shouldRememberPicksUntilValuesAreAdded() throws Exception {
+    ResBundle.Values<String> values = asValues("", "en", "en-port");
+    assertEquals("en", ResBundle.pick(values, "en-land").value);
+    assertEquals("en", ResBundle.pick(values, "en-land").value);
+    assertEquals("en-port", ResBundle.pick(values, "en-port").value);
+
+    values.add(new ResBundle.Value<String>("en-land", "en-land", null));
+    assertEquals("en-land", ResBundle.pick(values, "en-land").value);
+  }
+
+  @Test
+  public void shouldPickFromMoreThan32Values() throws Exception {
+    String[] qualifierses = new String[40];
+    for (int i = 0; i < qualifierses.length; i++) {
+      qualifierses[i] = "mcc" + (100 + i);
+    }
+    assertEquals("mcc135", ResBundle.pick(asValues(qualifierses), "mcc135-en").value);
+  }
+
   private ResBundle.Values<String> asValues(String... qualifierses) {
     ResBundle.Values<String> values = new ResBundle.Values<String>();
     for (String qualifiers : qualifierses) {
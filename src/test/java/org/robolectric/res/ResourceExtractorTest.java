@@ -47,6 +47,18 @@ public class ResourceExtractorTest {
     assertThat(resourceIndex.getResName(R.id.burritos).getFullyQualifiedName()).isEqualTo("org.robolectric:id/burritos");
   }
 
+  @Test
+  public void shouldAssignIdsToUnknownAndroidResources() throws Exception {
+    ResourceExtractor resourceExtractor = new ResourceExtractor();
+    ResName resName = new ResName("android", "string", "not_in_any_r_class");
+
+    Integer id = resourceExtractor.getResourceId(resName);
+    assertThat(id).isNotNull();
+    assertThat(resourceExtractor.getResourceId(resName)).isEqualTo(id);
+    assertThat(resourceExtractor.getResName(id)).isEqualTo(resName);
+    assertThat(resourceExtractor.getResourceId(new ResName("org.example", "string", "not_in_any_r_class"))).isNull();
+  }
+
   @Test
   public void shouldResolveEquivalentResNames() throws Exception {
     OverlayResourceIndex overlayResourceIndex = new OverlayResourceIndex(
@@ -0,0 +1,57 @@
+package org.robolectric.res;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ResourceIdTableTest {
+  @Test
+  public void shouldLookUpIdsAndNames() throws Exception {
+    Map<ResName, Integer> resourceNameToId = new HashMap<ResName, Integer>();
+    Map<Integer, ResName> resourceIdToResName = new HashMap<Integer, ResName>();
+    for (int i = 0; i < 5000; i++) {
+      ResName resName = new ResName("org.example", "string", "s" + i);
+      resourceNameToId.put(resName, 0x7f050000 + i);
+      resourceIdToResName.put(0x7f050000 + i, resName);
+    }
+
+    ResourceIdTable resourceIdTable = new ResourceIdTable(resourceNameToId, resourceIdToResName);
+
+    assertThat(resourceIdTable.size()).isEqualTo(5000);
+    for (int i = 0; i < 5000; i++) {
+      assertThat(resourceIdTable.getResourceId(new ResName("org.example", "string", "s" + i))).isEqualTo(0x7f050000 + i);
+      assertThat(resourceIdTable.getResName(0x7f050000 + i)).isEqualTo(new ResName("org.example", "string", "s" + i));
+    }
+    assertThat(resourceIdTable.getResourceId(new ResName("org.example", "string", "s5000"))).isNull();
+    assertThat(resourceIdTable.getResName(0x7f050000 + 5000)).isNull();
+    assertThat(resourceIdTable.getMaxId()).isEqualTo(0x7f050000 + 4999);
+  }
+
+  @Test
+  public void shouldHandleEmptyTables() throws Exception {
+    ResourceIdTable resourceIdTable = new ResourceIdTable(new HashMap<ResName, Integer>(), new HashMap<Integer, ResName>());
+
+    assertThat(resourceIdTable.getResourceId(new ResName("org.example", "string", "hello"))).isNull();
+    assertThat(resourceIdTable.getResName(0)).isNull();
+    assertThat(resourceIdTable.getMaxId()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldCopyEverythingOut() throws Exception {
+    Map<ResName, Integer> resourceNameToId = new HashMap<ResName, Integer>();
+    Map<Integer, ResName> resourceIdToResName = new HashMap<Integer, ResName>();
+    resourceNameToId.put(new ResName("org.example", "id", "a"), 1);
+    resourceNameToId.put(new ResName("org.example", "id", "b"), 2);
+    resourceIdToResName.put(1, new ResName("org.example", "id", "a"));
+
+    Map<ResName, Integer> copiedNameToId = new HashMap<ResName, Integer>();
+    Map<Integer, ResName> copiedIdToResName = new HashMap<Integer, ResName>();
+    new ResourceIdTable(resourceNameToId, resourceIdToResName).copyTo(copiedNameToId, copiedIdToResName);
+
+    assertThat(copiedNameToId).isEqualTo(resourceNameToId);
+    assertThat(copiedIdToResName).isEqualTo(resourceIdToResName);
+  }
+}
@@ -0,0 +1,92 @@
+package org.robolectric.res;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.robolectric.test.TemporaryFolder;
+
+import java.io.File;
+
+import static org.fest.assertions.api.Assertions.assertThat;
+
+public class ResourceTableCacheTest {
+  @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  private ResourcePath resourcePath;
+  private File cacheDir;
+
+  @Before
+  public void setUp() throws Exception {
+    temporaryFolder.newFile("res/values/strings.xml", "<resources>\n" +
+        "  <string name=\"hello\">Hello</string>\n" +
+        "  <string-array name=\"greetings\"><item>hi</item><item>yo</item></string-array>\n" +
+        "  <plurals name=\"beer\"><item quantity=\"one\">One beer</item><item quantity=\"other\">Beers</item></plurals>\n" +
+        "  <attr name=\"itemType\" format=\"enum\"><enum name=\"marsupial\" value=\"0\"/></attr>\n" +
+        "  <style name=\"Theme.Example\" parent=\"@android:style/Theme\"><item name=\"itemType\">marsupial</item></style>\n" +
+        "</resources>\n");
+    temporaryFolder.newFile("res/values-fr/strings.xml", "<resources>\n" +
+        "  <string name=\"hello\">Bonjour</string>\n" +
+        "</resources>\n");
+    resourcePath = new ResourcePath(null, "org.example", Fs.newFile(new File(temporaryFolder.getRoot(), "res")), null);
+    cacheDir = temporaryFolder.newFolder("cache");
+  }
+
+  @Test
+  public void shouldReadBackWhatItWrote() throws Exception {
+    ResBunch data = new ResBunch();
+    ResBundle<PluralResourceLoader.PluralRules> pluralsData = new ResBundle<PluralResourceLoader.PluralRules>();
+    parseValues(data, pluralsData);
+    new ResourceTableCache(resourcePath, cacheDir).save(data, pluralsData);
+
+    ResBunch cachedData = new ResBunch();
+    ResBundle<PluralResourceLoader.PluralRules> cachedPluralsData = new ResBundle<PluralResourceLoader.PluralRules>();
+    assertThat(new ResourceTableCache(resourcePath, cacheDir).load(cachedData, cachedPluralsData)).isTrue();
+
+    assertThat(cachedData.size()).isEqualTo(data.size());
+    assertThat(cachedData.get(resName("string", "hello"), "").getData()).isEqualTo("Hello");
+    assertThat(cachedData.get(resName("string", "hello"), "fr").getData()).isEqualTo("Bonjour");
+    TypedResource[] greetings = (TypedResource[]) cachedData.get(resName("array", "greetings"), "").getData();
+    assertThat(greetings[1].getData()).isEqualTo("yo");
+    assertThat(((AttrData) cachedData.get(resName("attr", "itemType"), "").getData()).getValueFor("marsupial")).isEqualTo("0");
+    StyleData style = (StyleData) cachedData.get(resName("style", "Theme_Example"), "").getData();
+    assertThat(style.getParent()).isEqualTo("@android:style/Theme");
+    assertThat(style.getAttrValue(resName("attr", "itemType")).value).isEqualTo("marsupial");
+    assertThat(cachedPluralsData.get(resName("plurals", "beer"), "").find(1).getString()).isEqualTo("One beer");
+  }
+
+  @Test
+  public void shouldIgnoreTheCacheWhenValuesChange() throws Exception {
+    ResBunch data = new ResBunch();
+    ResBundle<PluralResourceLoader.PluralRules> pluralsData = new ResBundle<PluralResourceLoader.PluralRules>();
+    parseValues(data, pluralsData);
+    new ResourceTableCache(resourcePath, cacheDir).save(data, pluralsData);
+
+    temporaryFolder.newFile("res/values-fr/strings.xml", "<resources>\n" +
+        "  <string name=\"hello\">Salut</string>\n" +
+        "</resources>\n");
+
+    ResBunch cachedData = new ResBunch();
+    assertThat(new ResourceTableCache(resourcePath, cacheDir).load(cachedData, new ResBundle<PluralResourceLoader.PluralRules>())).isFalse();
+    assertThat(cachedData.size()).isEqualTo(0);
+  }
+
+  @Test
+  public void shouldStampFilesWithTheLoaderCode() throws Exception {
+    String loaderVersion = ResourceTableCache.loaderVersion();
+    assertThat(loaderVersion).matches(".*@[0-9a-f]{40}");
+    assertThat(ResourceTableCache.loaderVersion()).isEqualTo(loaderVersion);
+  }
+
+  private void parseValues(ResBunch data, ResBundle<PluralResourceLoader.PluralRules> pluralsData) throws Exception {
+    new DocumentLoader(resourcePath).load("values",
+        new ValueResourceLoader(data, "/resources/string", "string", ResType.CHAR_SEQUENCE),
+        new ValueResourceLoader(data, "/resources/string-array", "array", ResType.CHAR_SEQUENCE_ARRAY),
+        new PluralResourceLoader(pluralsData),
+        new AttrResourceLoader(data),
+        new StyleResourceLoader(data));
+  }
+
+  private static ResName resName(String type, String name) {
+    return new ResName("org.example", type, name);
+  }
+}